@@ -1,7 +1,6 @@
 package BankManagementSystem;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 
 public class Account {
@@ -11,12 +10,18 @@ public class Account {
 	private String email;
 	private String phoneNumber;
 	private AccountType accountType;
-	private double balance;
+	private long balanceCents;
 	private String passwordHash;
 	private LocalDateTime createdDate;
 	private AccountStatus status;
-	private List<Transaction> transactions;
+	private int transactionCount;
 	private double interestRate;
+	// Month ("2026-10") of the last interest credit, so a period is never credited twice
+	private String lastInterestPeriod;
+	// In daily interest mode, the point up to which interest has been credited
+	private LocalDateTime lastAccruedAt;
+	// History embedded by older versions of accounts.json; moved to the TransactionStore on load
+	private List<Transaction> legacyTransactions;
 
 	public enum AccountType {
 		SAVINGS(0.03), CHECKING(0.01), PREMIUM(0.05);
@@ -37,13 +42,12 @@ public class Account {
 	}
 
 	public Account() {
-		this.transactions = new ArrayList<>();
 		this.createdDate = LocalDateTime.now();
 		this.status = AccountStatus.ACTIVE;
 	}
 
 	public Account(String accountNumber, String firstName, String lastName, String email,
-				   String phoneNumber, AccountType accountType, double initialBalance, String passwordHash) {
+				   String phoneNumber, AccountType accountType, long initialBalanceCents, String passwordHash) {
 		this();
 		this.accountNumber = accountNumber;
 		this.firstName = firstName;
@@ -51,7 +55,7 @@ public class Account {
 		this.email = email;
 		this.phoneNumber = phoneNumber;
 		this.accountType = accountType;
-		this.balance = initialBalance;
+		this.balanceCents = initialBalanceCents;
 		this.passwordHash = passwordHash;
 		this.interestRate = accountType.getDefaultInterestRate();
 	}
@@ -75,8 +79,9 @@ public class Account {
 	public AccountType getAccountType() { return accountType; }
 	public void setAccountType(AccountType accountType) { this.accountType = accountType; }
 
-	public double getBalance() { return balance; }
-	public void setBalance(double balance) { this.balance = balance; }
+	// In cents, see Money
+	public long getBalanceCents() { return balanceCents; }
+	public void setBalanceCents(long balanceCents) { this.balanceCents = balanceCents; }
 
 	public String getPasswordHash() { return passwordHash; }
 	public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
@@ -87,17 +92,22 @@ public class Account {
 	public AccountStatus getStatus() { return status; }
 	public void setStatus(AccountStatus status) { this.status = status; }
 
-	public List<Transaction> getTransactions() { return transactions; }
-	public void setTransactions(List<Transaction> transactions) { this.transactions = transactions; }
+	public int getTransactionCount() { return transactionCount; }
+	public void setTransactionCount(int transactionCount) { this.transactionCount = transactionCount; }
+
+	List<Transaction> getLegacyTransactions() { return legacyTransactions; }
+	void setLegacyTransactions(List<Transaction> legacyTransactions) { this.legacyTransactions = legacyTransactions; }
 
 	public double getInterestRate() { return interestRate; }
 	public void setInterestRate(double interestRate) { this.interestRate = interestRate; }
 
+	public String getLastInterestPeriod() { return lastInterestPeriod; }
+	public void setLastInterestPeriod(String lastInterestPeriod) { this.lastInterestPeriod = lastInterestPeriod; }
+
+	public LocalDateTime getLastAccruedAt() { return lastAccruedAt; }
+	public void setLastAccruedAt(LocalDateTime lastAccruedAt) { this.lastAccruedAt = lastAccruedAt; }
+
 	public String getFullName() {
 		return firstName + " " + lastName;
 	}
-
-	public void addTransaction(Transaction transaction) {
-		this.transactions.add(transaction);
-	}
 }
\ No newline at end of file
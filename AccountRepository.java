@@ -0,0 +1,67 @@
+package BankManagementSystem;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// What BankService needs from storage: the account snapshot, the journal that sits
+// in front of it, and the side stores kept next to it. DatabaseManager is the
+// implementation; the on-disk snapshot format is its StorageEngine.
+public interface AccountRepository {
+    // Latest snapshot with any journaled changes replayed on top of it
+    List<Account> loadAccounts();
+
+    // Rewrites the whole snapshot
+    void saveAccounts(List<Account> accounts);
+
+    boolean isJournalEnabled();
+
+    // Completes once the entry is durable
+    CompletableFuture<Void> appendJournal(JournalEntry entry);
+
+    // Completes once every entry appended so far is durable, without waiting for more to join the batch
+    CompletableFuture<Void> flushJournal();
+
+    boolean isCheckpointDue();
+
+    // Folds the journal into a fresh snapshot of the given state
+    void checkpoint(List<Account> accounts);
+
+    // Ledger persistence only: the account as it stood at the given time, rebuilt from
+    // the ledger, or null if it had not been opened by then
+    Account findAccountAsOf(String accountNumber, LocalDateTime asOf);
+
+    TransactionStore getTransactionStore();
+
+    // Null when no balance table is configured
+    BalanceTable getBalanceTable();
+
+    Path getInterestDirectory();
+
+    GroupCommitLog.Stats getJournalStats();
+
+    // Indexed residency: loadAccounts() returns only the accounts changed since the
+    // last checkpoint, everything else is looked up on disk one record at a time, and
+    // checkpoints merge the changed accounts into the snapshot
+    boolean isIndexed();
+
+    // The methods below are only available in indexed residency. Lookups see the
+    // snapshot as of the last checkpoint.
+    Account findAccount(String accountNumber);
+
+    Account findAccountByEmail(String email);
+
+    // Accounts in the snapshot
+    long countAccounts();
+
+    // Account numbers in ascending order after the given one (null for the first)
+    List<String> accountNumbersAfter(String accountNumber, int limit);
+
+    // Folds the journal into the snapshot; changed must hold every account changed
+    // since the last checkpoint
+    void checkpointChanges(Collection<Account> changed);
+
+    void close();
+}
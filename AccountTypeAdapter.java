@@ -0,0 +1,97 @@
+package BankManagementSystem;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class AccountTypeAdapter extends TypeAdapter<Account> {
+    private final LocalDateTimeAdapter dateTimeAdapter = new LocalDateTimeAdapter();
+    private final TransactionTypeAdapter transactionAdapter = new TransactionTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Account account) throws IOException {
+        if (account == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("accountNumber").value(account.getAccountNumber());
+        out.name("firstName").value(account.getFirstName());
+        out.name("lastName").value(account.getLastName());
+        out.name("email").value(account.getEmail());
+        out.name("phoneNumber").value(account.getPhoneNumber());
+        out.name("accountType").value(account.getAccountType() != null ? account.getAccountType().name() : null);
+        out.name("balanceCents").value(account.getBalanceCents());
+        out.name("passwordHash").value(account.getPasswordHash());
+        out.name("createdDate");
+        dateTimeAdapter.write(out, account.getCreatedDate());
+        out.name("status").value(account.getStatus() != null ? account.getStatus().name() : null);
+        out.name("transactionCount").value(account.getTransactionCount());
+        out.name("interestRate").value(account.getInterestRate());
+        if (account.getLastInterestPeriod() != null) {
+            out.name("lastInterestPeriod").value(account.getLastInterestPeriod());
+        }
+        if (account.getLastAccruedAt() != null) {
+            out.name("lastAccruedAt");
+            dateTimeAdapter.write(out, account.getLastAccruedAt());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Account read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Account account = new Account();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "accountNumber": account.setAccountNumber(TransactionTypeAdapter.readString(in)); break;
+                case "firstName": account.setFirstName(TransactionTypeAdapter.readString(in)); break;
+                case "lastName": account.setLastName(TransactionTypeAdapter.readString(in)); break;
+                case "email": account.setEmail(TransactionTypeAdapter.readString(in)); break;
+                case "phoneNumber": account.setPhoneNumber(TransactionTypeAdapter.readString(in)); break;
+                case "accountType":
+                    account.setAccountType(TransactionTypeAdapter.readEnum(in, Account.AccountType.class));
+                    break;
+                case "balanceCents": account.setBalanceCents(in.nextLong()); break;
+                // Written as double by older versions
+                case "balance": account.setBalanceCents(Money.fromDouble(in.nextDouble())); break;
+                case "passwordHash": account.setPasswordHash(TransactionTypeAdapter.readString(in)); break;
+                case "createdDate": account.setCreatedDate(dateTimeAdapter.read(in)); break;
+                case "status":
+                    account.setStatus(TransactionTypeAdapter.readEnum(in, Account.AccountStatus.class));
+                    break;
+                case "transactionCount": account.setTransactionCount(in.nextInt()); break;
+                case "transactions": account.setLegacyTransactions(readTransactions(in)); break;
+                case "interestRate": account.setInterestRate(in.nextDouble()); break;
+                case "lastInterestPeriod": account.setLastInterestPeriod(TransactionTypeAdapter.readString(in)); break;
+                case "lastAccruedAt": account.setLastAccruedAt(dateTimeAdapter.read(in)); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+        return account;
+    }
+
+    // Older files embedded the whole history in each account record
+    private List<Transaction> readTransactions(JsonReader in) throws IOException {
+        List<Transaction> transactions = new ArrayList<>();
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return transactions;
+        }
+        in.beginArray();
+        while (in.hasNext()) {
+            transactions.add(transactionAdapter.read(in));
+        }
+        in.endArray();
+        return transactions;
+    }
+}
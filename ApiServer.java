@@ -0,0 +1,421 @@
+package BankManagementSystem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Local JSON API over BankService on the JDK's HttpServer, bound to the loopback
+// interface only. Started with "Main --server".
+//
+//   POST /accounts                          create an account
+//   POST /sessions                          sign in; returns a bearer token
+//   DELETE /sessions                        sign out
+//   GET  /accounts/{number}                 account and balance; ?asOf=2026-01-31T23:59 for
+//                                           the balance then (bank.persistence=ledger only)
+//   GET  /accounts/{number}/transactions    history, ?offset=0&limit=50, oldest first
+//   POST /accounts/{number}/deposits        {"amount":"12.50"}
+//   POST /accounts/{number}/withdrawals     {"amount":"12.50"}
+//   POST /accounts/{number}/transfers       {"to":"ACC...","amount":"12.50"}
+//
+// Everything under /accounts/{number} needs "Authorization: Bearer <token>" for a
+// session of that account. A known path asked for with another method gets 405 with
+// an Allow header. Amounts are decimal strings. Each request runs on its own
+// virtual thread where the JDK has them (21+) and on a bounded pool otherwise; at
+// most maxConcurrent requests are handled at once and the rest get 503 straight away.
+public class ApiServer {
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int TOKEN_BYTES = 32;
+    private static final Set<String> POST_ACTIONS = Set.of("deposits", "withdrawals", "transfers");
+
+    private static class Session {
+        final String accountNumber;
+        final long expiresAtMillis;
+
+        Session(String accountNumber, long expiresAtMillis) {
+            this.accountNumber = accountNumber;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    // Thrown by handlers to answer with a status other than 200
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        ApiException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private final BankService bankService;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final long tokenTtlMillis;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final Gson gson = new Gson();
+
+    public ApiServer(BankService bankService, int port, int maxConcurrent, int threads, int tokenMinutes)
+            throws IOException {
+        this.bankService = bankService;
+        this.permits = new Semaphore(Math.max(1, maxConcurrent));
+        this.tokenTtlMillis = TimeUnit.MINUTES.toMillis(Math.max(1, tokenMinutes));
+        this.executor = newExecutor(Math.max(1, threads));
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    // Lets requests in progress finish for up to delaySeconds
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    // Virtual threads are looked up reflectively so the server still runs on older JDKs
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            return Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "api-worker-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!permits.tryAcquire()) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                send(exchange, 503, error("Server is busy"));
+                return;
+            }
+            try {
+                send(exchange, 200, route(exchange));
+            } finally {
+                permits.release();
+            }
+        } catch (ApiException e) {
+            send(exchange, e.status, error(e.getMessage()));
+        } catch (IllegalArgumentException | JsonParseException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            send(exchange, 409, error(e.getMessage()));
+        } catch (RejectedExecutionException e) {
+            send(exchange, 503, error(e.getMessage()));
+        } catch (RuntimeException e) {
+            System.err.println("API request " + exchange.getRequestMethod() + " " + exchange.getRequestURI() +
+                    " failed: " + e);
+            send(exchange, 500, error("Internal error"));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Object route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+        if (path.length == 1 && "sessions".equals(path[0])) {
+            if ("POST".equals(method)) {
+                return signIn(readBody(exchange));
+            }
+            if ("DELETE".equals(method)) {
+                sessions.remove(bearerToken(exchange));
+                return new LinkedHashMap<>();
+            }
+            throw methodNotAllowed(exchange, "POST, DELETE");
+        }
+        if (path.length == 1 && "accounts".equals(path[0])) {
+            if ("POST".equals(method)) {
+                return createAccount(readBody(exchange));
+            }
+            throw methodNotAllowed(exchange, "POST");
+        }
+        if (path.length == 2 && "accounts".equals(path[0])) {
+            if (!"GET".equals(method)) {
+                throw methodNotAllowed(exchange, "GET");
+            }
+            requireSession(exchange, path[1]);
+            String asOf = queryParameters(exchange).get("asOf");
+            return accountView(asOf == null ? requireAccount(path[1]) : requireAccountAsOf(path[1], asOf));
+        }
+        if (path.length == 3 && "accounts".equals(path[0]) && "transactions".equals(path[2])) {
+            if (!"GET".equals(method)) {
+                throw methodNotAllowed(exchange, "GET");
+            }
+            requireSession(exchange, path[1]);
+            return transactions(path[1], queryParameters(exchange));
+        }
+        if (path.length == 3 && "accounts".equals(path[0]) && POST_ACTIONS.contains(path[2])) {
+            if (!"POST".equals(method)) {
+                throw methodNotAllowed(exchange, "POST");
+            }
+            requireSession(exchange, path[1]);
+            return post(path[1], path[2], readBody(exchange));
+        }
+        throw new ApiException(404, "No such endpoint: " + method + " " + exchange.getRequestURI().getPath());
+    }
+
+    // For a known path asked for with a method it does not take
+    private static ApiException methodNotAllowed(HttpExchange exchange, String allowed) {
+        exchange.getResponseHeaders().set("Allow", allowed);
+        return new ApiException(405, "Method " + exchange.getRequestMethod() + " not allowed for "
+                + exchange.getRequestURI().getPath() + "; use " + allowed);
+    }
+
+    private Object createAccount(JsonObject body) {
+        Account.AccountType accountType;
+        try {
+            accountType = Account.AccountType.valueOf(field(body, "accountType").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid account type: " + field(body, "accountType"));
+        }
+        String initialDeposit = field(body, "initialDeposit");
+        Account account = bankService.createAccount(field(body, "firstName"), field(body, "lastName"),
+                field(body, "email"), field(body, "phone"), accountType,
+                initialDeposit.isEmpty() ? 0 : Money.parse(initialDeposit), field(body, "password"));
+        return accountView(account);
+    }
+
+    private Object signIn(JsonObject body) {
+        String accountNumber = field(body, "accountNumber");
+        Account account;
+        try {
+            account = bankService.authenticate(accountNumber, field(body, "password"));
+        } catch (IllegalStateException e) {
+            // Throttled or too many sign-ins at once
+            throw new ApiException(429, e.getMessage());
+        }
+        if (account == null) {
+            throw new ApiException(401, "Invalid account number or password");
+        }
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> session.expiresAtMillis <= now);
+        byte[] tokenBytes = new byte[TOKEN_BYTES];
+        random.nextBytes(tokenBytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(tokenBytes);
+        Session session = new Session(account.getAccountNumber(), now + tokenTtlMillis);
+        sessions.put(token, session);
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("token", token);
+        response.put("accountNumber", session.accountNumber);
+        response.put("expiresInSeconds", tokenTtlMillis / 1000);
+        return response;
+    }
+
+    private Object post(String accountNumber, String action, JsonObject body) {
+        long amountCents = Money.parse(field(body, "amount"));
+        boolean found;
+        switch (action) {
+            case "deposits":
+                found = bankService.deposit(accountNumber, amountCents);
+                break;
+            case "withdrawals":
+                found = bankService.withdraw(accountNumber, amountCents);
+                break;
+            case "transfers":
+                found = bankService.transfer(accountNumber, field(body, "to"), amountCents);
+                break;
+            default:
+                throw new ApiException(404, "No such endpoint: POST /accounts/" + accountNumber + "/" + action);
+        }
+        if (!found) {
+            throw new ApiException(404, "Account not found");
+        }
+        return accountView(requireAccount(accountNumber));
+    }
+
+    private Object transactions(String accountNumber, Map<String, String> query) {
+        int offset = intParameter(query, "offset", 0);
+        int limit = Math.min(intParameter(query, "limit", 50), MAX_PAGE_SIZE);
+        if (offset < 0 || limit < 1) {
+            throw new IllegalArgumentException("offset must be >= 0 and limit >= 1");
+        }
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Transaction transaction : bankService.getTransactions(accountNumber, offset, limit)) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("id", transaction.getTransactionId());
+            row.put("type", transaction.getType().name());
+            row.put("amount", Money.format(transaction.getAmountCents()));
+            row.put("balanceAfter", Money.format(transaction.getBalanceAfterCents()));
+            row.put("timestamp", String.valueOf(transaction.getTimestamp()));
+            row.put("description", transaction.getDescription());
+            row.put("from", transaction.getFromAccount());
+            row.put("to", transaction.getToAccount());
+            rows.add(row);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("offset", offset);
+        response.put("total", bankService.getTransactionCount(accountNumber));
+        response.put("transactions", rows);
+        return response;
+    }
+
+    private Account requireAccount(String accountNumber) {
+        Account account = bankService.getAccount(accountNumber);
+        if (account == null) {
+            throw new ApiException(404, "Account not found");
+        }
+        return account;
+    }
+
+    private Account requireAccountAsOf(String accountNumber, String asOf) {
+        LocalDateTime time;
+        try {
+            time = LocalDateTime.parse(asOf);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid asOf: " + asOf);
+        }
+        Account account = bankService.getAccountAsOf(accountNumber, time);
+        if (account == null) {
+            throw new ApiException(404, "Account not found at " + asOf);
+        }
+        return account;
+    }
+
+    private void requireSession(HttpExchange exchange, String accountNumber) {
+        String token = bearerToken(exchange);
+        Session session = token == null ? null : sessions.get(token);
+        if (session == null || session.expiresAtMillis <= System.currentTimeMillis()) {
+            if (session != null) {
+                sessions.remove(token, session);
+            }
+            throw new ApiException(401, "Sign in first");
+        }
+        if (!session.accountNumber.equals(accountNumber)) {
+            throw new ApiException(403, "Token is for another account");
+        }
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        return header != null && header.startsWith("Bearer ") ? header.substring(7).trim() : null;
+    }
+
+    private static Map<String, Object> accountView(Account account) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("accountNumber", account.getAccountNumber());
+        view.put("name", account.getFullName());
+        view.put("email", account.getEmail());
+        view.put("accountType", account.getAccountType().name());
+        view.put("status", account.getStatus().name());
+        view.put("balance", Money.format(account.getBalanceCents()));
+        view.put("createdDate", String.valueOf(account.getCreatedDate()));
+        return view;
+    }
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException {
+        byte[] body;
+        try (InputStream in = exchange.getRequestBody()) {
+            body = in.readNBytes(MAX_BODY_BYTES + 1);
+        }
+        if (body.length > MAX_BODY_BYTES) {
+            throw new ApiException(413, "Request body is too large");
+        }
+        JsonElement element = JsonParser.parseString(new String(body, StandardCharsets.UTF_8));
+        if (!element.isJsonObject()) {
+            throw new IllegalArgumentException("Request body must be a JSON object");
+        }
+        return element.getAsJsonObject();
+    }
+
+    private static String field(JsonObject body, String name) {
+        JsonElement element = body.get(name);
+        if (element == null || element.isJsonNull()) {
+            return "";
+        }
+        if (!element.isJsonPrimitive()) {
+            throw new IllegalArgumentException(name + " must be a string or number");
+        }
+        return element.getAsString().trim();
+    }
+
+    private static Map<String, String> queryParameters(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parameters;
+    }
+
+    private static int intParameter(Map<String, String> query, String name, int defaultValue) {
+        String value = query.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + ": " + value);
+        }
+    }
+
+    private static Map<String, Object> error(String message) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("error", message);
+        return body;
+    }
+
+    private void send(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = gson.toJson(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
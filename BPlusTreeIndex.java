@@ -0,0 +1,404 @@
+package BankManagementSystem;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ObjLongConsumer;
+
+// Disk-resident B+tree from string keys to long values, in fixed 4 KB pages. An index
+// is written once, bottom-up from keys in ascending order, and is read-only after
+// that; a changed index is rebuilt into a new file and swapped in. A lookup reads one
+// page per level, and the most recently used pages are kept decoded in a small cache.
+//
+// Page 0 is the header. Leaves are written first, in key order and chained to the
+// next leaf, followed by each internal level up to the root. Keys are compared as
+// unsigned UTF-8 bytes (KEY_ORDER), which for ASCII keys is plain string order.
+public class BPlusTreeIndex implements Closeable {
+    public static final int PAGE_SIZE = 4096;
+    public static final int MAX_KEY_BYTES = 255;
+    public static final Comparator<String> KEY_ORDER =
+            (a, b) -> Arrays.compareUnsigned(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+
+    private static final int MAGIC = 0x42505449; // "BPTI"
+    private static final int FORMAT_VERSION = 1;
+    private static final byte LEAF = 0;
+    private static final byte INTERNAL = 1;
+
+    private static class Page {
+        final boolean leaf;
+        final byte[][] keys;
+        final long[] values;   // leaf only
+        final int[] children;  // internal only: children[i + 1] holds keys >= keys[i]
+        final int next;        // leaf only, -1 for the last leaf
+
+        Page(boolean leaf, byte[][] keys, long[] values, int[] children, int next) {
+            this.leaf = leaf;
+            this.keys = keys;
+            this.values = values;
+            this.children = children;
+            this.next = next;
+        }
+    }
+
+    private final Path file;
+    private final FileChannel channel;
+    private final int rootPage;
+    private final int height;
+    private final long entryCount;
+    private final long tagSize;
+    private final long tagChecksum;
+    private final Map<Integer, Page> cache;
+    private long pageReads;
+    private long cacheHits;
+
+    private BPlusTreeIndex(Path file, int cachePages) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        ByteBuffer header = readPageBuffer(0);
+        if (header.getInt() != MAGIC || header.getInt() != FORMAT_VERSION || header.getInt() != PAGE_SIZE) {
+            channel.close();
+            throw new IllegalStateException("Not a B+tree index: " + file);
+        }
+        this.rootPage = header.getInt();
+        this.height = header.getInt();
+        this.entryCount = header.getLong();
+        this.tagSize = header.getLong();
+        this.tagChecksum = header.getLong();
+        int capacity = Math.max(1, cachePages);
+        this.cache = new LinkedHashMap<Integer, Page>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public static BPlusTreeIndex open(Path file, int cachePages) {
+        try {
+            return new BPlusTreeIndex(file, cachePages);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open index " + file, e);
+        }
+    }
+
+    // Starts a new index at file; it only replaces file when finish() succeeds
+    public static Builder builder(Path file) {
+        try {
+            return new Builder(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create index " + file, e);
+        }
+    }
+
+    public long size() {
+        return entryCount;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    // True if the index was built from data with this size and checksum
+    public boolean isTaggedWith(long size, long checksum) {
+        return tagSize == size && tagChecksum == checksum;
+    }
+
+    // Value stored under key, or -1 if there is none
+    public long get(String key) {
+        byte[] target = key.getBytes(StandardCharsets.UTF_8);
+        Page page = findLeaf(target);
+        int index = search(page.keys, target);
+        return index >= 0 ? page.values[index] : -1;
+    }
+
+    // Up to limit keys strictly after the given one (or from the first key when null), in order
+    public List<String> keysAfter(String after, int limit) {
+        List<String> keys = new ArrayList<>(Math.min(limit, 1024));
+        byte[] from = after != null ? after.getBytes(StandardCharsets.UTF_8) : new byte[0];
+        Page page = findLeaf(from);
+        int index = after != null ? upperBound(page.keys, from) : 0;
+        while (keys.size() < limit) {
+            if (index == page.keys.length) {
+                if (page.next < 0) {
+                    break;
+                }
+                page = readPage(page.next);
+                index = 0;
+                continue;
+            }
+            keys.add(new String(page.keys[index++], StandardCharsets.UTF_8));
+        }
+        return keys;
+    }
+
+    // Visits every entry in key order by walking the leaf chain
+    public void forEach(ObjLongConsumer<String> action) {
+        Page page = findLeaf(new byte[0]);
+        while (true) {
+            for (int i = 0; i < page.keys.length; i++) {
+                action.accept(new String(page.keys[i], StandardCharsets.UTF_8), page.values[i]);
+            }
+            if (page.next < 0) {
+                return;
+            }
+            page = readPage(page.next);
+        }
+    }
+
+    public synchronized long getPageReads() {
+        return pageReads;
+    }
+
+    public synchronized long getCacheHits() {
+        return cacheHits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private Page findLeaf(byte[] key) {
+        Page page = readPage(rootPage);
+        while (!page.leaf) {
+            page = readPage(page.children[upperBound(page.keys, key)]);
+        }
+        return page;
+    }
+
+    private Page readPage(int pageNumber) {
+        synchronized (this) {
+            Page cached = cache.get(pageNumber);
+            if (cached != null) {
+                cacheHits++;
+                return cached;
+            }
+        }
+        Page page;
+        try {
+            page = decode(readPageBuffer(pageNumber));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read page " + pageNumber + " of index " + file, e);
+        }
+        synchronized (this) {
+            pageReads++;
+            cache.put(pageNumber, page);
+        }
+        return page;
+    }
+
+    private ByteBuffer readPageBuffer(int pageNumber) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PAGE_SIZE);
+        long position = (long) pageNumber * PAGE_SIZE;
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Index " + file + " is truncated at page " + pageNumber);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static Page decode(ByteBuffer buffer) {
+        boolean leaf = buffer.get() == LEAF;
+        int count = buffer.getShort() & 0xffff;
+        int link = buffer.getInt();
+        byte[][] keys = new byte[count][];
+        long[] values = leaf ? new long[count] : null;
+        int[] children = leaf ? null : new int[count + 1];
+        if (!leaf) {
+            children[0] = link;
+        }
+        for (int i = 0; i < count; i++) {
+            keys[i] = new byte[buffer.get() & 0xff];
+            buffer.get(keys[i]);
+            if (leaf) {
+                values[i] = buffer.getLong();
+            } else {
+                children[i + 1] = buffer.getInt();
+            }
+        }
+        return new Page(leaf, keys, values, children, leaf ? link : -1);
+    }
+
+    private static int search(byte[][] keys, byte[] key) {
+        int low = 0;
+        int high = keys.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = Arrays.compareUnsigned(keys[mid], key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    // Number of keys less than or equal to key
+    private static int upperBound(byte[][] keys, byte[] key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (Arrays.compareUnsigned(keys[mid], key) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Writes leaves as keys arrive, then each internal level from the first key and
+    // page number of every page on the level below
+    public static class Builder implements Closeable {
+        private final Path target;
+        private final Path tempFile;
+        private final FileChannel out;
+        private final ByteBuffer page = ByteBuffer.allocate(PAGE_SIZE);
+        private final List<byte[]> levelKeys = new ArrayList<>();
+        private final List<Integer> levelPages = new ArrayList<>();
+        private int nextPage = 1;
+        private int pageEntries;
+        private byte[] pageFirstKey;
+        private byte[] lastKey;
+        private long entryCount;
+        private boolean finished;
+
+        private Builder(Path target) throws IOException {
+            this.target = target;
+            this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+            this.out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE);
+            startPage(LEAF, -1);
+        }
+
+        // Keys must arrive in strictly ascending KEY_ORDER
+        public void add(String key, long value) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Index key longer than " + MAX_KEY_BYTES + " bytes: " + key);
+            }
+            if (lastKey != null && Arrays.compareUnsigned(lastKey, bytes) >= 0) {
+                throw new IllegalArgumentException("Index keys out of order at " + key);
+            }
+            try {
+                if (page.remaining() < 1 + bytes.length + 8) {
+                    // Not the last leaf, so it links to the page written next
+                    finishPage(nextPage + 1);
+                    startPage(LEAF, -1);
+                }
+                if (pageEntries == 0) {
+                    pageFirstKey = bytes;
+                }
+                page.put((byte) bytes.length).put(bytes).putLong(value);
+                pageEntries++;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write index " + target, e);
+            }
+            lastKey = bytes;
+            entryCount++;
+        }
+
+        // The tag identifies the data the index was built from, so a stale index can be detected
+        public void finish(long tagSize, long tagChecksum) {
+            try {
+                finishPage(-1);
+                int height = 1;
+                while (levelPages.size() > 1) {
+                    buildLevel();
+                    height++;
+                }
+                int root = levelPages.get(0);
+
+                ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+                header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(PAGE_SIZE).putInt(root).putInt(height)
+                        .putLong(entryCount).putLong(tagSize).putLong(tagChecksum);
+                header.clear();
+                write(header, 0);
+                out.force(true);
+                out.close();
+                Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                finished = true;
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to write index " + target, e);
+            }
+        }
+
+        // Abandons an unfinished build and removes its temporary file
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private void buildLevel() throws IOException {
+            List<byte[]> childKeys = new ArrayList<>(levelKeys);
+            List<Integer> childPages = new ArrayList<>(levelPages);
+            levelKeys.clear();
+            levelPages.clear();
+            startPage(INTERNAL, childPages.get(0));
+            pageFirstKey = childKeys.get(0);
+            for (int i = 1; i < childKeys.size(); i++) {
+                byte[] key = childKeys.get(i);
+                if (page.remaining() < 1 + key.length + 4) {
+                    finishPage(-1);
+                    startPage(INTERNAL, childPages.get(i));
+                    pageFirstKey = key;
+                    continue;
+                }
+                page.put((byte) key.length).put(key).putInt(childPages.get(i));
+                pageEntries++;
+            }
+            finishPage(-1);
+        }
+
+        // Page header: type, entry count, then the next leaf or the first child
+        private void startPage(byte type, int link) {
+            page.clear();
+            page.put(type).putShort((short) 0).putInt(link);
+            pageEntries = 0;
+            pageFirstKey = new byte[0];
+        }
+
+        // Leaves get their next-leaf link here; internal pages already hold their first child
+        private void finishPage(int nextLeaf) throws IOException {
+            page.putShort(1, (short) pageEntries);
+            if (page.get(0) == LEAF) {
+                page.putInt(3, nextLeaf);
+            }
+            page.position(PAGE_SIZE);
+            page.flip();
+            write(page, nextPage);
+            levelKeys.add(pageFirstKey);
+            levelPages.add(nextPage);
+            nextPage++;
+        }
+
+        private void write(ByteBuffer buffer, int pageNumber) throws IOException {
+            long position = (long) pageNumber * PAGE_SIZE;
+            while (buffer.hasRemaining()) {
+                position += out.write(buffer, position);
+            }
+        }
+    }
+}
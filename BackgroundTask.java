@@ -0,0 +1,43 @@
+package BankManagementSystem;
+
+import javax.swing.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+// Runs one BankService call on a SwingWorker thread and hands the outcome back on
+// the EDT. A cancelled task never reports its result.
+public class BackgroundTask<T> extends SwingWorker<T, Void> {
+    private final Callable<T> work;
+    private final Consumer<T> onSuccess;
+    private final Consumer<Exception> onFailure;
+    private final Runnable onFinished;
+
+    BackgroundTask(Callable<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure, Runnable onFinished) {
+        this.work = work;
+        this.onSuccess = onSuccess;
+        this.onFailure = onFailure;
+        this.onFinished = onFinished;
+    }
+
+    @Override
+    protected T doInBackground() throws Exception {
+        return work.call();
+    }
+
+    @Override
+    protected void done() {
+        onFinished.run();
+        if (isCancelled()) {
+            return;
+        }
+        try {
+            onSuccess.accept(get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            onFailure.accept(cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
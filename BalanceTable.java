@@ -0,0 +1,332 @@
+package BankManagementSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Memory-mapped open-addressing table of fixed-width records holding the hot part of
+// each account: balance, status and a version that counts balance changes. When it is
+// enabled, deposits, withdrawals and transfers read the balance they check from here
+// and write the new one back in place, with no object or JSON in between. Opening it
+// only maps the file; other processes can map it too, to read balances without
+// parsing accounts.json.
+//
+// The snapshot and journal stay authoritative: a slot is repaired from the account
+// recovered from them when that account is loaded, in case it missed an update, or
+// kept one that never became durable, before a crash.
+//
+// Layout: a 32-byte header (magic, format version, capacity, size) followed by
+// capacity 32-byte slots (key hash, balance cents, version, status, used flag). The
+// file is mapped in 1 GB chunks, which slots never straddle, so it can grow past the
+// 2 GB a single mapping can address.
+public class BalanceTable implements Closeable {
+    private static final int MAGIC = 0x4254424C; // "BTBL"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int SLOT_SIZE = 32;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 30;
+    private static final int CHUNK_SHIFT = 30;
+    private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+    private static final int HASH_OFFSET = 0;
+    private static final int BALANCE_OFFSET = 8;
+    private static final int VERSION_OFFSET = 16;
+    private static final int STATUS_OFFSET = 24;
+    private static final int USED_OFFSET = 28;
+
+    private static final Account.AccountStatus[] STATUSES = Account.AccountStatus.values();
+
+    private final Path file;
+    // Updates to existing slots share the read side; inserts and growth take the write side
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private Mapping mapping;
+    private int capacity;
+    private int size;
+
+    // The file mapped chunk by chunk, addressed by long offsets
+    private static class Mapping {
+        final MappedByteBuffer[] chunks;
+
+        Mapping(FileChannel channel, long length) throws IOException {
+            chunks = new MappedByteBuffer[(int) ((length + CHUNK_MASK) >>> CHUNK_SHIFT)];
+            for (int i = 0; i < chunks.length; i++) {
+                long position = (long) i << CHUNK_SHIFT;
+                chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                        Math.min(CHUNK_MASK + 1, length - position));
+            }
+        }
+
+        long getLong(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getLong((int) (offset & CHUNK_MASK));
+        }
+
+        int getInt(long offset) {
+            return chunks[(int) (offset >>> CHUNK_SHIFT)].getInt((int) (offset & CHUNK_MASK));
+        }
+
+        void putLong(long offset, long value) {
+            chunks[(int) (offset >>> CHUNK_SHIFT)].putLong((int) (offset & CHUNK_MASK), value);
+        }
+
+        void putInt(long offset, int value) {
+            chunks[(int) (offset >>> CHUNK_SHIFT)].putInt((int) (offset & CHUNK_MASK), value);
+        }
+
+        void force() {
+            for (MappedByteBuffer chunk : chunks) {
+                chunk.force();
+            }
+        }
+    }
+
+    public BalanceTable(Path file) {
+        this.file = file;
+        try {
+            if (Files.exists(file) && Files.size(file) >= HEADER_SIZE) {
+                map(file);
+                if (mapping.getInt(0) != MAGIC || mapping.getInt(4) != FORMAT_VERSION) {
+                    throw new IllegalStateException("Not a balance table: " + file);
+                }
+                capacity = mapping.getInt(8);
+                size = mapping.getInt(12);
+            } else {
+                create(file, INITIAL_CAPACITY);
+                map(file);
+                capacity = INITIAL_CAPACITY;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open balance table " + file, e);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean contains(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            return mapping.getInt(slotOffset(find(hash(accountNumber))) + USED_OFFSET) != 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Balance in cents, or defaultValue if the account is not in the table
+    public long getBalanceCents(String accountNumber, long defaultValue) {
+        lock.readLock().lock();
+        try {
+            long offset = slotOffset(find(hash(accountNumber)));
+            return mapping.getInt(offset + USED_OFFSET) != 0 ? mapping.getLong(offset + BALANCE_OFFSET) : defaultValue;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getVersion(String accountNumber) {
+        lock.readLock().lock();
+        try {
+            long offset = slotOffset(find(hash(accountNumber)));
+            return mapping.getInt(offset + USED_OFFSET) != 0 ? mapping.getLong(offset + VERSION_OFFSET) : 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Callers serialize updates per account (stripe lock or the sequencer thread)
+    public void put(Account account) {
+        long hash = hash(account.getAccountNumber());
+        lock.readLock().lock();
+        try {
+            long offset = slotOffset(find(hash));
+            if (mapping.getInt(offset + USED_OFFSET) != 0) {
+                write(offset, account);
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        insert(hash, account);
+    }
+
+    // Brings the account's slot in line with it; returns false if it already was
+    public boolean reconcile(Account account) {
+        long hash = hash(account.getAccountNumber());
+        lock.readLock().lock();
+        try {
+            long offset = slotOffset(find(hash));
+            if (mapping.getInt(offset + USED_OFFSET) != 0
+                    && mapping.getLong(offset + BALANCE_OFFSET) == account.getBalanceCents()
+                    && mapping.getInt(offset + STATUS_OFFSET) == account.getStatus().ordinal()) {
+                return false;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        put(account);
+        return true;
+    }
+
+    public void force() {
+        lock.readLock().lock();
+        try {
+            mapping.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            mapping.force();
+            channel.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void insert(long hash, Account account) {
+        lock.writeLock().lock();
+        try {
+            long offset = slotOffset(find(hash));
+            if (mapping.getInt(offset + USED_OFFSET) == 0) {
+                // Keep the load factor under one half so probe chains stay short
+                if ((size + 1L) * 2 > capacity) {
+                    grow();
+                    offset = slotOffset(find(hash));
+                }
+                mapping.putLong(offset + HASH_OFFSET, hash);
+                mapping.putLong(offset + VERSION_OFFSET, 0);
+                mapping.putInt(offset + USED_OFFSET, 1);
+                size++;
+                mapping.putInt(12, size);
+            }
+            write(offset, account);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void write(long offset, Account account) {
+        mapping.putLong(offset + BALANCE_OFFSET, account.getBalanceCents());
+        mapping.putInt(offset + STATUS_OFFSET, account.getStatus().ordinal());
+        mapping.putLong(offset + VERSION_OFFSET, mapping.getLong(offset + VERSION_OFFSET) + 1);
+    }
+
+    // Linear probing; returns the slot holding the hash or the empty slot where it belongs
+    private int find(long hash) {
+        int mask = capacity - 1;
+        int slot = (int) (mix(hash) & mask);
+        while (true) {
+            long offset = slotOffset(slot);
+            if (mapping.getInt(offset + USED_OFFSET) == 0 || mapping.getLong(offset + HASH_OFFSET) == hash) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    // Rehashes into a file twice the size and swaps it in atomically
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) {
+            throw new IllegalStateException("Balance table " + file + " is full");
+        }
+        int newCapacity = capacity * 2;
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            create(tempFile, newCapacity);
+            try (FileChannel tempChannel = FileChannel.open(tempFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                Mapping target = new Mapping(tempChannel, fileSize(newCapacity));
+                int mask = newCapacity - 1;
+                for (int slot = 0; slot < capacity; slot++) {
+                    long offset = slotOffset(slot);
+                    if (mapping.getInt(offset + USED_OFFSET) == 0) {
+                        continue;
+                    }
+                    int targetSlot = (int) (mix(mapping.getLong(offset + HASH_OFFSET)) & mask);
+                    while (target.getInt(slotOffset(targetSlot) + USED_OFFSET) != 0) {
+                        targetSlot = (targetSlot + 1) & mask;
+                    }
+                    for (int i = 0; i < SLOT_SIZE; i += 8) {
+                        target.putLong(slotOffset(targetSlot) + i, mapping.getLong(offset + i));
+                    }
+                }
+                target.putInt(12, size);
+                target.force();
+            }
+            channel.close();
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            map(file);
+            capacity = newCapacity;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to grow balance table " + file, e);
+        }
+    }
+
+    private void map(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapping = new Mapping(channel, channel.size());
+    }
+
+    // The slots are left sparse, reading as zeros, that is unused
+    private static void create(Path path, int capacity) throws IOException {
+        try (FileChannel created = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(8, capacity);
+            header.putInt(12, 0);
+            while (header.hasRemaining()) {
+                created.write(header, header.position());
+            }
+            created.write(ByteBuffer.allocate(1), fileSize(capacity) - 1);
+            created.force(true);
+        }
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + (long) capacity * SLOT_SIZE;
+    }
+
+    static long slotOffset(int slot) {
+        return HEADER_SIZE + (long) slot * SLOT_SIZE;
+    }
+
+    // FNV-1a over the account number; 64 bits keeps collisions negligible at any
+    // realistic number of accounts
+    static long hash(String accountNumber) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < accountNumber.length(); i++) {
+            hash ^= accountNumber.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        return hash ^ (hash >>> 33);
+    }
+
+    public static Account.AccountStatus statusOf(int ordinal) {
+        return STATUSES[ordinal];
+    }
+}
@@ -0,0 +1,207 @@
+package BankManagementSystem;
+
+public class BankConfig {
+    // Settings are read from system properties, e.g. -Dbank.persistence=snapshot
+    public static final String PERSISTENCE_JOURNAL = "journal";
+    public static final String PERSISTENCE_SNAPSHOT = "snapshot";
+    public static final String PERSISTENCE_LEDGER = "ledger";
+    public static final String SNAPSHOT_COMPACT = "compact";
+    public static final String SNAPSHOT_PRETTY = "pretty";
+    public static final String CONCURRENCY_LOCKING = "locking";
+    public static final String CONCURRENCY_SEQUENCER = "sequencer";
+    public static final String INTEREST_MONTHLY = "monthly";
+    public static final String INTEREST_DAILY = "daily";
+    public static final String RESIDENCY_FULL = "full";
+    public static final String RESIDENCY_INDEXED = "indexed";
+
+    private BankConfig() {
+    }
+
+    // Directory holding every data file; relative paths resolve against the working directory
+    public static String getDataDir() {
+        String value = System.getProperty("bank.dataDir");
+        return value == null || value.trim().isEmpty() ? "BankData" : value.trim();
+    }
+
+    // ledger is journal persistence that keeps every journal segment, see Ledger
+    public static String getPersistenceMode() {
+        return getString("bank.persistence", PERSISTENCE_JOURNAL);
+    }
+
+    public static int getCheckpointEntries() {
+        return getInt("bank.journal.checkpointEntries", 10000);
+    }
+
+    public static String getSnapshotFormat() {
+        return getString("bank.snapshot.format", SNAPSHOT_COMPACT);
+    }
+
+    public static String getStorageEngine() {
+        return getString("bank.storage.engine", StorageEngine.JSON);
+    }
+
+    public static GroupCommitLog.SyncPolicy getJournalSyncPolicy() {
+        String policy = getString("bank.journal.fsync", "batched");
+        try {
+            return GroupCommitLog.SyncPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown bank.journal.fsync policy: " + policy + ", using batched");
+            return GroupCommitLog.SyncPolicy.BATCHED;
+        }
+    }
+
+    public static int getJournalBatchSize() {
+        return getInt("bank.journal.batchSize", 256);
+    }
+
+    public static int getJournalBatchWindowMicros() {
+        return getInt("bank.journal.batchWindowMicros", 1000);
+    }
+
+    public static int getJournalSyncIntervalMillis() {
+        return getInt("bank.journal.syncIntervalMillis", 1000);
+    }
+
+    public static String getConcurrencyMode() {
+        return getString("bank.concurrency", CONCURRENCY_LOCKING);
+    }
+
+    public static int getSequencerCapacity() {
+        return getInt("bank.sequencer.capacity", 4096);
+    }
+
+    public static int getSequencerBatchSize() {
+        return getInt("bank.sequencer.batchSize", 256);
+    }
+
+    public static CommandSequencer.OverflowPolicy getSequencerOverflowPolicy() {
+        String policy = getString("bank.sequencer.overflow", "block");
+        try {
+            return CommandSequencer.OverflowPolicy.valueOf(policy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown bank.sequencer.overflow policy: " + policy + ", using block");
+            return CommandSequencer.OverflowPolicy.BLOCK;
+        }
+    }
+
+    public static String getInterestMode() {
+        return getString("bank.interest.mode", INTEREST_MONTHLY);
+    }
+
+    public static int getInterestAccrualPassMinutes() {
+        return getInt("bank.interest.accrualPassMinutes", 60);
+    }
+
+    public static int getInterestParallelism() {
+        return getInt("bank.interest.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int getInterestChunkSize() {
+        return getInt("bank.interest.chunkSize", 1000);
+    }
+
+    // indexed keeps the binary snapshot on disk behind B+tree indexes instead of loading it
+    public static String getResidency() {
+        return getString("bank.residency", RESIDENCY_FULL);
+    }
+
+    // Accounts kept in memory in indexed residency, besides those changed since the last checkpoint
+    public static int getIndexCacheAccounts() {
+        return getInt("bank.index.cacheAccounts", 100000);
+    }
+
+    // 4 KB index pages cached per index
+    public static int getIndexCachePages() {
+        return getInt("bank.index.cachePages", 1024);
+    }
+
+    // History rows whose offsets are kept in memory, over all accounts (16 bytes each)
+    public static int getHistoryIndexRows() {
+        return getInt("bank.history.indexRows", 4_000_000);
+    }
+
+    // History files kept open for appending
+    public static int getHistoryOpenFiles() {
+        return getInt("bank.history.openFiles", 256);
+    }
+
+    // Threads verifying passwords, and logins allowed to wait for one before being turned away
+    public static int getAuthParallelism() {
+        return getInt("bank.auth.parallelism", Runtime.getRuntime().availableProcessors());
+    }
+
+    public static int getAuthQueueSize() {
+        return getInt("bank.auth.queueSize", 64);
+    }
+
+    // Wrong passwords per account before it is locked out; the lockout doubles with every further failure
+    public static int getAuthMaxFailures() {
+        return getInt("bank.auth.maxFailures", 5);
+    }
+
+    public static int getAuthLockoutSeconds() {
+        return getInt("bank.auth.lockoutSeconds", 30);
+    }
+
+    // Local HTTP API ("Main --server"); always bound to the loopback interface
+    public static int getApiPort() {
+        return getInt("bank.api.port", 8080);
+    }
+
+    // Requests handled at once; further requests are answered 503 without queueing
+    public static int getApiMaxConcurrent() {
+        return getInt("bank.api.maxConcurrent", 256);
+    }
+
+    // Worker threads on JDKs without virtual threads
+    public static int getApiThreads() {
+        return getInt("bank.api.threads", 64);
+    }
+
+    public static int getApiTokenMinutes() {
+        return getInt("bank.api.tokenMinutes", 15);
+    }
+
+    // Keeps balances in the memory-mapped BankData/balances.dat, where the hot path reads them
+    public static boolean isBalanceTableEnabled() {
+        return Boolean.parseBoolean(getString("bank.balanceTable", "false"));
+    }
+
+    // Publishes MetricsRegistry's metrics as MBeans in the platform MBean server
+    public static boolean isMetricsJmxEnabled() {
+        return Boolean.parseBoolean(getString("bank.metrics.jmx", "true"));
+    }
+
+    // File the metrics are appended to as JSON lines; null for none
+    public static String getMetricsFile() {
+        String value = System.getProperty("bank.metrics.file");
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    public static int getMetricsIntervalSeconds() {
+        return getInt("bank.metrics.intervalSeconds", 60);
+    }
+
+    // Must differ between processes that generate ids for the same data
+    public static int getNodeId() {
+        return getInt("bank.node.id", 0);
+    }
+
+    static String getString(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : value.trim().toLowerCase();
+    }
+
+    static int getInt(String key, int defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.err.println("Invalid value for " + key + ": " + value + ", using " + defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package BankManagementSystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder event for one blocking BankService call, from entry until its result
+// is durable; see bank.jfc. Account numbers are recorded as hashes only.
+//
+// begin() returns null unless a recording has enabled the event, so with JFR off a
+// call costs one static check and allocates nothing.
+@Name("bank.Operation")
+@Label("Bank Operation")
+@Category("Bank")
+@Description("A BankService call, from entry until its result is durable")
+@StackTrace(false)
+public class BankOperationEvent extends Event {
+    public static final String OK = "OK";
+    // The call returned false or null: unknown account, wrong password
+    public static final String DECLINED = "DECLINED";
+
+    private static final String[] AMOUNT_BUCKETS = new String[19];
+
+    static {
+        long from = 1;
+        AMOUNT_BUCKETS[0] = "0-0.99";
+        for (int i = 1; i < AMOUNT_BUCKETS.length; i++) {
+            AMOUNT_BUCKETS[i] = from + "-" + (from * 10 - 1) + ".99";
+            from *= 10;
+        }
+    }
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Account Hash")
+    @Description("String hash of the account number")
+    int accountHash;
+
+    @Label("Target Account Hash")
+    @Description("String hash of the receiving account number, for transfers")
+    int targetAccountHash;
+
+    @Label("Amount Bucket")
+    @Description("Power-of-ten range the amount falls in")
+    String amountBucket;
+
+    @Label("Outcome")
+    @Description("OK, DECLINED or the simple name of the exception thrown")
+    String outcome;
+
+    public static BankOperationEvent begin(String operation, String accountNumber, String targetAccountNumber,
+                                           long amountCents) {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        BankOperationEvent event = new BankOperationEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.accountHash = accountNumber == null ? 0 : accountNumber.hashCode();
+        event.targetAccountHash = targetAccountNumber == null ? 0 : targetAccountNumber.hashCode();
+        event.amountBucket = amountCents > 0 ? amountBucket(amountCents) : null;
+        event.begin();
+        return event;
+    }
+
+    // Commits the event if there is one and it passes the recording's threshold
+    public static void end(BankOperationEvent event, String outcome) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    private static String amountBucket(long amountCents) {
+        int digits = 0;
+        for (long units = amountCents / 100; units > 0; units /= 10) {
+            digits++;
+        }
+        return AMOUNT_BUCKETS[Math.min(digits, AMOUNT_BUCKETS.length - 1)];
+    }
+}
@@ -1,18 +1,321 @@
 package BankManagementSystem;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 public class BankService {
-    private final DatabaseManager dbManager;
+    private static final int LOCK_STRIPES = 64;
+    private static final int ACCRUAL_PASS_BATCH = 256;
+    private static final int SCAN_BATCH = 1024;
 
-    public BankService(DatabaseManager dbManager) {
-        this.dbManager = dbManager;
+    private final AccountRepository repository;
+    // Resident account store, loaded once and written through to disk on every change.
+    // In indexed residency it is a cache in front of the on-disk snapshot: accounts
+    // changed since the last checkpoint stay until the checkpoint has merged them into
+    // the snapshot, and other accounts are dropped once there are more than cacheCapacity.
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    private final boolean indexed;
+    private final Map<String, Account> changedAccounts = new ConcurrentHashMap<>();
+    private final int cacheCapacity;
+    // Transaction history lives on disk and is only read a page at a time
+    private final TransactionStore historyStore;
+    // Optional memory-mapped store that deposits, withdrawals and transfers read and
+    // update balances in
+    private final BalanceTable balanceTable;
+
+    // Account updates lock the stripe(s) of the accounts involved, so operations on
+    // different accounts run in parallel. The state lock is taken shared by every
+    // update and exclusively when the whole store must be consistent (checkpoints,
+    // full snapshot saves).
+    private final ReentrantLock[] accountLocks = new ReentrantLock[LOCK_STRIPES];
+    private final ReadWriteLock stateLock =
+            MetricsRegistry.getInstance().instrument("state", new ReentrantReadWriteLock());
+    // Registrations reserve their email here instead of scanning every account
+    private final EmailIndex emailIndex = new EmailIndex();
+    private final InterestEngine interestEngine;
+    // Logins are verified on their own bounded pool, with per-account throttling
+    private final CredentialService credentials;
+
+    // In sequencer mode all updates are applied by one writer thread instead of under locks
+    private final CommandSequencer sequencer;
+    // Rolls back operations whose journal record fails after their locks were released,
+    // one at a time in the order the failures are reported
+    private final ExecutorService rollbackExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "bank-rollback");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // In daily interest mode each account accrues when it is next read or changed; a
+    // low-priority pass picks up accounts nobody touches
+    private final boolean dailyInterest;
+    private final ScheduledExecutorService accrualScheduler;
+
+    // Timed at the blocking entry points, which the GUI and the HTTP API call
+    private final MetricsRegistry.Timer createAccountTimer;
+    private final MetricsRegistry.Timer authenticateTimer;
+    private final MetricsRegistry.Timer depositTimer;
+    private final MetricsRegistry.Timer withdrawTimer;
+    private final MetricsRegistry.Timer transferTimer;
+    private final MetricsRegistry.Timer getAccountTimer;
+    private final MetricsRegistry.Timer getAccountAsOfTimer;
+    private final MetricsRegistry.Timer getTransactionsTimer;
+    private final MetricsRegistry.Timer interestTimer;
+    // The Bank gauges: totals at startup plus every registration and history row since.
+    // In indexed residency the snapshot's transactions are summed by a background walk;
+    // while it runs, accounts changed for the first time leave the count they had
+    // before in countsBeforeChange, since a checkpoint may write the newer one to disk.
+    private final AtomicLong accountCount = new AtomicLong();
+    private final LongAdder transactionCount = new LongAdder();
+    private volatile boolean transactionsCounted;
+    private volatile Map<String, Integer> countsBeforeChange;
+    private volatile boolean shuttingDown;
+    private Thread countThread;
+
+    public BankService(AccountRepository repository) {
+        this.repository = repository;
+        this.historyStore = repository.getTransactionStore();
+        this.balanceTable = repository.getBalanceTable();
+        this.indexed = repository.isIndexed();
+        this.cacheCapacity = Math.max(1, BankConfig.getIndexCacheAccounts());
+        this.interestEngine = new InterestEngine(repository.getInterestDirectory(),
+                BankConfig.getInterestParallelism(), BankConfig.getInterestChunkSize());
+        this.credentials = new CredentialService(BankConfig.getAuthParallelism(), BankConfig.getAuthQueueSize(),
+                BankConfig.getAuthMaxFailures(), BankConfig.getAuthLockoutSeconds());
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            accountLocks[i] = new ReentrantLock();
+        }
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        this.createAccountTimer = metrics.timer("Operation", "createAccount");
+        this.authenticateTimer = metrics.timer("Operation", "authenticate");
+        this.depositTimer = metrics.timer("Operation", "deposit");
+        this.withdrawTimer = metrics.timer("Operation", "withdraw");
+        this.transferTimer = metrics.timer("Operation", "transfer");
+        this.getAccountTimer = metrics.timer("Operation", "getAccount");
+        this.getAccountAsOfTimer = metrics.timer("Operation", "getAccountAsOf");
+        this.getTransactionsTimer = metrics.timer("Operation", "getTransactions");
+        this.interestTimer = metrics.timer("Operation", "calculateInterest");
+        int repaired = 0;
+        for (Account account : repository.loadAccounts()) {
+            accounts.put(account.getAccountNumber(), account);
+            emailIndex.add(account);
+            if (indexed) {
+                changedAccounts.put(account.getAccountNumber(), account);
+            }
+            if (balanceTable != null && balanceTable.reconcile(account)) {
+                repaired++;
+            }
+        }
+        if (repaired > 0) {
+            // The table is forced at checkpoints only, so after a crash slots can be
+            // behind or ahead of the journal
+            System.err.println("Balance table: repaired " + repaired + " slot(s) from the journal");
+        }
+        startCounting();
+        metrics.gauge("Bank", "Accounts", accountCount::get);
+        metrics.gauge("Bank", "Transactions", () -> transactionsCounted ? transactionCount.sum() : -1L);
+        if (BankConfig.CONCURRENCY_SEQUENCER.equals(BankConfig.getConcurrencyMode())) {
+            this.sequencer = new CommandSequencer(
+                    BankConfig.getSequencerCapacity(),
+                    BankConfig.getSequencerBatchSize(),
+                    BankConfig.getSequencerOverflowPolicy(),
+                    this::checkpointFromWriter);
+        } else {
+            this.sequencer = null;
+        }
+
+        this.dailyInterest = BankConfig.INTEREST_DAILY.equals(BankConfig.getInterestMode());
+        if (dailyInterest) {
+            startAccruing();
+            long passMinutes = Math.max(1, BankConfig.getInterestAccrualPassMinutes());
+            this.accrualScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "interest-accrual");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            accrualScheduler.scheduleWithFixedDelay(this::runAccrualPass, passMinutes, passMinutes, TimeUnit.MINUTES);
+        } else {
+            this.accrualScheduler = null;
+        }
+    }
+
+    // Accounts that predate daily mode start accruing now rather than from their creation
+    private void startAccruing() {
+        LocalDateTime now = LocalDateTime.now();
+        boolean initialized = false;
+        for (Account listed : allAccounts()) {
+            if (listed.getLastAccruedAt() == null) {
+                Account account = lookup(listed.getAccountNumber());
+                account.setLastAccruedAt(now);
+                initialized = true;
+                if (indexed) {
+                    changedAccounts.put(account.getAccountNumber(), account);
+                    if (changedAccounts.size() >= cacheCapacity) {
+                        checkpointNow();
+                    }
+                }
+            }
+        }
+        if (initialized) {
+            if (repository.isJournalEnabled()) {
+                checkpointNow();
+            } else {
+                repository.saveAccounts(new ArrayList<>(accounts.values()));
+            }
+        }
+    }
+
+    private void startCounting() {
+        if (!indexed) {
+            for (Account account : accounts.values()) {
+                accountCount.incrementAndGet();
+                transactionCount.add(account.getTransactionCount());
+            }
+            transactionsCounted = true;
+            return;
+        }
+        // Accounts changed since the last checkpoint are counted as loaded; the walk skips them
+        Set<String> loaded = new HashSet<>(changedAccounts.keySet());
+        long created = 0;
+        for (Account account : changedAccounts.values()) {
+            if (repository.findAccount(account.getAccountNumber()) == null) {
+                created++;
+            }
+            transactionCount.add(account.getTransactionCount());
+        }
+        accountCount.set(repository.countAccounts() + created);
+        countsBeforeChange = new ConcurrentHashMap<>();
+        countThread = new Thread(() -> countSnapshotTransactions(loaded), "transaction-count");
+        countThread.setDaemon(true);
+        countThread.setPriority(Thread.MIN_PRIORITY);
+        countThread.start();
+    }
+
+    private void countSnapshotTransactions(Set<String> loaded) {
+        long total = 0;
+        try {
+            List<String> batch = repository.accountNumbersAfter(null, SCAN_BATCH);
+            while (!batch.isEmpty() && !shuttingDown) {
+                for (String accountNumber : batch) {
+                    if (loaded.contains(accountNumber)) {
+                        continue;
+                    }
+                    // Disk first: a count left before a change predates any checkpoint of it
+                    Account onDisk = repository.findAccount(accountNumber);
+                    Integer before = countsBeforeChange.get(accountNumber);
+                    if (before != null) {
+                        total += before;
+                    } else if (onDisk != null) {
+                        total += onDisk.getTransactionCount();
+                    }
+                }
+                if (batch.size() < SCAN_BATCH) {
+                    break;
+                }
+                batch = repository.accountNumbersAfter(batch.get(batch.size() - 1), SCAN_BATCH);
+            }
+        } catch (RuntimeException e) {
+            if (!shuttingDown) {
+                System.err.println("Failed to count transactions: " + e.getMessage());
+            }
+            return;
+        }
+        if (!shuttingDown) {
+            transactionCount.add(total);
+            countsBeforeChange = null;
+            transactionsCounted = true;
+        }
     }
 
     public Account createAccount(String firstName, String lastName, String email, String phone,
-                                 Account.AccountType accountType, double initialDeposit, String password) {
+                                 Account.AccountType accountType, long initialDepositCents, String password) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("createAccount", null, null, initialDepositCents);
+        return await(createAccountTimer, event, start,
+                createAccountAsync(firstName, lastName, email, phone, accountType, initialDepositCents, password));
+    }
+
+    public CompletableFuture<Account> createAccountAsync(String firstName, String lastName, String email, String phone,
+                                                         Account.AccountType accountType, long initialDepositCents,
+                                                         String password) {
+        Account account;
+        try {
+            account = prepareAccount(firstName, lastName, email, phone, accountType, initialDepositCents, password);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        // The reservation is atomic, so two registrations for one email cannot both pass.
+        // In indexed residency the in-memory index only holds emails registered since the
+        // last checkpoint; older ones are on disk. The disk is checked after reserving,
+        // because a checkpoint drops emails from memory only once they are on disk.
+        if (!emailIndex.reserve(account.getEmail(), account.getAccountNumber())) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Email already registered"));
+        }
+        if (indexed && repository.findAccountByEmail(account.getEmail()) != null) {
+            emailIndex.release(account.getEmail(), account.getAccountNumber());
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Email already registered"));
+        }
+
+        CompletableFuture<Account> result;
+        if (sequencer != null) {
+            result = sequencer.submit(() -> applyRegistration(account, initialDepositCents));
+        } else {
+            result = runLocked(() -> {
+                Lock operationLock = operationLock();
+                operationLock.lock();
+                try {
+                    return applyRegistration(account, initialDepositCents);
+                } finally {
+                    operationLock.unlock();
+                }
+            });
+        }
+        return result.whenComplete((created, error) -> {
+            // Rolled back if saving it failed, unless it was changed in the meantime; an
+            // account that stays keeps its email
+            if (error != null && !accounts.containsKey(account.getAccountNumber())) {
+                emailIndex.release(account.getEmail(), account.getAccountNumber());
+            } else {
+                emailIndex.commit(account.getEmail(), account.getAccountNumber());
+                if (indexed && !changedAccounts.containsKey(account.getAccountNumber())) {
+                    // Checkpointed before it was committed, so the checkpoint kept it
+                    emailIndex.evict(account.getEmail(), account.getAccountNumber());
+                }
+            }
+        });
+    }
+
+    // Validation and password hashing happen on the caller's thread, outside any lock
+    private Account prepareAccount(String firstName, String lastName, String email, String phone,
+                                   Account.AccountType accountType, long initialDepositCents, String password) {
         // Validation
         if (firstName == null || firstName.trim().isEmpty()) {
             throw new IllegalArgumentException("First name is required");
@@ -29,126 +332,263 @@ public class BankService {
         if (!SecurityUtil.isValidPassword(password)) {
             throw new IllegalArgumentException("Password must be at least 8 characters with uppercase, lowercase, and numbers");
         }
-        if (initialDeposit < 0) {
+        if (initialDepositCents < 0) {
             throw new IllegalArgumentException("Initial deposit cannot be negative");
         }
 
-        // Check if email already exists
-        List<Account> accounts = dbManager.loadAccounts();
-        boolean emailExists = accounts.stream()
-                .anyMatch(acc -> acc.getEmail().equalsIgnoreCase(email));
-        if (emailExists) {
-            throw new IllegalArgumentException("Email already registered");
-        }
-
         String accountNumber = SecurityUtil.generateAccountNumber();
         String passwordHash = SecurityUtil.hashPassword(password);
 
         Account account = new Account(accountNumber, firstName, lastName, email, phone,
-                accountType, initialDeposit, passwordHash);
+                accountType, initialDepositCents, passwordHash);
+        if (dailyInterest) {
+            account.setLastAccruedAt(account.getCreatedDate());
+        }
+        return account;
+    }
 
-        if (initialDeposit > 0) {
-            Transaction initialTransaction = new Transaction(
+    private CompletableFuture<Account> applyRegistration(Account account, long initialDepositCents) {
+        Transaction initialTransaction = null;
+        if (initialDepositCents > 0) {
+            initialTransaction = new Transaction(
                     Transaction.TransactionType.DEPOSIT,
-                    initialDeposit,
-                    initialDeposit,
+                    initialDepositCents,
+                    initialDepositCents,
                     "Initial deposit"
             );
-            account.addTransaction(initialTransaction);
+            appendHistory(account, initialTransaction);
         }
 
-        accounts.add(account);
-        dbManager.saveAccounts(accounts);
-
-        return account;
+        accounts.put(account.getAccountNumber(), account);
+        accountCount.incrementAndGet();
+        if (balanceTable != null) {
+            balanceTable.put(account);
+        }
+        return persist(JournalEntry.accountCreated(account, initialTransaction), Change.created(account))
+                .thenApply(v -> account);
     }
 
     public Account authenticate(String accountNumber, String password) {
-        List<Account> accounts = dbManager.loadAccounts();
-        Optional<Account> accountOpt = accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-                .findFirst();
-
-        if (accountOpt.isPresent()) {
-            Account account = accountOpt.get();
-            if (account.getStatus() == Account.AccountStatus.ACTIVE &&
-                    SecurityUtil.verifyPassword(password, account.getPasswordHash())) {
-                return account;
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("authenticate", accountNumber, null, 0);
+        return await(authenticateTimer, event, start, authenticateAsync(accountNumber, password));
+    }
+
+    // Completes with the account, or null if the number or password is wrong. A correct
+    // password whose hash predates the current iteration count is rehashed afterwards.
+    public CompletableFuture<Account> authenticateAsync(String accountNumber, String password) {
+        Account account = readAccount(accountNumber);
+        if (account == null) {
+            return credentials.verify(null, password, null).thenApply(result -> null);
+        }
+        String storedHash = account.getStatus() == Account.AccountStatus.ACTIVE ? account.getPasswordHash() : null;
+        return credentials.verify(accountNumber, password, storedHash).thenApply(result -> {
+            if (result == CredentialService.Result.MISMATCH) {
+                return null;
+            }
+            if (result == CredentialService.Result.MATCH_NEEDS_REHASH) {
+                credentials.hashAsync(password)
+                        .thenCompose(newHash -> rehashPassword(accountNumber, storedHash, newHash))
+                        .exceptionally(e -> {
+                            System.err.println("Failed to rehash password for " + accountNumber + ": " + e.getMessage());
+                            return null;
+                        });
             }
+            return account;
+        });
+    }
+
+    // Skipped if the hash changed since it was verified
+    private CompletableFuture<Void> rehashPassword(String accountNumber, String verifiedHash, String newHash) {
+        if (sequencer != null) {
+            return sequencer.submit(() -> applyRehash(accountNumber, verifiedHash, newHash));
         }
-        return null;
+        return runLocked(() -> {
+            Lock operationLock = operationLock();
+            ReentrantLock accountLock = lockFor(accountNumber);
+            operationLock.lock();
+            accountLock.lock();
+            try {
+                return applyRehash(accountNumber, verifiedHash, newHash);
+            } finally {
+                accountLock.unlock();
+                operationLock.unlock();
+            }
+        });
     }
 
-    public boolean deposit(String accountNumber, double amount) {
-        if (amount <= 0) {
-            throw new IllegalArgumentException("Deposit amount must be positive");
+    private CompletableFuture<Void> applyRehash(String accountNumber, String verifiedHash, String newHash) {
+        Account account = lookup(accountNumber);
+        if (account == null || !verifiedHash.equals(account.getPasswordHash())) {
+            return CompletableFuture.completedFuture(null);
         }
+        Change change = new Change(account);
+        account.setPasswordHash(newHash);
+        return persist(JournalEntry.passwordRehashed(accountNumber, newHash), change);
+    }
 
-        List<Account> accounts = dbManager.loadAccounts();
-        Optional<Account> accountOpt = accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-                .findFirst();
+    public boolean deposit(String accountNumber, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("deposit", accountNumber, null, amountCents);
+        return await(depositTimer, event, start, depositAsync(accountNumber, amountCents));
+    }
 
-        if (accountOpt.isPresent()) {
-            Account account = accountOpt.get();
-            if (account.getStatus() != Account.AccountStatus.ACTIVE) {
-                throw new IllegalStateException("Account is not active");
+    public CompletableFuture<Boolean> depositAsync(String accountNumber, long amountCents) {
+        if (!SecurityUtil.isValidAccountNumber(accountNumber)) {
+            return invalidAccountNumber(accountNumber);
+        }
+        if (sequencer != null) {
+            return sequencer.submit(() -> applyDeposit(accountNumber, amountCents));
+        }
+        return runLocked(() -> {
+            Lock operationLock = operationLock();
+            ReentrantLock accountLock = lockFor(accountNumber);
+            operationLock.lock();
+            accountLock.lock();
+            try {
+                return applyDeposit(accountNumber, amountCents);
+            } finally {
+                accountLock.unlock();
+                operationLock.unlock();
             }
+        });
+    }
 
-            account.setBalance(account.getBalance() + amount);
+    private CompletableFuture<Boolean> applyDeposit(String accountNumber, long amountCents) {
+        if (amountCents <= 0) {
+            throw new IllegalArgumentException("Deposit amount must be positive");
+        }
 
-            Transaction transaction = new Transaction(
-                    Transaction.TransactionType.DEPOSIT,
-                    amount,
-                    account.getBalance(),
-                    "Cash deposit"
-            );
-            account.addTransaction(transaction);
+        Account account = lookup(accountNumber);
 
-            dbManager.saveAccounts(accounts);
-            return true;
+        if (account == null) {
+            return CompletableFuture.completedFuture(false);
         }
-        return false;
+
+        CompletableFuture<Void> accrued = accrueInterest(account, true);
+
+        if (account.getStatus() != Account.AccountStatus.ACTIVE) {
+            throw new IllegalStateException("Account is not active");
+        }
+
+        Change change = new Change(account);
+        setBalance(account, Money.add(balanceOf(account), amountCents));
+
+        Transaction transaction = new Transaction(
+                Transaction.TransactionType.DEPOSIT,
+                amountCents,
+                account.getBalanceCents(),
+                "Cash deposit"
+        );
+        appendHistory(account, transaction);
+
+        return both(accrued, persist(new JournalEntry(JournalEntry.Operation.DEPOSIT)
+                .addPosting(accountNumber, transaction), change)).thenApply(v -> true);
+    }
+
+    public boolean withdraw(String accountNumber, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("withdraw", accountNumber, null, amountCents);
+        return await(withdrawTimer, event, start, withdrawAsync(accountNumber, amountCents));
     }
 
-    public boolean withdraw(String accountNumber, double amount) {
-        if (amount <= 0) {
+    public CompletableFuture<Boolean> withdrawAsync(String accountNumber, long amountCents) {
+        if (!SecurityUtil.isValidAccountNumber(accountNumber)) {
+            return invalidAccountNumber(accountNumber);
+        }
+        if (sequencer != null) {
+            return sequencer.submit(() -> applyWithdrawal(accountNumber, amountCents));
+        }
+        return runLocked(() -> {
+            Lock operationLock = operationLock();
+            ReentrantLock accountLock = lockFor(accountNumber);
+            operationLock.lock();
+            accountLock.lock();
+            try {
+                return applyWithdrawal(accountNumber, amountCents);
+            } finally {
+                accountLock.unlock();
+                operationLock.unlock();
+            }
+        });
+    }
+
+    private CompletableFuture<Boolean> applyWithdrawal(String accountNumber, long amountCents) {
+        if (amountCents <= 0) {
             throw new IllegalArgumentException("Withdrawal amount must be positive");
         }
 
-        List<Account> accounts = dbManager.loadAccounts();
-        Optional<Account> accountOpt = accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-                .findFirst();
+        Account account = lookup(accountNumber);
 
-        if (accountOpt.isPresent()) {
-            Account account = accountOpt.get();
-            if (account.getStatus() != Account.AccountStatus.ACTIVE) {
-                throw new IllegalStateException("Account is not active");
-            }
+        if (account == null) {
+            return CompletableFuture.completedFuture(false);
+        }
 
-            if (account.getBalance() < amount) {
-                throw new IllegalArgumentException("Insufficient funds");
-            }
+        CompletableFuture<Void> accrued = accrueInterest(account, true);
 
-            account.setBalance(account.getBalance() - amount);
+        if (account.getStatus() != Account.AccountStatus.ACTIVE) {
+            throw new IllegalStateException("Account is not active");
+        }
 
-            Transaction transaction = new Transaction(
-                    Transaction.TransactionType.WITHDRAWAL,
-                    amount,
-                    account.getBalance(),
-                    "Cash withdrawal"
-            );
-            account.addTransaction(transaction);
+        long balanceCents = balanceOf(account);
+        if (balanceCents < amountCents) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
+
+        Change change = new Change(account);
+        setBalance(account, Money.subtract(balanceCents, amountCents));
+
+        Transaction transaction = new Transaction(
+                Transaction.TransactionType.WITHDRAWAL,
+                amountCents,
+                account.getBalanceCents(),
+                "Cash withdrawal"
+        );
+        appendHistory(account, transaction);
+
+        return both(accrued, persist(new JournalEntry(JournalEntry.Operation.WITHDRAW)
+                .addPosting(accountNumber, transaction), change)).thenApply(v -> true);
+    }
 
-            dbManager.saveAccounts(accounts);
-            return true;
+    public boolean transfer(String fromAccountNumber, String toAccountNumber, long amountCents) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("transfer", fromAccountNumber, toAccountNumber, amountCents);
+        return await(transferTimer, event, start, transferAsync(fromAccountNumber, toAccountNumber, amountCents));
+    }
+
+    public CompletableFuture<Boolean> transferAsync(String fromAccountNumber, String toAccountNumber, long amountCents) {
+        if (!SecurityUtil.isValidAccountNumber(fromAccountNumber)) {
+            return invalidAccountNumber(fromAccountNumber);
+        }
+        if (!SecurityUtil.isValidAccountNumber(toAccountNumber)) {
+            return invalidAccountNumber(toAccountNumber);
         }
-        return false;
+        if (sequencer != null) {
+            return sequencer.submit(() -> applyTransfer(fromAccountNumber, toAccountNumber, amountCents));
+        }
+        return runLocked(() -> {
+            // Always take the lower stripe first so two opposite transfers cannot deadlock
+            int fromStripe = stripeOf(fromAccountNumber);
+            int toStripe = stripeOf(toAccountNumber);
+            ReentrantLock firstLock = accountLocks[Math.min(fromStripe, toStripe)];
+            ReentrantLock secondLock = accountLocks[Math.max(fromStripe, toStripe)];
+
+            Lock operationLock = operationLock();
+            operationLock.lock();
+            firstLock.lock();
+            secondLock.lock();
+            try {
+                return applyTransfer(fromAccountNumber, toAccountNumber, amountCents);
+            } finally {
+                secondLock.unlock();
+                firstLock.unlock();
+                operationLock.unlock();
+            }
+        });
     }
 
-    public boolean transfer(String fromAccountNumber, String toAccountNumber, double amount) {
-        if (amount <= 0) {
+    private CompletableFuture<Boolean> applyTransfer(String fromAccountNumber, String toAccountNumber, long amountCents) {
+        if (amountCents <= 0) {
             throw new IllegalArgumentException("Transfer amount must be positive");
         }
 
@@ -156,88 +596,849 @@ public class BankService {
             throw new IllegalArgumentException("Cannot transfer to the same account");
         }
 
-        List<Account> accounts = dbManager.loadAccounts();
+        Account fromAccount = lookup(fromAccountNumber);
+        Account toAccount = lookup(toAccountNumber);
 
-        Optional<Account> fromAccountOpt = accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(fromAccountNumber))
-                .findFirst();
+        if (fromAccount == null || toAccount == null) {
+            return CompletableFuture.completedFuture(false);
+        }
 
-        Optional<Account> toAccountOpt = accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(toAccountNumber))
-                .findFirst();
+        CompletableFuture<Void> accrued = both(accrueInterest(fromAccount, true), accrueInterest(toAccount, true));
 
-        if (fromAccountOpt.isPresent() && toAccountOpt.isPresent()) {
-            Account fromAccount = fromAccountOpt.get();
-            Account toAccount = toAccountOpt.get();
+        if (fromAccount.getStatus() != Account.AccountStatus.ACTIVE ||
+                toAccount.getStatus() != Account.AccountStatus.ACTIVE) {
+            throw new IllegalStateException("One or both accounts are not active");
+        }
 
-            if (fromAccount.getStatus() != Account.AccountStatus.ACTIVE ||
-                    toAccount.getStatus() != Account.AccountStatus.ACTIVE) {
-                throw new IllegalStateException("One or both accounts are not active");
-            }
+        long fromBalance = balanceOf(fromAccount);
+        if (fromBalance < amountCents) {
+            throw new IllegalArgumentException("Insufficient funds");
+        }
 
-            if (fromAccount.getBalance() < amount) {
-                throw new IllegalArgumentException("Insufficient funds");
-            }
+        // Update balances
+        Change fromChange = new Change(fromAccount);
+        Change toChange = new Change(toAccount);
+        long creditedBalance = Money.add(balanceOf(toAccount), amountCents);
+        setBalance(fromAccount, Money.subtract(fromBalance, amountCents));
+        setBalance(toAccount, creditedBalance);
 
-            // Update balances
-            fromAccount.setBalance(fromAccount.getBalance() - amount);
-            toAccount.setBalance(toAccount.getBalance() + amount);
+        // Add transactions
+        Transaction fromTransaction = new Transaction(
+                Transaction.TransactionType.TRANSFER_OUT,
+                amountCents,
+                fromAccount.getBalanceCents(),
+                "Transfer to " + toAccount.getFullName()
+        );
+        fromTransaction.setToAccount(toAccountNumber);
+        appendHistory(fromAccount, fromTransaction);
 
-            // Add transactions
-            Transaction fromTransaction = new Transaction(
-                    Transaction.TransactionType.TRANSFER_OUT,
-                    amount,
-                    fromAccount.getBalance(),
-                    "Transfer to " + toAccount.getFullName()
-            );
-            fromTransaction.setToAccount(toAccountNumber);
-            fromAccount.addTransaction(fromTransaction);
-
-            Transaction toTransaction = new Transaction(
-                    Transaction.TransactionType.TRANSFER_IN,
-                    amount,
-                    toAccount.getBalance(),
-                    "Transfer from " + fromAccount.getFullName()
-            );
-            toTransaction.setFromAccount(fromAccountNumber);
-            toAccount.addTransaction(toTransaction);
+        Transaction toTransaction = new Transaction(
+                Transaction.TransactionType.TRANSFER_IN,
+                amountCents,
+                toAccount.getBalanceCents(),
+                "Transfer from " + fromAccount.getFullName()
+        );
+        toTransaction.setFromAccount(fromAccountNumber);
+        appendHistory(toAccount, toTransaction);
 
-            dbManager.saveAccounts(accounts);
-            return true;
-        }
-        return false;
+        // Both legs go into one record so a transfer is never half-replayed
+        return both(accrued, persist(new JournalEntry(JournalEntry.Operation.TRANSFER)
+                .addPosting(fromAccountNumber, fromTransaction)
+                .addPosting(toAccountNumber, toTransaction), fromChange, toChange)).thenApply(v -> true);
     }
 
     public Account getAccount(String accountNumber) {
-        List<Account> accounts = dbManager.loadAccounts();
-        return accounts.stream()
-                .filter(acc -> acc.getAccountNumber().equals(accountNumber))
-                .findFirst()
-                .orElse(null);
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("getAccount", accountNumber, null, 0);
+        Account account;
+        try {
+            account = readAccount(accountNumber);
+        } catch (RuntimeException e) {
+            recordCall(getAccountTimer, event, start, null, e);
+            throw e;
+        }
+        recordCall(getAccountTimer, event, start, account, null);
+        return account;
+    }
+
+    // Ledger persistence only: the account as it stood at the given time, rebuilt from
+    // the ledger, or null if it had not been opened by then. Costs a read of the ledger
+    // up to that time, so it is meant for statements and audits, not for every request.
+    public Account getAccountAsOf(String accountNumber, LocalDateTime asOf) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("getAccountAsOf", accountNumber, null, 0);
+        Account account;
+        try {
+            account = SecurityUtil.isValidAccountNumber(accountNumber)
+                    ? repository.findAccountAsOf(accountNumber, asOf) : null;
+        } catch (RuntimeException e) {
+            recordCall(getAccountAsOfTimer, event, start, null, e);
+            throw e;
+        }
+        recordCall(getAccountAsOfTimer, event, start, account, null);
+        return account;
+    }
+
+    private Account readAccount(String accountNumber) {
+        if (!SecurityUtil.isValidAccountNumber(accountNumber)) {
+            return null;
+        }
+        Account account = lookup(accountNumber);
+        if (account != null && isAccrualDue(account)) {
+            await(accrueAsync(accountNumber));
+            // The cached copy may have been dropped and reloaded meanwhile
+            account = lookup(accountNumber);
+        }
+        if (indexed && accounts.size() > cacheCapacity) {
+            trimFromReader();
+        }
+        return account;
+    }
+
+    // Oldest first; a null fromTimestamp starts at the account's first transaction
+    public List<Transaction> getTransactions(String accountNumber, LocalDateTime fromTimestamp, int limit) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("getTransactions", accountNumber, null, 0);
+        List<Transaction> page;
+        try {
+            Account account = lookup(accountNumber);
+            page = account == null ? Collections.emptyList() : historyStore.readFrom(account, fromTimestamp, limit);
+        } catch (RuntimeException e) {
+            recordCall(getTransactionsTimer, event, start, null, e);
+            throw e;
+        }
+        recordCall(getTransactionsTimer, event, start, page, null);
+        return page;
+    }
+
+    public List<Transaction> getTransactions(String accountNumber, int fromIndex, int limit) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("getTransactions", accountNumber, null, 0);
+        List<Transaction> page;
+        try {
+            Account account = lookup(accountNumber);
+            page = account == null ? Collections.emptyList() : historyStore.read(account, fromIndex, limit);
+        } catch (RuntimeException e) {
+            recordCall(getTransactionsTimer, event, start, null, e);
+            throw e;
+        }
+        recordCall(getTransactionsTimer, event, start, page, null);
+        return page;
+    }
+
+    public int getTransactionCount(String accountNumber) {
+        Account account = lookup(accountNumber);
+        return account == null ? 0 : historyStore.count(account);
+    }
+
+    public InterestEngine.Report calculateInterest() {
+        return calculateInterest(YearMonth.now());
     }
 
-    public void calculateInterest() {
-        List<Account> accounts = dbManager.loadAccounts();
-        boolean updated = false;
+    // Credits one month of interest to every active account with a positive balance.
+    // Safe to call again for the same month: accounts already credited are skipped.
+    public InterestEngine.Report calculateInterest(YearMonth period) {
+        long start = System.nanoTime();
+        BankOperationEvent event = BankOperationEvent.begin("calculateInterest", null, null, 0);
+        InterestEngine.Report report;
+        try {
+            if (dailyInterest) {
+                // Nothing is credited at month end; bring every account up to date instead
+                report = runAccrualPass();
+            } else if (repository.isJournalEnabled()) {
+                report = interestEngine.run(period, allAccounts(), this::stripeOf,
+                        (p, chunk) -> creditInterestChunk(p, chunk, null), () -> { });
+            } else {
+                // A snapshot rewrites every account, so the run is saved once, not per chunk
+                List<Change> unsaved = new ArrayList<>();
+                report = interestEngine.run(period, allAccounts(), this::stripeOf,
+                        (p, chunk) -> creditInterestChunk(p, chunk, unsaved), () -> saveInterest(unsaved));
+            }
+        } catch (RuntimeException e) {
+            recordCall(interestTimer, event, start, null, e);
+            throw e;
+        }
+        recordCall(interestTimer, event, start, report, null);
+        return report;
+    }
+
+    public CompletableFuture<InterestEngine.Report> calculateInterestAsync() {
+        YearMonth period = YearMonth.now();
+        return CompletableFuture.supplyAsync(() -> calculateInterest(period));
+    }
+
+    // All accounts in a chunk share a stripe, so one stripe lock covers the whole chunk
+    private CompletableFuture<InterestEngine.ChunkResult> creditInterestChunk(YearMonth period, List<Account> chunk,
+                                                                             List<Change> unsaved) {
+        if (sequencer != null) {
+            return sequencer.submit(() -> applyInterestChunk(period, chunk, unsaved));
+        }
+        return runLocked(() -> {
+            Lock operationLock = operationLock();
+            ReentrantLock stripeLock = lockFor(chunk.get(0).getAccountNumber());
+            operationLock.lock();
+            stripeLock.lock();
+            try {
+                return applyInterestChunk(period, chunk, unsaved);
+            } finally {
+                stripeLock.unlock();
+                operationLock.unlock();
+            }
+        });
+    }
 
-        for (Account account : accounts) {
-            if (account.getStatus() == Account.AccountStatus.ACTIVE && account.getBalance() > 0) {
-                double interest = account.getBalance() * account.getInterestRate() / 12; // Monthly interest
-                account.setBalance(account.getBalance() + interest);
+    // With unsaved given, the chunk is credited in memory only and its changes are added
+    // to it for saveInterest; chunks are applied one at a time in snapshot mode
+    private CompletableFuture<InterestEngine.ChunkResult> applyInterestChunk(YearMonth period, List<Account> chunk,
+                                                                            List<Change> unsaved) {
+        String periodName = period.toString();
+        JournalEntry entry = JournalEntry.interestCredited(periodName);
+        List<Change> changes = new ArrayList<>();
+        long totalInterestCents = 0;
+
+        for (Account listed : chunk) {
+            // The chunk may hold copies read from disk; credit the instance updates share
+            Account account = lookup(listed.getAccountNumber());
+            if (account != null && account.getStatus() == Account.AccountStatus.ACTIVE && account.getBalanceCents() > 0
+                    && !periodName.equals(account.getLastInterestPeriod())) {
+                long interest = Money.applyRate(account.getBalanceCents(), account.getInterestRate() / 12); // Monthly interest
+                Change change = new Change(account);
+                account.setLastInterestPeriod(periodName);
+                if (interest == 0) {
+                    continue;
+                }
+                changes.add(change);
+                setBalance(account, Money.add(account.getBalanceCents(), interest));
 
                 Transaction interestTransaction = new Transaction(
                         Transaction.TransactionType.INTEREST,
                         interest,
-                        account.getBalance(),
+                        account.getBalanceCents(),
                         "Monthly interest credit"
                 );
-                account.addTransaction(interestTransaction);
-                updated = true;
+                appendHistory(account, interestTransaction);
+                entry.addPosting(account.getAccountNumber(), interestTransaction);
+                totalInterestCents += interest;
+            }
+        }
+
+        InterestEngine.ChunkResult result = new InterestEngine.ChunkResult(entry.getPostings().size(), totalInterestCents);
+        if (entry.getPostings().isEmpty()) {
+            return CompletableFuture.completedFuture(result);
+        }
+        if (unsaved != null) {
+            for (Change change : changes) {
+                change.applied();
+            }
+            unsaved.addAll(changes);
+            return CompletableFuture.completedFuture(result);
+        }
+        return persist(entry, changes.toArray(new Change[0])).thenApply(v -> result);
+    }
+
+    // Saves the snapshot once for everything a run credited, or rolls all of it back.
+    // An account changed since was saved along with that change.
+    private void saveInterest(List<Change> unsaved) {
+        if (unsaved.isEmpty()) {
+            return;
+        }
+        Change[] changes = unsaved.toArray(new Change[0]);
+        if (sequencer != null) {
+            await(sequencer.submitInternal(() -> saveChanges(changes)));
+            return;
+        }
+        await(runLocked(() -> {
+            Lock operationLock = operationLock();
+            operationLock.lock();
+            try {
+                return saveChanges(changes);
+            } finally {
+                operationLock.unlock();
+            }
+        }));
+    }
+
+    private CompletableFuture<Void> saveChanges(Change[] changes) {
+        if (indexed) {
+            for (Change change : changes) {
+                changedAccounts.put(change.account.getAccountNumber(), change.account);
             }
         }
+        try {
+            repository.saveAccounts(new ArrayList<>(accounts.values()));
+        } catch (RuntimeException e) {
+            undo(changes);
+            throw e;
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private boolean isAccrualDue(Account account) {
+        LocalDateTime lastAccruedAt = account.getLastAccruedAt();
+        return dailyInterest && lastAccruedAt != null
+                && !lastAccruedAt.plusDays(1).isAfter(LocalDateTime.now());
+    }
+
+    // Credits the daily-compounded interest earned since the account was last accrued,
+    // in whole days. The balance cannot have changed since then, because every change
+    // accrues first. Must be called with exclusive access to the account; returns null
+    // when nothing was accrued. A read leaves the accrual point alone while the interest
+    // on a positive balance still rounds to zero cents, so small balances are not robbed
+    // of it day by day; a change always advances it, since the balance is about to
+    // change, and so does any call for an account that earns nothing, which would
+    // otherwise stay due for good.
+    private CompletableFuture<Void> accrueInterest(Account account, boolean beforeChange) {
+        if (!isAccrualDue(account)) {
+            return null;
+        }
+        long days = Duration.between(account.getLastAccruedAt(), LocalDateTime.now()).toDays();
+        boolean earning = account.getStatus() == Account.AccountStatus.ACTIVE && account.getBalanceCents() > 0;
+        long interest = 0;
+        if (earning) {
+            interest = Money.applyRate(account.getBalanceCents(),
+                    Math.pow(1 + account.getInterestRate() / 365, days) - 1);
+        }
+        if (interest == 0 && earning && !beforeChange) {
+            return null;
+        }
+
+        LocalDateTime accruedThrough = account.getLastAccruedAt().plusDays(days);
+        Change change = new Change(account);
+        account.setLastAccruedAt(accruedThrough);
+        JournalEntry entry = JournalEntry.interestAccrued(account.getAccountNumber(), accruedThrough);
+
+        if (interest > 0) {
+            setBalance(account, Money.add(account.getBalanceCents(), interest));
+
+            Transaction interestTransaction = new Transaction(
+                    Transaction.TransactionType.INTEREST,
+                    interest,
+                    account.getBalanceCents(),
+                    "Daily interest credit (" + days + (days == 1 ? " day)" : " days)")
+            );
+            appendHistory(account, interestTransaction);
+            entry.addPosting(account.getAccountNumber(), interestTransaction);
+        }
+        return persist(entry, change);
+    }
+
+    private CompletableFuture<Void> accrueAsync(String accountNumber) {
+        if (sequencer != null) {
+            return sequencer.submit(() -> accrueIfPresent(accountNumber));
+        }
+        return runLocked(() -> {
+            Lock operationLock = operationLock();
+            ReentrantLock accountLock = lockFor(accountNumber);
+            operationLock.lock();
+            accountLock.lock();
+            try {
+                return accrueIfPresent(accountNumber);
+            } finally {
+                accountLock.unlock();
+                operationLock.unlock();
+            }
+        });
+    }
+
+    private CompletableFuture<Void> accrueIfPresent(String accountNumber) {
+        Account account = lookup(accountNumber);
+        CompletableFuture<Void> accrued = account == null ? null : accrueInterest(account, false);
+        return accrued == null ? CompletableFuture.completedFuture(null) : accrued;
+    }
+
+    // Background pass for accounts nobody has read or changed; waits for durability
+    // every ACCRUAL_PASS_BATCH accounts so it never floods the journal or the sequencer
+    private InterestEngine.Report runAccrualPass() {
+        long start = System.nanoTime();
+        List<CompletableFuture<Void>> pending = new ArrayList<>();
+        int scanned = 0;
+        int accrued = 0;
+        try {
+            for (Account account : allAccounts()) {
+                scanned++;
+                if (accrualScheduler.isShutdown()) {
+                    break;
+                }
+                if (account.getStatus() == Account.AccountStatus.ACTIVE && account.getBalanceCents() > 0
+                        && isAccrualDue(account)) {
+                    pending.add(accrueAsync(account.getAccountNumber()));
+                    accrued++;
+                }
+                if (pending.size() == ACCRUAL_PASS_BATCH) {
+                    CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+                    pending.clear();
+                }
+            }
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        } catch (RuntimeException e) {
+            System.err.println("Interest accrual pass failed: " + e.getMessage());
+        }
+        return new InterestEngine.Report(YearMonth.now(), false, scanned, accrued, 0, 0,
+                System.nanoTime() - start);
+    }
+
+    private static CompletableFuture<Void> both(CompletableFuture<Void> first, CompletableFuture<Void> second) {
+        if (first == null) {
+            return second;
+        }
+        return second == null ? first : CompletableFuture.allOf(first, second);
+    }
+
+    // Completes once every update submitted so far is durable. Bulk callers submit a
+    // batch of async updates and then flush, so the batch is forced together at once.
+    public CompletableFuture<Void> flushAsync() {
+        if (!repository.isJournalEnabled()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        if (sequencer != null) {
+            // Queued behind the updates already submitted, so it flushes their records too
+            return sequencer.submit(repository::flushJournal);
+        }
+        return repository.flushJournal();
+    }
+
+    // Stops the writer thread, if any, after applying the commands already queued
+    public void shutdown() {
+        shuttingDown = true;
+        interestEngine.shutdown();
+        credentials.shutdown();
+        if (accrualScheduler != null) {
+            // Not shutdownNow: interrupting a pass could close a FileChannel mid-write
+            accrualScheduler.shutdown();
+            try {
+                accrualScheduler.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (sequencer != null) {
+            sequencer.close();
+        }
+        rollbackExecutor.shutdown();
+        try {
+            rollbackExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (countThread != null) {
+            try {
+                countThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        MetricsRegistry.getInstance().dump();
+    }
+
+    private void appendHistory(Account account, Transaction transaction) {
+        Map<String, Integer> before = countsBeforeChange;
+        if (before != null) {
+            before.putIfAbsent(account.getAccountNumber(), account.getTransactionCount());
+        }
+        historyStore.append(account, transaction);
+        transactionCount.increment();
+    }
+
+    // Malformed numbers (typos, wrong check digit) are turned away before taking any lock
+    private static <T> CompletableFuture<T> invalidAccountNumber(String accountNumber) {
+        return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid account number: " + accountNumber));
+    }
+
+    // In snapshot mode every change rewrites the whole store, so changes cannot overlap
+    private Lock operationLock() {
+        return repository.isJournalEnabled() ? stateLock.readLock() : stateLock.writeLock();
+    }
+
+    private int stripeOf(String accountNumber) {
+        int hash = accountNumber.hashCode();
+        return (hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1);
+    }
+
+    private ReentrantLock lockFor(String accountNumber) {
+        return accountLocks[stripeOf(accountNumber)];
+    }
+
+    // Runs an update under its locks on the caller's thread. The returned future
+    // completes once the change is durable; checkpoints happen after the locks are
+    // released so callers never wait on one while holding an account lock.
+    private <T> CompletableFuture<T> runLocked(Supplier<CompletableFuture<T>> update) {
+        CompletableFuture<T> result;
+        try {
+            result = update.get();
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        checkpointIfDue();
+        return result;
+    }
+
+    // In journal mode a change costs one appended record; the full snapshot is only
+    // rewritten when the journal grows past its checkpoint threshold. Must be called
+    // with exclusive access to the accounts involved so that records for the same
+    // account are journaled in the order they were applied. The changes describe what
+    // the entry did to each account, so it can be undone if the entry is not persisted.
+    private CompletableFuture<Void> persist(JournalEntry entry, Change... changes) {
+        for (Change change : changes) {
+            change.applied();
+        }
+        if (indexed) {
+            // Pinned in the cache until a checkpoint has written them to the snapshot
+            for (String accountNumber : entry.getAccountNumbers()) {
+                Account account = accounts.get(accountNumber);
+                if (account != null) {
+                    changedAccounts.put(accountNumber, account);
+                }
+            }
+        }
+        CompletableFuture<Void> durable;
+        try {
+            if (repository.isJournalEnabled()) {
+                durable = repository.appendJournal(entry);
+            } else {
+                repository.saveAccounts(new ArrayList<>(accounts.values()));
+                durable = CompletableFuture.completedFuture(null);
+            }
+        } catch (RuntimeException e) {
+            undo(changes);
+            throw e;
+        }
+        if (durable.isCompletedExceptionally()) {
+            // Failed on this thread, which still has exclusive access
+            undo(changes);
+            return durable;
+        }
+        // A failure reported later comes from the journal's flusher, which must not wait
+        // for account locks; callers see it once the changes are rolled back
+        return durable.exceptionallyComposeAsync(e -> {
+            undoExclusively(changes);
+            return CompletableFuture.failedFuture(e);
+        }, rollbackExecutor);
+    }
+
+    // Takes the same exclusive access as the update being undone
+    private void undoExclusively(Change[] changes) {
+        try {
+            if (sequencer != null) {
+                // Not subject to the overflow policy, which could otherwise reject it
+                sequencer.submitInternal(() -> {
+                    undo(changes);
+                    return CompletableFuture.completedFuture(null);
+                }).join();
+                return;
+            }
+            Set<Integer> stripes = new TreeSet<>();
+            for (Change change : changes) {
+                stripes.add(stripeOf(change.account.getAccountNumber()));
+            }
+            Lock operationLock = operationLock();
+            operationLock.lock();
+            List<ReentrantLock> locked = new ArrayList<>();
+            try {
+                // In stripe order, like transfers, so this cannot deadlock with them
+                for (int stripe : stripes) {
+                    accountLocks[stripe].lock();
+                    locked.add(accountLocks[stripe]);
+                }
+                undo(changes);
+            } finally {
+                for (int i = locked.size() - 1; i >= 0; i--) {
+                    locked.get(i).unlock();
+                }
+                operationLock.unlock();
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Failed to roll back an unsaved change: " + e.getMessage());
+        }
+    }
+
+    // Puts back each account the changes left as they were, latest first, together with
+    // the history rows appended. An account changed again since is left alone: the later
+    // change was applied, and recorded, on top of this one.
+    private void undo(Change... changes) {
+        for (int i = changes.length - 1; i >= 0; i--) {
+            Change change = changes[i];
+            Account account = change.account;
+            if (!change.after.matches(account)) {
+                System.err.println("Not rolling back account " + account.getAccountNumber() +
+                        ": it was changed again after its record failed");
+                continue;
+            }
+            int rows = change.before != null ? change.before.transactionCount : 0;
+            historyStore.truncate(account, rows);
+            transactionCount.add(rows - change.after.transactionCount);
+            if (change.before == null) {
+                accounts.remove(account.getAccountNumber());
+                changedAccounts.remove(account.getAccountNumber());
+                accountCount.decrementAndGet();
+            } else {
+                change.before.restore(account);
+                if (balanceTable != null) {
+                    balanceTable.put(account);
+                }
+            }
+        }
+    }
+
+    // Also trims the account cache in indexed residency, which needs the same exclusive access
+    private void checkpointIfDue() {
+        if (!repository.isJournalEnabled() || !isCheckpointDue() && !isCacheFull()) {
+            return;
+        }
+        stateLock.writeLock().lock();
+        try {
+            if (isCheckpointDue()) {
+                checkpointNow();
+            } else if (isCacheFull()) {
+                trimCache();
+            }
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    // The writer thread is the only mutator in sequencer mode, so it can checkpoint between batches
+    private void checkpointFromWriter() {
+        if (!repository.isJournalEnabled()) {
+            return;
+        }
+        if (isCheckpointDue()) {
+            checkpointNow();
+        } else if (isCacheFull()) {
+            trimCache();
+        }
+    }
+
+    // In indexed residency changed accounts are held in memory, so they bound the interval too
+    private boolean isCheckpointDue() {
+        return repository.isCheckpointDue() || indexed && changedAccounts.size() >= cacheCapacity;
+    }
+
+    // Needs exclusive access to every account
+    private void checkpointNow() {
+        if (indexed) {
+            List<Account> changed = new ArrayList<>(changedAccounts.values());
+            repository.checkpointChanges(changed);
+            changedAccounts.clear();
+            // Their emails are in the on-disk index now
+            for (Account account : changed) {
+                emailIndex.evict(account.getEmail(), account.getAccountNumber());
+            }
+            trimCache();
+        } else {
+            repository.checkpoint(new ArrayList<>(accounts.values()));
+        }
+    }
+
+    private boolean isCacheFull() {
+        return indexed && accounts.size() > cacheCapacity;
+    }
+
+    // Drops unchanged accounts, in no particular order, until the cache is a quarter
+    // below capacity, so that trims are rare. Needs exclusive access to every account:
+    // an update must never hold an instance that the cache no longer does.
+    private void trimCache() {
+        int target = cacheCapacity - cacheCapacity / 4;
+        Iterator<String> accountNumbers = accounts.keySet().iterator();
+        while (accounts.size() > target && accountNumbers.hasNext()) {
+            if (!changedAccounts.containsKey(accountNumbers.next())) {
+                accountNumbers.remove();
+            }
+        }
+    }
+
+    // Reads only ever add to the cache, so they hand the trim to whoever can get
+    // exclusive access: this thread in locking mode, the writer in sequencer mode
+    private void trimFromReader() {
+        if (sequencer != null) {
+            sequencer.submit(() -> CompletableFuture.completedFuture(null));
+        } else {
+            checkpointIfDue();
+        }
+    }
+
+    // The one instance of an account that updates change. In indexed residency it is
+    // read from the snapshot on first use and cached.
+    private Account lookup(String accountNumber) {
+        Account account = accounts.get(accountNumber);
+        if (account != null || !indexed) {
+            return account;
+        }
+        return accounts.computeIfAbsent(accountNumber, key -> {
+            Account loaded = repository.findAccount(key);
+            if (loaded != null && balanceTable != null) {
+                // Unchanged since the last checkpoint, unless a crash left the slot ahead
+                balanceTable.reconcile(loaded);
+            }
+            return loaded;
+        });
+    }
+
+    // The balance the hot path works from: the account's slot in the balance table
+    // when there is one, which setBalance keeps equal to the account's own field
+    private long balanceOf(Account account) {
+        return balanceTable != null
+                ? balanceTable.getBalanceCents(account.getAccountNumber(), account.getBalanceCents())
+                : account.getBalanceCents();
+    }
+
+    private void setBalance(Account account, long balanceCents) {
+        account.setBalanceCents(balanceCents);
+        if (balanceTable != null) {
+            balanceTable.put(account);
+        }
+    }
+
+    // Every account, for passes over the whole bank. In indexed residency they are
+    // streamed in account-number order from the snapshot's index, using the cached
+    // copy where there is one, followed by accounts created since the last checkpoint;
+    // the walk itself caches nothing. An account checkpointed during the walk can be
+    // visited twice, which the passes tolerate. Callers change accounts through
+    // lookup(), never through the copies handed out here.
+    private Iterable<Account> allAccounts() {
+        if (!indexed) {
+            List<Account> all = new ArrayList<>(accounts.values());
+            all.sort(Comparator.comparing(Account::getAccountNumber));
+            return all;
+        }
+        List<Account> created = new ArrayList<>();
+        for (Account account : changedAccounts.values()) {
+            if (repository.findAccount(account.getAccountNumber()) == null) {
+                created.add(account);
+            }
+        }
+        return () -> new Iterator<Account>() {
+            private List<String> batch = repository.accountNumbersAfter(null, SCAN_BATCH);
+            private int position;
+            private Iterator<Account> tail;
+            private Account next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (tail != null) {
+                        if (!tail.hasNext()) {
+                            return false;
+                        }
+                        next = tail.next();
+                    } else if (position < batch.size()) {
+                        String accountNumber = batch.get(position++);
+                        Account cached = accounts.get(accountNumber);
+                        next = cached != null ? cached : repository.findAccount(accountNumber);
+                    } else if (batch.size() == SCAN_BATCH) {
+                        batch = repository.accountNumbersAfter(batch.get(batch.size() - 1), SCAN_BATCH);
+                        position = 0;
+                    } else {
+                        tail = created.iterator();
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Account next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Account account = next;
+                next = null;
+                return account;
+            }
+        };
+    }
+
+    private <T> T await(MetricsRegistry.Timer timer, BankOperationEvent event, long start, CompletableFuture<T> result) {
+        T value;
+        try {
+            value = await(result);
+        } catch (RuntimeException e) {
+            recordCall(timer, event, start, null, e);
+            throw e;
+        }
+        recordCall(timer, event, start, value, null);
+        return value;
+    }
+
+    // Latency and outcome of a blocking call; error is null if it returned
+    private static void recordCall(MetricsRegistry.Timer timer, BankOperationEvent event, long start, Object result,
+                                   RuntimeException error) {
+        long elapsed = System.nanoTime() - start;
+        if (error != null) {
+            timer.recordFailure(elapsed, error);
+            BankOperationEvent.end(event, error.getClass().getSimpleName());
+        } else {
+            timer.record(elapsed);
+            BankOperationEvent.end(event, result == null || Boolean.FALSE.equals(result)
+                    ? BankOperationEvent.DECLINED : BankOperationEvent.OK);
+        }
+    }
+
+    // Waits for durability outside all locks, so callers arriving meanwhile join the same flush
+    private <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException("Failed to persist transaction", cause);
+        }
+    }
+
+    // What an operation did to one account: its state before (null for a registration)
+    // and after, for rolling the operation back
+    private static final class Change {
+        final Account account;
+        final AccountState before;
+        AccountState after;
+
+        Change(Account account) {
+            this(account, new AccountState(account));
+        }
+
+        private Change(Account account, AccountState before) {
+            this.account = account;
+            this.before = before;
+        }
+
+        static Change created(Account account) {
+            return new Change(account, null);
+        }
+
+        void applied() {
+            after = new AccountState(account);
+        }
+    }
+
+    // The account fields operations change; history rows are counted by transactionCount
+    private static final class AccountState {
+        final long balanceCents;
+        final int transactionCount;
+        final String passwordHash;
+        final String lastInterestPeriod;
+        final LocalDateTime lastAccruedAt;
+
+        AccountState(Account account) {
+            this.balanceCents = account.getBalanceCents();
+            this.transactionCount = account.getTransactionCount();
+            this.passwordHash = account.getPasswordHash();
+            this.lastInterestPeriod = account.getLastInterestPeriod();
+            this.lastAccruedAt = account.getLastAccruedAt();
+        }
+
+        boolean matches(Account account) {
+            return account.getBalanceCents() == balanceCents
+                    && account.getTransactionCount() == transactionCount
+                    && Objects.equals(account.getPasswordHash(), passwordHash)
+                    && Objects.equals(account.getLastInterestPeriod(), lastInterestPeriod)
+                    && Objects.equals(account.getLastAccruedAt(), lastAccruedAt);
+        }
 
-        if (updated) {
-            dbManager.saveAccounts(accounts);
+        void restore(Account account) {
+            account.setBalanceCents(balanceCents);
+            account.setPasswordHash(passwordHash);
+            account.setLastInterestPeriod(lastInterestPeriod);
+            account.setLastAccruedAt(lastAccruedAt);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,316 @@
+package BankManagementSystem;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+// Headless entry point for bulk postings, e.g.
+//
+//   java BankManagementSystem.BatchProcessor nightly.csv [--batch-size 1000] [--format csv|json]
+//
+// Input is CSV (type,account,amount[,target], with an optional header line) or JSON
+// lines ({"type":"TRANSFER","account":"ACC...","amount":"12.50","target":"ACC..."});
+// types are DEPOSIT, WITHDRAW and TRANSFER, and blank lines and lines starting with
+// '#' are skipped. The file is streamed: each line is validated, valid operations
+// are submitted to BankService a batch at a time, and the batch is flushed to the
+// journal with one force instead of one per operation. Memory use depends on the batch size, not on the
+// input size.
+//
+// Every input line gets a row in <name>.results.csv (line, status, detail), and
+// rejected lines are copied unchanged to <name>.rejects.<ext> so they can be fixed
+// and resubmitted. Run it with the bank stopped. It needs journal or ledger
+// persistence: with snapshots every operation would rewrite every account.
+public class BatchProcessor {
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    private static final String FORMAT_CSV = "csv";
+    private static final String FORMAT_JSON = "json";
+
+    private enum Type {
+        DEPOSIT, WITHDRAW, TRANSFER
+    }
+
+    private static class Operation {
+        final long lineNumber;
+        final String line;
+        final Type type;
+        final String account;
+        final String target;
+        final long amountCents;
+        CompletableFuture<Boolean> outcome;
+
+        Operation(long lineNumber, String line, Type type, String account, String target, long amountCents) {
+            this.lineNumber = lineNumber;
+            this.line = line;
+            this.type = type;
+            this.account = account;
+            this.target = target;
+            this.amountCents = amountCents;
+        }
+    }
+
+    private final BankService bankService;
+    private final String format;
+    private final int batchSize;
+    private long linesRead;
+    private long applied;
+    private long rejected;
+    private long batches;
+
+    public BatchProcessor(BankService bankService, String format, int batchSize) {
+        this.bankService = bankService;
+        this.format = format;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public static void main(String[] args) {
+        Path input = null;
+        String format = null;
+        int batchSize = DEFAULT_BATCH_SIZE;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--batch-size".equals(args[i]) && i + 1 < args.length) {
+                    batchSize = Integer.parseInt(args[++i]);
+                } else if ("--format".equals(args[i]) && i + 1 < args.length) {
+                    format = args[++i].toLowerCase(Locale.ROOT);
+                } else if (input == null) {
+                    input = Paths.get(args[i]);
+                } else {
+                    throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+                }
+            }
+            if (input == null) {
+                throw new IllegalArgumentException("No input file");
+            }
+            if (format == null) {
+                format = input.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? FORMAT_CSV : FORMAT_JSON;
+            }
+            if (!FORMAT_CSV.equals(format) && !FORMAT_JSON.equals(format)) {
+                throw new IllegalArgumentException("Unknown format: " + format);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchProcessor <input.csv|input.jsonl> [--batch-size n] [--format csv|json]");
+            System.exit(2);
+        }
+        if (!Files.isRegularFile(input)) {
+            System.err.println("Input file not found: " + input);
+            System.exit(2);
+        }
+        if (BankConfig.PERSISTENCE_SNAPSHOT.equals(BankConfig.getPersistenceMode())) {
+            System.err.println("BatchProcessor needs bank.persistence=journal or ledger, not snapshot");
+            System.exit(2);
+        }
+        // Each batch is flushed explicitly, so the journal should not commit part of one on its own
+        if (System.getProperty("bank.journal.batchSize") == null) {
+            System.setProperty("bank.journal.batchSize", String.valueOf(batchSize + 1));
+        }
+        if (System.getProperty("bank.journal.batchWindowMicros") == null) {
+            System.setProperty("bank.journal.batchWindowMicros", "1000000");
+        }
+
+        DatabaseManager dbManager = new DatabaseManager();
+        BankService bankService = new BankService(dbManager);
+        BatchProcessor processor = new BatchProcessor(bankService, format, batchSize);
+        boolean failed = false;
+        try {
+            long start = System.nanoTime();
+            processor.process(input, sibling(input, ".results.csv"), sibling(input, ".rejects" + extension(input)));
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("Processed %d line(s) in %d batch(es): %d applied, %d rejected in %.1f s (%.0f operations/s)%n",
+                    processor.linesRead, processor.batches, processor.applied, processor.rejected, seconds,
+                    seconds == 0 ? 0 : (processor.applied + processor.rejected) / seconds);
+            GroupCommitLog.Stats stats = dbManager.getJournalStats();
+            if (stats != null) {
+                System.out.println("Journal: " + stats);
+            }
+        } catch (IOException e) {
+            System.err.println("Failed to process " + input + ": " + e.getMessage());
+            failed = true;
+        } finally {
+            bankService.shutdown();
+            dbManager.close();
+        }
+        System.exit(failed || processor.rejected > 0 ? 1 : 0);
+    }
+
+    public void process(Path input, Path resultsFile, Path rejectsFile) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             BufferedWriter results = Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8);
+             BufferedWriter rejects = Files.newBufferedWriter(rejectsFile, StandardCharsets.UTF_8)) {
+            results.write("line,status,detail");
+            results.newLine();
+            List<Operation> batch = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#") || linesRead == 1 && isCsvHeader(trimmed)) {
+                    continue;
+                }
+                Operation operation;
+                try {
+                    operation = parse(linesRead, line, trimmed);
+                } catch (IllegalArgumentException | JsonParseException | IllegalStateException e) {
+                    reject(results, rejects, linesRead, line, e.getMessage());
+                    continue;
+                }
+                batch.add(operation);
+                if (batch.size() == batchSize) {
+                    runBatch(batch, results, rejects);
+                }
+            }
+            if (!batch.isEmpty()) {
+                runBatch(batch, results, rejects);
+            }
+        }
+    }
+
+    // Submits the whole batch, then waits once for all of it to be durable
+    private void runBatch(List<Operation> batch, BufferedWriter results, BufferedWriter rejects) throws IOException {
+        for (Operation operation : batch) {
+            operation.outcome = submit(operation);
+        }
+        bankService.flushAsync().join();
+        CompletableFuture.allOf(batch.stream().map(o -> o.outcome).toArray(CompletableFuture[]::new))
+                .exceptionally(e -> null).join();
+        for (Operation operation : batch) {
+            String failure;
+            try {
+                failure = operation.outcome.join() ? null : "Account not found";
+            } catch (CompletionException e) {
+                failure = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+            }
+            if (failure == null) {
+                applied++;
+                writeResult(results, operation.lineNumber, "APPLIED", "");
+            } else {
+                reject(results, rejects, operation.lineNumber, operation.line, failure);
+            }
+        }
+        batches++;
+        batch.clear();
+    }
+
+    private CompletableFuture<Boolean> submit(Operation operation) {
+        try {
+            switch (operation.type) {
+                case DEPOSIT:
+                    return bankService.depositAsync(operation.account, operation.amountCents);
+                case WITHDRAW:
+                    return bankService.withdrawAsync(operation.account, operation.amountCents);
+                default:
+                    return bankService.transferAsync(operation.account, operation.target, operation.amountCents);
+            }
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private Operation parse(long lineNumber, String line, String trimmed) {
+        String type;
+        String account;
+        String amount;
+        String target;
+        if (FORMAT_CSV.equals(format)) {
+            String[] fields = trimmed.split(",", -1);
+            if (fields.length < 3 || fields.length > 4) {
+                throw new IllegalArgumentException("Expected type,account,amount[,target]");
+            }
+            type = fields[0].trim();
+            account = fields[1].trim();
+            amount = fields[2].trim();
+            target = fields.length == 4 ? fields[3].trim() : "";
+        } else {
+            JsonObject object = JsonParser.parseString(trimmed).getAsJsonObject();
+            type = field(object, "type");
+            account = field(object, "account");
+            amount = field(object, "amount");
+            target = field(object, "target");
+        }
+
+        Type operationType;
+        try {
+            operationType = Type.valueOf(type.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown operation type: " + type);
+        }
+        if (!SecurityUtil.isValidAccountNumber(account)) {
+            throw new IllegalArgumentException("Invalid account number: " + account);
+        }
+        long amountCents = Money.parse(amount);
+        if (amountCents <= 0) {
+            throw new IllegalArgumentException("Amount must be positive");
+        }
+        if (operationType == Type.TRANSFER) {
+            if (!SecurityUtil.isValidAccountNumber(target)) {
+                throw new IllegalArgumentException("Invalid target account number: " + target);
+            }
+            if (target.equals(account)) {
+                throw new IllegalArgumentException("Cannot transfer to the same account");
+            }
+        } else if (!target.isEmpty()) {
+            throw new IllegalArgumentException("Only transfers have a target account");
+        }
+        return new Operation(lineNumber, line, operationType, account, operationType == Type.TRANSFER ? target : null,
+                amountCents);
+    }
+
+    private static String field(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+        return element == null || element.isJsonNull() ? "" : element.getAsString().trim();
+    }
+
+    private boolean isCsvHeader(String line) {
+        return FORMAT_CSV.equals(format) && line.toLowerCase(Locale.ROOT).startsWith("type,");
+    }
+
+    private void reject(BufferedWriter results, BufferedWriter rejects, long lineNumber, String line, String reason)
+            throws IOException {
+        rejected++;
+        writeResult(results, lineNumber, "REJECTED", reason);
+        rejects.write(line);
+        rejects.newLine();
+    }
+
+    private static void writeResult(BufferedWriter results, long lineNumber, String status, String detail)
+            throws IOException {
+        results.write(lineNumber + "," + status + "," + csvField(detail));
+        results.newLine();
+    }
+
+    private static String csvField(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return text;
+        }
+        return "\"" + text.replace("\"", "\"\"").replace('\n', ' ') + "\"";
+    }
+
+    private static Path sibling(Path input, String suffix) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return input.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + suffix);
+    }
+
+    private static String extension(Path input) {
+        String name = input.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(dot) : "";
+    }
+}
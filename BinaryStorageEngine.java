@@ -0,0 +1,361 @@
+package BankManagementSystem;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Compact snapshot format:
+//
+//   int magic "BNKA", short schema version, int account count
+//   per account: int record length, then the record's fields
+//   long CRC32 of everything before it
+//
+// Every record carries its length, so a reader skips fields appended after the ones
+// it knows; the schema version only changes when existing fields change meaning, and
+// a reader refuses versions newer than its own. Strings are modified UTF-8 behind a
+// presence flag, enums are written by name and timestamps as UTC epoch seconds and nanos.
+//
+// Records are kept in account-number order (BPlusTreeIndex.KEY_ORDER). That lets an
+// index be bulk-built straight from the file, and lets a checkpoint merge changed
+// accounts into the previous file while copying every other record as raw bytes.
+public class BinaryStorageEngine implements StorageEngine {
+    private static final int MAGIC = 0x424E4B41; // "BNKA"
+    private static final short SCHEMA_VERSION = 1;
+    private static final int HEADER_SIZE = 10;
+    private static final Comparator<Account> RECORD_ORDER =
+            Comparator.comparing(Account::getAccountNumber, BPlusTreeIndex.KEY_ORDER);
+
+    // Told where each record landed in a file being written
+    public interface RecordListener {
+        // oldOffset is the record's offset in the merged-from file, or -1 if it was not
+        // there; account is null for records copied unchanged
+        void record(String accountNumber, long oldOffset, long newOffset, Account account) throws IOException;
+    }
+
+    @Override
+    public String getName() {
+        return BINARY;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "bin";
+    }
+
+    @Override
+    public List<Account> read(InputStream in) throws IOException {
+        CheckedInputStream checked = new CheckedInputStream(in, new CRC32());
+        DataInputStream data = new DataInputStream(checked);
+        try {
+            int count = readHeader(data);
+            List<Account> accounts = new ArrayList<>(count);
+            byte[] record = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = data.readInt();
+                if (length < 0) {
+                    throw new IllegalStateException("Corrupt accounts file: bad record length " + length);
+                }
+                if (record.length < length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                data.readFully(record, 0, length);
+                accounts.add(readAccount(new DataInputStream(new ByteArrayInputStream(record, 0, length))));
+            }
+            long expected = checked.getChecksum().getValue();
+            // The checksum itself is read past the checked stream
+            if (new DataInputStream(in).readLong() != expected) {
+                throw new IllegalStateException("Corrupt accounts file: checksum mismatch");
+            }
+            return accounts;
+        } catch (EOFException e) {
+            throw new IllegalStateException("Corrupt accounts file: truncated", e);
+        }
+    }
+
+    @Override
+    public void write(OutputStream out, List<Account> accounts) throws IOException {
+        write(out, accounts, null);
+    }
+
+    public void write(OutputStream out, List<Account> accounts, RecordListener listener) throws IOException {
+        List<Account> sorted = new ArrayList<>(accounts);
+        sorted.sort(RECORD_ORDER);
+
+        RecordWriter writer = new RecordWriter(out, sorted.size());
+        for (Account account : sorted) {
+            long offset = writer.write(account);
+            if (listener != null) {
+                listener.record(account.getAccountNumber(), -1, offset, account);
+            }
+        }
+        writer.finish();
+    }
+
+    // Writes source with the changed accounts merged in: a changed account replaces its
+    // old record and a new one is inserted in order. addedCount is how many of the
+    // changed accounts are not in source yet.
+    public void merge(Path source, OutputStream out, List<Account> changed, int addedCount,
+                      RecordListener listener) throws IOException {
+        List<Account> sorted = new ArrayList<>(changed);
+        sorted.sort(RECORD_ORDER);
+
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(source), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream data = new DataInputStream(checked);
+            int count = readHeader(data);
+            RecordWriter writer = new RecordWriter(out, count + addedCount);
+
+            int next = 0;
+            long oldOffset = HEADER_SIZE;
+            byte[] record = new byte[256];
+            try {
+                for (int i = 0; i < count; i++) {
+                    int length = data.readInt();
+                    if (length < 0) {
+                        throw new IllegalStateException("Corrupt accounts file: bad record length " + length);
+                    }
+                    if (record.length < length) {
+                        record = new byte[Math.max(length, record.length * 2)];
+                    }
+                    data.readFully(record, 0, length);
+                    String accountNumber = readString(new DataInputStream(new ByteArrayInputStream(record, 0, length)));
+
+                    // New accounts that sort before this record go first
+                    while (next < sorted.size() &&
+                            BPlusTreeIndex.KEY_ORDER.compare(sorted.get(next).getAccountNumber(), accountNumber) < 0) {
+                        Account added = sorted.get(next++);
+                        listener.record(added.getAccountNumber(), -1, writer.write(added), added);
+                    }
+                    if (next < sorted.size() && sorted.get(next).getAccountNumber().equals(accountNumber)) {
+                        Account replaced = sorted.get(next++);
+                        listener.record(accountNumber, oldOffset, writer.write(replaced), replaced);
+                    } else {
+                        listener.record(accountNumber, oldOffset, writer.copy(record, length), null);
+                    }
+                    oldOffset += 4 + length;
+                }
+                if (new DataInputStream(raw).readLong() != checked.getChecksum().getValue()) {
+                    throw new IllegalStateException("Corrupt accounts file: checksum mismatch");
+                }
+            } catch (EOFException e) {
+                throw new IllegalStateException("Corrupt accounts file: truncated", e);
+            }
+            while (next < sorted.size()) {
+                Account added = sorted.get(next++);
+                listener.record(added.getAccountNumber(), -1, writer.write(added), added);
+            }
+            writer.finish();
+        }
+    }
+
+    // Decodes every record of a file in order, reporting where each one starts
+    public void scan(Path source, RecordListener listener) throws IOException {
+        try (InputStream raw = new BufferedInputStream(Files.newInputStream(source), 1 << 16)) {
+            CheckedInputStream checked = new CheckedInputStream(raw, new CRC32());
+            DataInputStream data = new DataInputStream(checked);
+            int count = readHeader(data);
+            long offset = HEADER_SIZE;
+            byte[] record = new byte[256];
+            for (int i = 0; i < count; i++) {
+                int length = data.readInt();
+                if (length < 0) {
+                    throw new IllegalStateException("Corrupt accounts file: bad record length " + length);
+                }
+                if (record.length < length) {
+                    record = new byte[Math.max(length, record.length * 2)];
+                }
+                data.readFully(record, 0, length);
+                Account account = readAccount(new DataInputStream(new ByteArrayInputStream(record, 0, length)));
+                listener.record(account.getAccountNumber(), offset, offset, account);
+                offset += 4 + length;
+            }
+            if (new DataInputStream(raw).readLong() != checked.getChecksum().getValue()) {
+                throw new IllegalStateException("Corrupt accounts file: checksum mismatch");
+            }
+        } catch (EOFException e) {
+            throw new IllegalStateException("Corrupt accounts file: truncated", e);
+        }
+    }
+
+    // Reads the one record at offset, as reported to a RecordListener, and adds its size to bytesRead
+    public static Account readRecord(FileChannel channel, long offset, LongAdder bytesRead) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(4);
+        readFully(channel, length, offset);
+        ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, record, offset + 4);
+        bytesRead.add(4 + record.capacity());
+        return readAccount(new DataInputStream(new ByteArrayInputStream(record.array())));
+    }
+
+    // Size and stored checksum, which together identify one version of a file
+    public static long[] readTag(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + 8) {
+                return new long[] {size, 0};
+            }
+            ByteBuffer checksum = ByteBuffer.allocate(8);
+            readFully(channel, checksum, size - 8);
+            return new long[] {size, checksum.getLong(0)};
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Record at " + position + " runs past the end of the accounts file");
+            }
+        }
+    }
+
+    private static int readHeader(DataInputStream data) throws IOException {
+        if (data.readInt() != MAGIC) {
+            throw new IllegalStateException("Corrupt accounts file: bad magic number");
+        }
+        short version = data.readShort();
+        if (version > SCHEMA_VERSION) {
+            throw new IllegalStateException("Accounts file uses schema version " + version +
+                    ", this build reads up to " + SCHEMA_VERSION);
+        }
+        return data.readInt();
+    }
+
+    // Header, length-prefixed records and the checksum trailer, tracking record offsets
+    private static class RecordWriter {
+        private final OutputStream out;
+        private final CheckedOutputStream checked;
+        private final DataOutputStream data;
+        private final ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+        private final DataOutputStream fields = new DataOutputStream(record);
+        private final int expectedCount;
+        private int written;
+        private long offset = HEADER_SIZE;
+
+        RecordWriter(OutputStream out, int expectedCount) throws IOException {
+            this.out = out;
+            this.checked = new CheckedOutputStream(out, new CRC32());
+            this.data = new DataOutputStream(checked);
+            this.expectedCount = expectedCount;
+            data.writeInt(MAGIC);
+            data.writeShort(SCHEMA_VERSION);
+            data.writeInt(expectedCount);
+        }
+
+        long write(Account account) throws IOException {
+            record.reset();
+            writeAccount(fields, account);
+            fields.flush();
+            data.writeInt(record.size());
+            record.writeTo(data);
+            return advance(record.size());
+        }
+
+        long copy(byte[] bytes, int length) throws IOException {
+            data.writeInt(length);
+            data.write(bytes, 0, length);
+            return advance(length);
+        }
+
+        private long advance(int length) {
+            long recordOffset = offset;
+            offset += 4 + length;
+            written++;
+            return recordOffset;
+        }
+
+        void finish() throws IOException {
+            if (written != expectedCount) {
+                throw new IllegalStateException("Wrote " + written + " account records, expected " + expectedCount);
+            }
+            data.flush();
+            new DataOutputStream(out).writeLong(checked.getChecksum().getValue());
+            out.flush();
+        }
+    }
+
+    // Fields are only ever appended to the end of this list
+    private static void writeAccount(DataOutputStream out, Account account) throws IOException {
+        writeString(out, account.getAccountNumber());
+        writeString(out, account.getFirstName());
+        writeString(out, account.getLastName());
+        writeString(out, account.getEmail());
+        writeString(out, account.getPhoneNumber());
+        writeString(out, account.getAccountType() != null ? account.getAccountType().name() : null);
+        out.writeLong(account.getBalanceCents());
+        writeString(out, account.getPasswordHash());
+        writeDateTime(out, account.getCreatedDate());
+        writeString(out, account.getStatus() != null ? account.getStatus().name() : null);
+        out.writeInt(account.getTransactionCount());
+        out.writeDouble(account.getInterestRate());
+        writeString(out, account.getLastInterestPeriod());
+        writeDateTime(out, account.getLastAccruedAt());
+    }
+
+    private static Account readAccount(DataInputStream in) throws IOException {
+        Account account = new Account();
+        account.setAccountNumber(readString(in));
+        account.setFirstName(readString(in));
+        account.setLastName(readString(in));
+        account.setEmail(readString(in));
+        account.setPhoneNumber(readString(in));
+        String accountType = readString(in);
+        account.setAccountType(accountType != null ? Account.AccountType.valueOf(accountType) : null);
+        account.setBalanceCents(in.readLong());
+        account.setPasswordHash(readString(in));
+        account.setCreatedDate(readDateTime(in));
+        String status = readString(in);
+        account.setStatus(status != null ? Account.AccountStatus.valueOf(status) : null);
+        account.setTransactionCount(in.readInt());
+        account.setInterestRate(in.readDouble());
+        account.setLastInterestPeriod(readString(in));
+        account.setLastAccruedAt(readDateTime(in));
+        return account;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(value.getNano());
+        }
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,182 @@
+package BankManagementSystem;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Bounded ring buffer of commands drained by a single writer thread. Commands are
+// applied one after another on that thread, so they need no locking of their own.
+public class CommandSequencer {
+    public enum OverflowPolicy {
+        BLOCK, REJECT
+    }
+
+    // Runs on the writer thread; the returned future completes once the change is durable
+    public interface Command<T> {
+        CompletableFuture<T> apply();
+    }
+
+    private static class Slot<T> {
+        final Command<T> command;
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Slot(Command<T> command) {
+            this.command = command;
+        }
+
+        void run() {
+            try {
+                command.apply().whenComplete((value, error) -> {
+                    if (error != null) {
+                        result.completeExceptionally(error);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private final Slot<?>[] ring;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final Runnable afterBatch;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Thread writer;
+    private int head;
+    private int count;
+    private boolean closed;
+    // Set by the writer once it has applied the last command and exited
+    private boolean stopped;
+
+    public CommandSequencer(int capacity, int batchSize, OverflowPolicy overflowPolicy, Runnable afterBatch) {
+        this.ring = new Slot<?>[Math.max(1, capacity)];
+        this.batchSize = Math.max(1, batchSize);
+        this.overflowPolicy = overflowPolicy;
+        this.afterBatch = afterBatch;
+        this.writer = new Thread(this::drain, "bank-sequencer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public <T> CompletableFuture<T> submit(Command<T> command) {
+        Slot<T> slot = new Slot<>(command);
+        lock.lock();
+        try {
+            while (count == ring.length && !closed) {
+                if (overflowPolicy == OverflowPolicy.REJECT) {
+                    slot.result.completeExceptionally(new RejectedExecutionException(
+                            "Bank is busy: command queue is full (" + ring.length + " pending)"));
+                    return slot.result;
+                }
+                notFull.await();
+            }
+            if (closed) {
+                slot.result.completeExceptionally(new RejectedExecutionException("Bank service is shutting down"));
+                return slot.result;
+            }
+            ring[(head + count) % ring.length] = slot;
+            count++;
+            notEmpty.signal();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            slot.result.completeExceptionally(e);
+        } finally {
+            lock.unlock();
+        }
+        return slot.result;
+    }
+
+    // For commands the service issues itself, such as rolling back a change whose
+    // record failed, which must not be lost: they wait for room whatever the overflow
+    // policy, and are still accepted while a close drains the queue. Once the writer
+    // has stopped the command runs on the calling thread, the only writer left.
+    public <T> CompletableFuture<T> submitInternal(Command<T> command) {
+        Slot<T> slot = new Slot<>(command);
+        lock.lock();
+        try {
+            while (count == ring.length && !stopped) {
+                notFull.awaitUninterruptibly();
+            }
+            if (!stopped) {
+                ring[(head + count) % ring.length] = slot;
+                count++;
+                notEmpty.signal();
+                return slot.result;
+            }
+        } finally {
+            lock.unlock();
+        }
+        slot.run();
+        return slot.result;
+    }
+
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void drain() {
+        Slot<?>[] batch = new Slot<?>[Math.min(batchSize, ring.length)];
+        while (true) {
+            int taken;
+            lock.lock();
+            try {
+                while (count == 0 && !closed) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (count == 0) {
+                    stopped = true;
+                    notFull.signalAll();
+                    return;
+                }
+                taken = Math.min(count, batch.length);
+                for (int i = 0; i < taken; i++) {
+                    batch[i] = ring[head];
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                count -= taken;
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+
+            for (int i = 0; i < taken; i++) {
+                batch[i].run();
+                batch[i] = null;
+            }
+            try {
+                afterBatch.run();
+            } catch (RuntimeException e) {
+                System.err.println("Sequencer batch hook failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // Stops accepting commands and waits for the ones already queued to be applied
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
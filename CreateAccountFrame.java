@@ -9,6 +9,7 @@ public class CreateAccountFrame extends JFrame {
     private JTextField firstNameField, lastNameField, emailField, phoneField, initialDepositField;
     private JPasswordField passwordField, confirmPasswordField;
     private JComboBox<Account.AccountType> accountTypeCombo;
+    private TaskStatusBar statusBar;
 
     public CreateAccountFrame(BankService bankService) {
         this.bankService = bankService;
@@ -132,10 +133,18 @@ public class CreateAccountFrame extends JFrame {
         buttonPanel.add(createButton);
         buttonPanel.add(backButton);
 
+        statusBar = new TaskStatusBar(new Color(240, 248, 255));
+        statusBar.setControls(createButton, backButton);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBackground(new Color(240, 248, 255));
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+
         // Add components
         mainPanel.add(titleLabel, BorderLayout.NORTH);
         mainPanel.add(formPanel, BorderLayout.CENTER);
-        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
 
@@ -183,44 +192,52 @@ public class CreateAccountFrame extends JFrame {
             }
 
             // Validate initial deposit
-            double initialDeposit = 0.0;
+            long initialDeposit = 0;
             try {
                 String depositText = initialDepositField.getText().trim();
                 if (!depositText.isEmpty()) {
-                    initialDeposit = Double.parseDouble(depositText);
+                    initialDeposit = Money.parse(depositText);
                     if (initialDeposit < 0) {
                         JOptionPane.showMessageDialog(this, "Initial deposit cannot be negative",
                                 "Input Error", JOptionPane.ERROR_MESSAGE);
                         return;
                     }
                 }
-            } catch (NumberFormatException ex) {
+            } catch (IllegalArgumentException ex) {
                 JOptionPane.showMessageDialog(this, "Invalid initial deposit amount",
                         "Input Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
 
-            // Create account
-            Account newAccount = bankService.createAccount(firstName, lastName, email, phone,
-                    accountType, initialDeposit, password);
-
-            JOptionPane.showMessageDialog(this,
-                    "Account created successfully!\n\nAccount Number: " + newAccount.getAccountNumber() +
-                            "\nAccount Type: " + accountType +
-                            "\nInitial Balance: $" + String.format("%.2f", initialDeposit) +
-                            "\n\nPlease save your account number for future logins.",
-                    "Account Created", JOptionPane.INFORMATION_MESSAGE);
-
-            // Go to dashboard
-            new DashboardFrame(newAccount, bankService);
-            dispose();
+            // Create account; hashing the password and saving run off the EDT
+            long deposit = initialDeposit;
+            statusBar.run("Creating account...",
+                    () -> bankService.createAccount(firstName, lastName, email, phone,
+                            accountType, deposit, password),
+                    newAccount -> {
+                        JOptionPane.showMessageDialog(this,
+                                "Account created successfully!\n\nAccount Number: " + newAccount.getAccountNumber() +
+                                        "\nAccount Type: " + accountType +
+                                        "\nInitial Balance: $" + Money.format(deposit) +
+                                        "\n\nPlease save your account number for future logins.",
+                                "Account Created", JOptionPane.INFORMATION_MESSAGE);
+
+                        // Go to dashboard
+                        new DashboardFrame(newAccount, bankService);
+                        dispose();
+                    },
+                    this::showCreateError);
 
         } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error creating account: " + ex.getMessage(),
-                    "Error", JOptionPane.ERROR_MESSAGE);
+            showCreateError(ex);
         }
     }
 
+    private void showCreateError(Exception ex) {
+        JOptionPane.showMessageDialog(this, "Error creating account: " + ex.getMessage(),
+                "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
     private void handleBack(ActionEvent e) {
         new LoginFrame(bankService);
         dispose();
@@ -0,0 +1,222 @@
+package BankManagementSystem;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Password hashing and verification. PBKDF2-HMAC-SHA256 is computed directly on a
+// per-thread Mac, so a hash costs no provider lookups or key factory allocations;
+// the result is byte-for-byte what SecretKeyFactory("PBKDF2WithHmacSHA256") gives.
+//
+// Logins are verified on a bounded pool sized to the cores, and each account allows
+// maxFailures wrong passwords (counting attempts still in flight) before further
+// attempts are turned away without hashing for a lockout that doubles with every
+// failure, so guessing at one account cannot occupy the CPU.
+//
+// Stored hashes are "iterations:salt:hash"; the older "salt:hash" form was written
+// with 10000 iterations. A hash with fewer than ITERATIONS is flagged for rehashing
+// when its password is next verified.
+public class CredentialService {
+    public static final int ITERATIONS = 10000;
+    private static final int LEGACY_ITERATIONS = 10000;
+    private static final int KEY_LENGTH = 256;
+    private static final int SALT_LENGTH = 16;
+    private static final int MAX_LOCKOUT_DOUBLINGS = 10;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final ThreadLocal<Mac> MACS = ThreadLocal.withInitial(() -> {
+        try {
+            return Mac.getInstance("HmacSHA256");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to create HmacSHA256", e);
+        }
+    });
+    // Verified when the account does not exist, so unknown and known accounts take as long
+    private static final String DUMMY_HASH = hash("unused-Password-1");
+
+    public enum Result {
+        MATCH, MATCH_NEEDS_REHASH, MISMATCH
+    }
+
+    private static class Attempts {
+        int failures;
+        int inFlight;
+        long lockedUntilMillis;
+    }
+
+    private final ThreadPoolExecutor pool;
+    private final int maxFailures;
+    private final long lockoutMillis;
+    private final Map<String, Attempts> attempts = new ConcurrentHashMap<>();
+
+    public CredentialService(int parallelism, int queueSize, int maxFailures, int lockoutSeconds) {
+        int threads = Math.max(1, parallelism);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)), r -> {
+                    Thread thread = new Thread(r, "credential-verifier-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.maxFailures = Math.max(1, maxFailures);
+        this.lockoutMillis = Math.max(1, lockoutSeconds) * 1000L;
+    }
+
+    // Verifies password against storedHash on the pool. accountNumber names the account
+    // whose failures are counted; pass null for accounts that do not exist, whose
+    // attempts are hashed against a dummy and never counted. A throttled or saturated
+    // service fails the future with IllegalStateException without hashing.
+    public CompletableFuture<Result> verify(String accountNumber, String password, String storedHash) {
+        Attempts record = accountNumber == null ? null : attempts.computeIfAbsent(accountNumber, k -> new Attempts());
+        if (record != null) {
+            synchronized (record) {
+                long now = System.currentTimeMillis();
+                if (record.lockedUntilMillis > now) {
+                    return CompletableFuture.failedFuture(new IllegalStateException(
+                            "Too many failed sign-in attempts; try again in " +
+                                    ((record.lockedUntilMillis - now + 999) / 1000) + " seconds"));
+                }
+                if (record.failures + record.inFlight >= maxFailures && record.inFlight > 0) {
+                    return CompletableFuture.failedFuture(new IllegalStateException(
+                            "Too many sign-in attempts in progress for this account"));
+                }
+                record.inFlight++;
+            }
+        }
+        CompletableFuture<Result> result;
+        try {
+            result = CompletableFuture.supplyAsync(() -> check(password, storedHash), pool);
+        } catch (RejectedExecutionException e) {
+            if (record != null) {
+                synchronized (record) {
+                    record.inFlight--;
+                }
+            }
+            return CompletableFuture.failedFuture(new IllegalStateException("Too many sign-ins in progress; try again shortly"));
+        }
+        if (record == null) {
+            return result;
+        }
+        return result.whenComplete((outcome, error) -> {
+            synchronized (record) {
+                record.inFlight--;
+                if (outcome == Result.MATCH || outcome == Result.MATCH_NEEDS_REHASH) {
+                    record.failures = 0;
+                    record.lockedUntilMillis = 0;
+                } else if (outcome == Result.MISMATCH) {
+                    record.failures++;
+                    if (record.failures >= maxFailures) {
+                        int doublings = Math.min(record.failures - maxFailures, MAX_LOCKOUT_DOUBLINGS);
+                        record.lockedUntilMillis = System.currentTimeMillis() + (lockoutMillis << doublings);
+                    }
+                }
+                if (record.failures == 0 && record.inFlight == 0) {
+                    attempts.remove(accountNumber, record);
+                }
+            }
+        });
+    }
+
+    // Hashes on the pool, for rehashing after a login
+    public CompletableFuture<String> hashAsync(String password) {
+        try {
+            return CompletableFuture.supplyAsync(() -> hash(password), pool);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Too many sign-ins in progress; try again shortly"));
+        }
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private static Result check(String password, String storedHash) {
+        if (storedHash == null) {
+            matches(password, DUMMY_HASH);
+            return Result.MISMATCH;
+        }
+        if (!matches(password, storedHash)) {
+            return Result.MISMATCH;
+        }
+        return needsRehash(storedHash) ? Result.MATCH_NEEDS_REHASH : Result.MATCH;
+    }
+
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, ITERATIONS);
+        return ITERATIONS + ":" + Base64.getEncoder().encodeToString(salt) + ":" +
+                Base64.getEncoder().encodeToString(hash);
+    }
+
+    // A malformed stored hash never matches
+    public static boolean matches(String password, String storedHash) {
+        try {
+            String[] parts = storedHash.split(":");
+            int iterations = parts.length == 3 ? Integer.parseInt(parts[0]) : LEGACY_ITERATIONS;
+            byte[] salt = Base64.getDecoder().decode(parts[parts.length - 2]);
+            byte[] hash = Base64.getDecoder().decode(parts[parts.length - 1]);
+            if (password == null || password.isEmpty() || iterations < 1) {
+                return false;
+            }
+            // Time depends only on the lengths, never on where the first differing byte is
+            return MessageDigest.isEqual(hash, pbkdf2(password, salt, iterations));
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    public static boolean needsRehash(String storedHash) {
+        String[] parts = storedHash.split(":");
+        try {
+            return (parts.length == 3 ? Integer.parseInt(parts[0]) : LEGACY_ITERATIONS) < ITERATIONS;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    // RFC 8018 PBKDF2 with HMAC-SHA256; the password is keyed as UTF-8 like SunJCE does
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        Mac mac = MACS.get();
+        byte[] key = password.getBytes(StandardCharsets.UTF_8);
+        try {
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            int macLength = mac.getMacLength();
+            byte[] derived = new byte[KEY_LENGTH / 8];
+            byte[] block = new byte[macLength];
+            byte[] sum = new byte[macLength];
+            for (int index = 1, offset = 0; offset < derived.length; index++, offset += macLength) {
+                mac.update(salt);
+                mac.update(new byte[] {(byte) (index >>> 24), (byte) (index >>> 16), (byte) (index >>> 8), (byte) index});
+                mac.doFinal(block, 0);
+                System.arraycopy(block, 0, sum, 0, macLength);
+                for (int i = 1; i < iterations; i++) {
+                    mac.update(block);
+                    mac.doFinal(block, 0);
+                    for (int j = 0; j < macLength; j++) {
+                        sum[j] ^= block[j];
+                    }
+                }
+                System.arraycopy(sum, 0, derived, offset, Math.min(macLength, derived.length - offset));
+            }
+            return derived;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Failed to hash password", e);
+        } finally {
+            Arrays.fill(key, (byte) 0);
+        }
+    }
+}
@@ -1,18 +1,35 @@
 package BankManagementSystem;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class DashboardFrame extends JFrame {
     private final Account currentAccount;
     private final BankService bankService;
     private JLabel balanceLabel;
     private JLabel accountInfoLabel;
-    private DefaultTableModel transactionTableModel;
+    private TransactionTableModel transactionTableModel;
+    private TaskStatusBar statusBar;
+    // Disabled while a BankService call is in flight
+    private final List<Component> busyControls = new ArrayList<>();
+
+    // Values read off the EDT for refreshAccountData
+    private static class AccountView {
+        final long balanceCents;
+        final Account.AccountStatus status;
+        final int transactionCount;
+
+        AccountView(long balanceCents, Account.AccountStatus status, int transactionCount) {
+            this.balanceCents = balanceCents;
+            this.status = status;
+            this.transactionCount = transactionCount;
+        }
+    }
 
     public DashboardFrame(Account account, BankService bankService) {
         this.currentAccount = account;
@@ -59,10 +76,18 @@ public class DashboardFrame extends JFrame {
         // Footer panel
         JPanel footerPanel = createFooterPanel();
 
+        statusBar = new TaskStatusBar(new Color(240, 248, 255));
+        statusBar.setControls(busyControls.toArray(new Component[0]));
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBackground(new Color(240, 248, 255));
+        southPanel.add(footerPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+
         // Add components
         mainPanel.add(headerPanel, BorderLayout.NORTH);
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
-        mainPanel.add(footerPanel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
         setVisible(true);
@@ -134,14 +159,8 @@ public class DashboardFrame extends JFrame {
         panel.setBackground(Color.WHITE);
         panel.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
 
-        // Transaction table
-        String[] columnNames = {"Date", "Type", "Amount", "Balance", "Description"};
-        transactionTableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-        };
+        // Transaction table, paged in from the history store as it is scrolled
+        transactionTableModel = new TransactionTableModel(bankService, currentAccount.getAccountNumber());
 
         JTable transactionTable = new JTable(transactionTableModel);
         transactionTable.setFont(new Font("Arial", Font.PLAIN, 12));
@@ -155,7 +174,8 @@ public class DashboardFrame extends JFrame {
         buttonPanel.setBackground(Color.WHITE);
 
         JButton refreshButton = Main.createButton("Refresh", new Color(70, 130, 180));
-        refreshButton.addActionListener(e -> refreshTransactions());
+        refreshButton.addActionListener(e -> refreshAccountData());
+        busyControls.add(refreshButton);
         buttonPanel.add(refreshButton);
 
         panel.add(scrollPane, BorderLayout.CENTER);
@@ -196,6 +216,7 @@ public class DashboardFrame extends JFrame {
             toAccountField.setText("");
             amountField.setText("");
         });
+        busyControls.add(transferButton);
         panel.add(transferButton, gbc);
 
         return panel;
@@ -263,6 +284,7 @@ public class DashboardFrame extends JFrame {
             }
         });
 
+        busyControls.add(logoutButton);
         footerPanel.add(logoutButton);
         return footerPanel;
     }
@@ -275,52 +297,50 @@ public class DashboardFrame extends JFrame {
         button.setFocusPainted(false);
         button.setBorder(BorderFactory.createEmptyBorder(20, 20, 20, 20));
         button.setCursor(new Cursor(Cursor.HAND_CURSOR));
+        busyControls.add(button);
         return button;
     }
 
     private void refreshAccountData() {
-        Account updatedAccount = bankService.getAccount(currentAccount.getAccountNumber());
-        if (updatedAccount != null) {
-            currentAccount.setBalance(updatedAccount.getBalance());
-            currentAccount.setTransactions(updatedAccount.getTransactions());
-        }
-
-        balanceLabel.setText(String.format("$%.2f", currentAccount.getBalance()));
-        accountInfoLabel.setText(String.format("Account: %s | Type: %s | Status: %s",
-                currentAccount.getAccountNumber(),
-                currentAccount.getAccountType(),
-                currentAccount.getStatus()));
+        String accountNumber = currentAccount.getAccountNumber();
+        statusBar.run("Loading account...", true, () -> {
+            Account updatedAccount = bankService.getAccount(accountNumber);
+            if (updatedAccount == null) {
+                updatedAccount = currentAccount;
+            }
+            return new AccountView(updatedAccount.getBalanceCents(), updatedAccount.getStatus(),
+                    bankService.getTransactionCount(accountNumber));
+        }, view -> {
+            balanceLabel.setText("$" + Money.format(view.balanceCents));
+            accountInfoLabel.setText(String.format("Account: %s | Type: %s | Status: %s",
+                    accountNumber,
+                    currentAccount.getAccountType(),
+                    view.status));
+            transactionTableModel.refresh(view.transactionCount);
+        }, this::showError);
+    }
 
-        refreshTransactions();
+    private void showError(Exception e) {
+        JOptionPane.showMessageDialog(this, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
     }
 
-    private void refreshTransactions() {
-        transactionTableModel.setRowCount(0);
-        List<Transaction> transactions = currentAccount.getTransactions();
-
-        for (int i = transactions.size() - 1; i >= 0; i--) {
-            Transaction transaction = transactions.get(i);
-            Object[] row = {
-                    transaction.getTimestamp().format(DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm")),
-                    transaction.getType(),
-                    String.format("$%.2f", transaction.getAmount()),
-                    String.format("$%.2f", transaction.getBalanceAfter()),
-                    transaction.getDescription()
-            };
-            transactionTableModel.addRow(row);
-        }
+    // Runs an update off the EDT, then refreshes the dashboard and confirms it
+    private void runUpdate(String progressMessage, String successMessage, Callable<?> update) {
+        statusBar.run(progressMessage, update, result -> {
+            refreshAccountData();
+            JOptionPane.showMessageDialog(this, successMessage, "Success", JOptionPane.INFORMATION_MESSAGE);
+        }, this::showError);
     }
 
     private void showDepositDialog() {
         String amountStr = JOptionPane.showInputDialog(this, "Enter deposit amount:", "Deposit Money", JOptionPane.PLAIN_MESSAGE);
         if (amountStr != null && !amountStr.trim().isEmpty()) {
             try {
-                double amount = Double.parseDouble(amountStr.trim());
-                bankService.deposit(currentAccount.getAccountNumber(), amount);
-                refreshAccountData();
-                JOptionPane.showMessageDialog(this, "Deposit successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                long amount = Money.parse(amountStr);
+                runUpdate("Depositing...", "Deposit successful!",
+                        () -> bankService.deposit(currentAccount.getAccountNumber(), amount));
             } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                showError(e);
             }
         }
     }
@@ -329,12 +349,11 @@ public class DashboardFrame extends JFrame {
         String amountStr = JOptionPane.showInputDialog(this, "Enter withdrawal amount:", "Withdraw Money", JOptionPane.PLAIN_MESSAGE);
         if (amountStr != null && !amountStr.trim().isEmpty()) {
             try {
-                double amount = Double.parseDouble(amountStr.trim());
-                bankService.withdraw(currentAccount.getAccountNumber(), amount);
-                refreshAccountData();
-                JOptionPane.showMessageDialog(this, "Withdrawal successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+                long amount = Money.parse(amountStr);
+                runUpdate("Withdrawing...", "Withdrawal successful!",
+                        () -> bankService.withdraw(currentAccount.getAccountNumber(), amount));
             } catch (Exception e) {
-                JOptionPane.showMessageDialog(this, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                showError(e);
             }
         }
     }
@@ -362,12 +381,12 @@ public class DashboardFrame extends JFrame {
         }
 
         try {
-            double amount = Double.parseDouble(amountStr.trim());
-            bankService.transfer(currentAccount.getAccountNumber(), toAccount.trim(), amount);
-            refreshAccountData();
-            JOptionPane.showMessageDialog(this, "Transfer successful!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            long amount = Money.parse(amountStr);
+            String toAccountNumber = toAccount.trim();
+            runUpdate("Transferring...", "Transfer successful!",
+                    () -> bankService.transfer(currentAccount.getAccountNumber(), toAccountNumber, amount));
         } catch (Exception e) {
-            JOptionPane.showMessageDialog(this, "Error: " + e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            showError(e);
         }
     }
 
@@ -377,9 +396,14 @@ public class DashboardFrame extends JFrame {
                 "Calculate Interest", JOptionPane.YES_NO_OPTION);
 
         if (result == JOptionPane.YES_OPTION) {
-            bankService.calculateInterest();
-            refreshAccountData();
-            JOptionPane.showMessageDialog(this, "Interest calculated and applied!", "Success", JOptionPane.INFORMATION_MESSAGE);
+            statusBar.run("Calculating interest...", bankService::calculateInterest, report -> {
+                refreshAccountData();
+                String message = report.isAlreadyCompleted()
+                        ? "Interest for " + report.getPeriod() + " has already been applied."
+                        : String.format("Interest calculated and applied!\n\n%d accounts credited (%.0f accounts/s)",
+                                report.getAccountsCredited(), report.getAccountsPerSecond());
+                JOptionPane.showMessageDialog(this, message, "Success", JOptionPane.INFORMATION_MESSAGE);
+            }, this::showError);
         }
     }
 }
\ No newline at end of file
@@ -2,61 +2,537 @@ package BankManagementSystem;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
 import java.io.*;
-import java.lang.reflect.Type;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDateTime;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
 
-public class DatabaseManager {
-    private static final String DATA_DIR = "BankData";
-    private static final String ACCOUNTS_FILE = DATA_DIR + "/accounts.json";
-    private static final String BACKUP_DIR = DATA_DIR + "/backup";
+public class DatabaseManager implements AccountRepository {
 
-    private final Gson gson;
-    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Gson journalGson;
+    private final AccountTypeAdapter accountAdapter = new AccountTypeAdapter();
+    private final StorageEngine storageEngine;
+    private final Path dataDir;
+    private final Path backupDir;
+    private final Path journalFile;
+    private final Path checkpointFile;
+    private final Path accountIndexFile;
+    private final Path emailIndexFile;
+    private final Path accountsFile;
+    private final TransactionStore transactionStore;
+    private final BalanceTable balanceTable;
+    // Ledger persistence only: the journal segments, kept for good
+    private final Ledger ledger;
+    private final ReadWriteLock lock = MetricsRegistry.getInstance().instrument("repository", new ReentrantReadWriteLock());
+    private final LongAdder bytesRead = MetricsRegistry.getInstance().counter("Repository", "BytesRead");
+    private final LongAdder bytesWritten = MetricsRegistry.getInstance().counter("Repository", "BytesWritten");
+    private final MetricsRegistry.Timer backupTimer = MetricsRegistry.getInstance().timer("Repository", "backup");
+    private final MetricsRegistry.Timer checkpointTimer = MetricsRegistry.getInstance().timer("Repository", "checkpoint");
+    private final boolean journalEnabled;
+    private final int checkpointEntries;
+
+    // Indexed residency: account number -> record offset and normalized email -> record
+    // offset over the binary snapshot, which is read one record at a time
+    private final boolean indexed;
+    private BPlusTreeIndex accountIndex;
+    private BPlusTreeIndex emailIndex;
+    private FileChannel recordChannel;
+
+    private GroupCommitLog journal;
+    private long lastSequence;
+    // The last sequence the snapshot in place holds; -1 until the checkpoint is read
+    private long checkpointSequence = -1;
+    private int entriesSinceCheckpoint;
+    private boolean journalRecovered;
+    // Set by replayJournal() when the ledger does not carry on from the snapshot
+    private boolean ledgerNeedsOpening;
 
     public DatabaseManager() {
-        this.gson = new GsonBuilder()
+        this(StorageEngine.forName(BankConfig.getStorageEngine()));
+    }
+
+    public DatabaseManager(StorageEngine storageEngine) {
+        this(storageEngine, Paths.get(BankConfig.getDataDir()));
+    }
+
+    public DatabaseManager(StorageEngine storageEngine, Path dataDir) {
+        this.dataDir = dataDir;
+        this.backupDir = dataDir.resolve("backup");
+        this.journalFile = dataDir.resolve("journal.log");
+        this.checkpointFile = dataDir.resolve("journal.checkpoint");
+        this.accountIndexFile = dataDir.resolve("accounts.idx");
+        this.emailIndexFile = dataDir.resolve("emails.idx");
+        this.journalGson = new GsonBuilder()
                 .registerTypeAdapter(LocalDateTime.class, new LocalDateTimeAdapter())
-                .setPrettyPrinting()
+                .registerTypeAdapter(Transaction.class, new TransactionTypeAdapter())
+                .registerTypeAdapter(Account.class, accountAdapter)
                 .create();
+        this.storageEngine = storageEngine;
+        this.accountsFile = accountsFileFor(storageEngine);
+        String persistence = BankConfig.getPersistenceMode();
+        this.journalEnabled = BankConfig.PERSISTENCE_JOURNAL.equals(persistence) ||
+                BankConfig.PERSISTENCE_LEDGER.equals(persistence);
+        this.ledger = BankConfig.PERSISTENCE_LEDGER.equals(persistence)
+                ? new Ledger(dataDir.resolve("ledger"), journalGson) : null;
+        this.checkpointEntries = BankConfig.getCheckpointEntries();
+        this.indexed = BankConfig.RESIDENCY_INDEXED.equals(BankConfig.getResidency());
+        if (indexed && !(storageEngine instanceof BinaryStorageEngine && journalEnabled)) {
+            throw new IllegalStateException("bank.residency=indexed needs bank.storage.engine=binary " +
+                    "and journal persistence");
+        }
+        this.transactionStore = new TransactionStore(dataDir.resolve("history"),
+                BankConfig.getHistoryIndexRows(), BankConfig.getHistoryOpenFiles());
         initializeDatabase();
+        this.balanceTable = BankConfig.isBalanceTableEnabled() ? new BalanceTable(dataDir.resolve("balances.dat")) : null;
     }
 
     private void initializeDatabase() {
+        File dataDirectory = dataDir.toFile();
+        File backupDirectory = backupDir.toFile();
+
+        if (!dataDirectory.exists()) dataDirectory.mkdirs();
+        if (!backupDirectory.exists()) backupDirectory.mkdirs();
+
+        if (!Files.exists(accountsFile)) {
+            // Starting empty next to data in the other format would lose every account
+            for (String other : new String[] {StorageEngine.JSON, StorageEngine.BINARY}) {
+                Path otherFile = accountsFileFor(StorageEngine.forName(other));
+                if (!otherFile.equals(accountsFile) && Files.exists(otherFile)) {
+                    throw new IllegalStateException("Found " + otherFile + " but bank.storage.engine is " +
+                            storageEngine.getName() + "; convert it with StorageConverter first");
+                }
+            }
+            saveAccounts(new ArrayList<>());
+        }
+    }
+
+    private Path accountsFileFor(StorageEngine engine) {
+        return dataDir.resolve("accounts." + engine.getFileExtension());
+    }
+
+    @Override
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public StorageEngine getStorageEngine() {
+        return storageEngine;
+    }
+
+    @Override
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    @Override
+    public TransactionStore getTransactionStore() {
+        return transactionStore;
+    }
+
+    // Null unless bank.balanceTable is enabled
+    @Override
+    public BalanceTable getBalanceTable() {
+        return balanceTable;
+    }
+
+    // Holds the run markers written by the InterestEngine
+    @Override
+    public Path getInterestDirectory() {
+        return dataDir.resolve("interest");
+    }
+
+    // Returns the latest snapshot with any journaled changes replayed on top of it
+    @Override
+    public List<Account> loadAccounts() {
+        StorageEvent event = StorageEvent.begin(StorageEvent.LOAD);
+        // Sized up front: the replay may fold the journal into a new snapshot. Indexed
+        // residency reads only the journal here.
+        long bytes = event == null ? 0 : (indexed ? 0 : sizeOf(accountsFile)) + journalSize();
+        List<Account> accounts = indexed ? loadChangedAccounts() : loadAllAccounts();
+        StorageEvent.end(event, accountsFile.getFileName(), bytes, accounts.size());
+        return accounts;
+    }
+
+    private List<Account> loadAllAccounts() {
+        List<Account> snapshot = loadSnapshot();
+
+        lock.writeLock().lock();
         try {
-            File dataDir = new File(DATA_DIR);
-            File backupDir = new File(BACKUP_DIR);
+            boolean migrated = false;
+            Map<String, Account> accounts = new LinkedHashMap<>();
+            for (Account account : snapshot) {
+                migrated |= migrateLegacyHistory(account);
+                accounts.put(account.getAccountNumber(), account);
+            }
+            if (!journalEnabled) {
+                Ledger left = ledgerLeftBehind();
+                if (left != null) {
+                    for (Path segment : left.segmentsFrom(committedSequence() + 1)) {
+                        if (sizeOf(segment) > 0) {
+                            throw new IllegalStateException(segment + " holds changes that are not in " + accountsFile +
+                                    "; start once with bank.persistence=journal to fold them in");
+                        }
+                    }
+                }
+                if (migrated) {
+                    saveAccounts(snapshot);
+                }
+                return snapshot;
+            }
 
-            if (!dataDir.exists()) dataDir.mkdirs();
-            if (!backupDir.exists()) backupDir.mkdirs();
+            boolean tornTail = replayJournal(accounts);
+            if (tornTail || migrated) {
+                // Fold everything good into a new snapshot
+                writeCheckpoint(new ArrayList<>(accounts.values()));
+            }
+            if (ledgerNeedsOpening) {
+                openLedger(accounts.values());
+            }
+            return new ArrayList<>(accounts.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
 
-            File accountsFile = new File(ACCOUNTS_FILE);
-            if (!accountsFile.exists()) {
-                accountsFile.createNewFile();
-                saveAccounts(new ArrayList<>());
+    // Indexed residency leaves the snapshot on disk and returns only the accounts the
+    // journal changed since the last checkpoint
+    private List<Account> loadChangedAccounts() {
+        lock.writeLock().lock();
+        try {
+            openIndexes();
+            Map<String, Account> changed = new LinkedHashMap<>();
+            if (replayJournal(changed)) {
+                mergeCheckpoint(new ArrayList<>(changed.values()));
+            }
+            if (ledgerNeedsOpening) {
+                openLedger(null);
             }
+            return new ArrayList<>(changed.values());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Account findAccount(String accountNumber) {
+        requireIndexed();
+        lock.readLock().lock();
+        try {
+            return readRecord(accountIndex.get(accountNumber));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Account findAccountByEmail(String email) {
+        requireIndexed();
+        lock.readLock().lock();
+        try {
+            return readRecord(emailIndex.get(EmailIndex.normalize(email)));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public long countAccounts() {
+        requireIndexed();
+        lock.readLock().lock();
+        try {
+            return accountIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<String> accountNumbersAfter(String accountNumber, int limit) {
+        requireIndexed();
+        lock.readLock().lock();
+        try {
+            return accountIndex.keysAfter(accountNumber, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void requireIndexed() {
+        if (!indexed) {
+            throw new IllegalStateException("Only available with bank.residency=indexed");
+        }
+    }
+
+    private Account readRecord(long offset) {
+        if (offset < 0) {
+            return null;
+        }
+        try {
+            return BinaryStorageEngine.readRecord(recordChannel, offset, bytesRead);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to initialize database", e);
+            throw new RuntimeException("Failed to read account record at " + offset, e);
         }
     }
 
-    public List<Account> loadAccounts() {
+    // Uses the index files if they were built from the current snapshot, else rebuilds them
+    private void openIndexes() {
+        try {
+            long[] tag = BinaryStorageEngine.readTag(accountsFile);
+            accountIndex = openIndex(accountIndexFile, tag);
+            emailIndex = openIndex(emailIndexFile, tag);
+            if (accountIndex == null || emailIndex == null) {
+                closeIndexes();
+                rebuildIndexes(false);
+            }
+            recordChannel = FileChannel.open(accountsFile, StandardOpenOption.READ);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open account indexes", e);
+        }
+    }
+
+    private BPlusTreeIndex openIndex(Path file, long[] tag) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        BPlusTreeIndex index;
+        try {
+            index = BPlusTreeIndex.open(file, BankConfig.getIndexCachePages());
+        } catch (RuntimeException e) {
+            System.err.println("Ignoring unreadable index " + file + ": " + e.getMessage());
+            return null;
+        }
+        if (!index.isTaggedWith(tag[0], tag[1])) {
+            index.close();
+            return null;
+        }
+        return index;
+    }
+
+    // One full pass over the snapshot. Snapshots written before records were kept in
+    // account-number order are rewritten sorted first. The email index is sorted in
+    // memory, so this costs a string per account once; checkpoints after this merge.
+    private void rebuildIndexes(boolean resorted) throws IOException {
+        BinaryStorageEngine engine = (BinaryStorageEngine) storageEngine;
+        List<Map.Entry<String, Long>> emails = new ArrayList<>();
+        long[] tag = null;
+        try (BPlusTreeIndex.Builder accountBuilder = BPlusTreeIndex.builder(accountIndexFile)) {
+            try {
+                engine.scan(accountsFile, (accountNumber, oldOffset, offset, account) -> {
+                    accountBuilder.add(accountNumber, offset);
+                    emails.add(new AbstractMap.SimpleImmutableEntry<>(EmailIndex.normalize(account.getEmail()), offset));
+                });
+                tag = BinaryStorageEngine.readTag(accountsFile);
+            } catch (IllegalArgumentException e) {
+                if (resorted) {
+                    throw e;
+                }
+            }
+            if (tag != null) {
+                accountBuilder.finish(tag[0], tag[1]);
+            }
+        }
+        if (tag == null) {
+            // Out of order: sort the snapshot and start again
+            saveAccounts(loadSnapshot());
+            rebuildIndexes(true);
+            return;
+        }
+        emails.sort(Map.Entry.comparingByKey(BPlusTreeIndex.KEY_ORDER));
+        try (BPlusTreeIndex.Builder emailBuilder = BPlusTreeIndex.builder(emailIndexFile)) {
+            String[] previous = {null};
+            for (Map.Entry<String, Long> email : emails) {
+                addEmail(emailBuilder, email.getKey(), email.getValue(), previous);
+            }
+            emailBuilder.finish(tag[0], tag[1]);
+        }
+        accountIndex = BPlusTreeIndex.open(accountIndexFile, BankConfig.getIndexCachePages());
+        emailIndex = BPlusTreeIndex.open(emailIndexFile, BankConfig.getIndexCachePages());
+    }
+
+    // Folds the journal into the snapshot by merging in the accounts changed since the
+    // last checkpoint; every other record is copied as raw bytes. The indexes are
+    // rebuilt alongside: account numbers stream out of the merge in order, and the
+    // email index is the old one with its offsets shifted, plus the new accounts' emails.
+    @Override
+    public void checkpointChanges(Collection<Account> changed) {
+        requireIndexed();
+        lock.writeLock().lock();
+        try {
+            mergeCheckpoint(new ArrayList<>(changed));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void mergeCheckpoint(List<Account> changed) {
+        BinaryStorageEngine engine = (BinaryStorageEngine) storageEngine;
+        Path tempFile = accountsFile.resolveSibling(accountsFile.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        StorageEvent event = StorageEvent.begin(StorageEvent.SAVE);
+        try {
+            syncJournal();
+            transactionStore.sync();
+
+            int addedCount = 0;
+            for (Account account : changed) {
+                if (accountIndex.get(account.getAccountNumber()) < 0) {
+                    addedCount++;
+                }
+            }
+
+            // Old offset -> how far records from there on moved; only changes are stored
+            TreeMap<Long, Long> shifts = new TreeMap<>();
+            long[] lastShift = {0};
+            List<Map.Entry<String, Long>> newEmails = new ArrayList<>();
+            try (BPlusTreeIndex.Builder accountBuilder = BPlusTreeIndex.builder(accountIndexFile);
+                 BPlusTreeIndex.Builder emailBuilder = BPlusTreeIndex.builder(emailIndexFile)) {
+                try (FileOutputStream fos = new FileOutputStream(tempFile.toFile());
+                     BufferedOutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+                    engine.merge(accountsFile, out, changed, addedCount, (accountNumber, oldOffset, offset, account) -> {
+                        accountBuilder.add(accountNumber, offset);
+                        if (oldOffset < 0) {
+                            newEmails.add(new AbstractMap.SimpleImmutableEntry<>(
+                                    EmailIndex.normalize(account.getEmail()), offset));
+                        } else if (offset - oldOffset != lastShift[0]) {
+                            lastShift[0] = offset - oldOffset;
+                            shifts.put(oldOffset, lastShift[0]);
+                        }
+                    });
+                    out.flush();
+                    fos.getFD().sync();
+                }
+
+                newEmails.sort(Map.Entry.comparingByKey(BPlusTreeIndex.KEY_ORDER));
+                int[] next = {0};
+                String[] previous = {null};
+                emailIndex.forEach((email, oldOffset) -> {
+                    while (next[0] < newEmails.size() &&
+                            BPlusTreeIndex.KEY_ORDER.compare(newEmails.get(next[0]).getKey(), email) < 0) {
+                        Map.Entry<String, Long> added = newEmails.get(next[0]++);
+                        addEmail(emailBuilder, added.getKey(), added.getValue(), previous);
+                    }
+                    Map.Entry<Long, Long> shift = shifts.floorEntry(oldOffset);
+                    addEmail(emailBuilder, email, oldOffset + (shift != null ? shift.getValue() : 0), previous);
+                });
+                while (next[0] < newEmails.size()) {
+                    Map.Entry<String, Long> added = newEmails.get(next[0]++);
+                    addEmail(emailBuilder, added.getKey(), added.getValue(), previous);
+                }
+
+                long[] tag = BinaryStorageEngine.readTag(tempFile);
+                accountBuilder.finish(tag[0], tag[1]);
+                emailBuilder.finish(tag[0], tag[1]);
+                // The merge reads the whole old snapshot and writes the whole new one
+                bytesRead.add(Files.size(accountsFile));
+                bytesWritten.add(tag[0]);
+                StorageEvent.end(event, accountsFile.getFileName(), tag[0], changed.size());
+            }
+
+            closeIndexes();
+            linkBackup();
+            sealSegment();
+            writeCheckpointRecord(storageEngine, tempFile, lastSequence);
+            Files.move(tempFile, accountsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            checkpointSequence = lastSequence;
+            cutJournal();
+            forceBalanceTable();
+            checkpointTimer.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            checkpointTimer.recordFailure(System.nanoTime() - start, e);
+            throw new RuntimeException("Failed to checkpoint journal", e);
+        } finally {
+            if (recordChannel == null) {
+                // Whatever snapshot is in place now; a stale index is rebuilt here
+                openIndexes();
+            }
+        }
+    }
+
+    // Keys must be unique, so a second account with an email keeps only the first entry
+    private static void addEmail(BPlusTreeIndex.Builder builder, String email, long offset, String[] previous) {
+        if (email.equals(previous[0])) {
+            System.err.println("Email " + email + " is used by more than one account");
+            return;
+        }
+        builder.add(email, offset);
+        previous[0] = email;
+    }
+
+    // The snapshot being replaced becomes the backup without copying it, where links work
+    private void linkBackup() {
+        Path backup = backupDir.resolve("accounts_backup_" + System.currentTimeMillis() + "." +
+                storageEngine.getFileExtension());
+        long start = System.nanoTime();
+        StorageEvent event = StorageEvent.begin(StorageEvent.BACKUP);
+        try {
+            Files.createLink(backup, accountsFile);
+            // Linked, not copied
+            StorageEvent.end(event, backup.getFileName(), 0, 1);
+            cleanupOldBackups();
+            backupTimer.record(System.nanoTime() - start);
+        } catch (IOException | UnsupportedOperationException e) {
+            createBackup();
+        }
+    }
+
+    private void closeIndexes() throws IOException {
+        if (accountIndex != null) {
+            accountIndex.close();
+            accountIndex = null;
+        }
+        if (emailIndex != null) {
+            emailIndex.close();
+            emailIndex = null;
+        }
+        if (recordChannel != null) {
+            recordChannel.close();
+            recordChannel = null;
+        }
+    }
+
+    // Moves history embedded in an old-format account record into the transaction store
+    private boolean migrateLegacyHistory(Account account) {
+        List<Transaction> legacy = account.getLegacyTransactions();
+        if (legacy == null) {
+            return false;
+        }
+        account.setLegacyTransactions(null);
+        account.setTransactionCount(0);
+        for (Transaction transaction : legacy) {
+            transactionStore.append(account, transaction);
+        }
+        return true;
+    }
+
+    private List<Account> loadSnapshot() {
         lock.readLock().lock();
         try {
-            File file = new File(ACCOUNTS_FILE);
-            if (!file.exists() || file.length() == 0) {
+            if (!Files.exists(accountsFile) || Files.size(accountsFile) == 0) {
                 return new ArrayList<>();
             }
-
-            try (FileReader reader = new FileReader(file)) {
-                Type listType = new TypeToken<List<Account>>(){}.getType();
-                List<Account> accounts = gson.fromJson(reader, listType);
-                return accounts != null ? accounts : new ArrayList<>();
+            bytesRead.add(Files.size(accountsFile));
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(accountsFile), 1 << 16)) {
+                return storageEngine.read(in);
+            } catch (JsonParseException | IllegalStateException e) {
+                throw new IllegalStateException("Failed to read " + accountsFile + ": " + e.getMessage(), e);
             }
         } catch (IOException e) {
             System.err.println("Error loading accounts: " + e.getMessage());
@@ -66,15 +542,427 @@ public class DatabaseManager {
         }
     }
 
+    private boolean replayJournal(Map<String, Account> accounts) {
+        long checkpointSequence = committedSequence();
+        lastSequence = checkpointSequence;
+        entriesSinceCheckpoint = 0;
+        journalRecovered = true;
+
+        if (ledger == null) {
+            // Left by ledger persistence: whatever it holds past the checkpoint is folded in
+            Ledger left = ledgerLeftBehind();
+            if (left != null) {
+                replayLedger(left, left.segmentsFrom(checkpointSequence + 1), accounts, checkpointSequence);
+            }
+            boolean foldLedger = lastSequence > checkpointSequence;
+            return replayFile(journalFile, accounts, checkpointSequence) >= 0 || foldLedger;
+        }
+
+        // Only there if the bank ran with journal persistence until now
+        boolean tornTail = replayFile(journalFile, accounts, checkpointSequence) >= 0;
+        List<Path> tail = ledger.segmentsFrom(checkpointSequence + 1);
+        if (tail.isEmpty() || lastSequence > checkpointSequence) {
+            if (!ledger.segments().isEmpty()) {
+                System.err.println("Ledger does not carry on from the snapshot at sequence " + checkpointSequence +
+                        "; restarting it from the current balances");
+            }
+            ledgerNeedsOpening = true;
+            return tornTail || lastSequence > checkpointSequence;
+        }
+        replayLedger(ledger, tail, accounts, checkpointSequence);
+        return tornTail;
+    }
+
+    // A torn record can only be at the end of the last segment, and is cut off there
+    private void replayLedger(Ledger source, List<Path> tail, Map<String, Account> accounts, long checkpointSequence) {
+        for (int i = 0; i < tail.size(); i++) {
+            long goodLines = replayFile(tail.get(i), accounts, checkpointSequence);
+            if (goodLines < 0) {
+                continue;
+            }
+            if (i < tail.size() - 1) {
+                // Sealed segments were forced before the next was started
+                throw new IllegalStateException("Ledger segment " + tail.get(i) + " is damaged after sequence " +
+                        lastSequence);
+            }
+            try {
+                source.truncate(tail.get(i), goodLines);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to trim ledger segment " + tail.get(i), e);
+            }
+        }
+    }
+
+    // The ledger of an earlier run with ledger persistence, or null
+    private Ledger ledgerLeftBehind() {
+        Path directory = dataDir.resolve("ledger");
+        return Files.isDirectory(directory) ? new Ledger(directory, journalGson) : null;
+    }
+
+    // Applies the entries after checkpointSequence in one journal file or ledger segment.
+    // Returns -1, or the number of lines before a torn record, where the replay stopped.
+    private long replayFile(Path file, Map<String, Account> accounts, long checkpointSequence) {
+        File journal = file.toFile();
+        if (!journal.exists() || journal.length() == 0) {
+            return -1;
+        }
+        bytesRead.add(journal.length());
+
+        long lines = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JournalEntry entry;
+                try {
+                    entry = journalGson.fromJson(line, JournalEntry.class);
+                } catch (JsonParseException e) {
+                    System.err.println("Ignoring torn journal record after sequence " + lastSequence);
+                    return lines - 1;
+                }
+                if (entry.getSequence() <= checkpointSequence) {
+                    continue;
+                }
+                if (indexed) {
+                    // Only the accounts the journal touches are read from the snapshot
+                    for (String accountNumber : entry.getAccountNumbers()) {
+                        if (!accounts.containsKey(accountNumber)) {
+                            Account account = readRecord(accountIndex.get(accountNumber));
+                            if (account != null) {
+                                accounts.put(accountNumber, account);
+                            }
+                        }
+                    }
+                }
+                entry.applyTo(accounts, transactionStore);
+                if (entry.getAccount() != null) {
+                    // Entries journaled before history moved out still embed it
+                    migrateLegacyHistory(entry.getAccount());
+                }
+                lastSequence = entry.getSequence();
+                entriesSinceCheckpoint++;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to replay " + file, e);
+        }
+        return -1;
+    }
+
+    // The ledger has to hold every account from its opening on. When it does not carry
+    // on from the snapshot (a new bank, or one that ran with journal persistence until
+    // now) it is started over with a segment of one OPENING entry per account in the
+    // snapshot, and the checkpoint moves past them. Called with the snapshot up to date;
+    // accounts is null in indexed residency, where the snapshot is read from disk.
+    private void openLedger(Collection<Account> accounts) {
+        LocalDateTime now = LocalDateTime.now();
+        try (Ledger.SegmentWriter writer = ledger.newSegment(lastSequence + 1)) {
+            if (accounts != null) {
+                for (Account account : accounts) {
+                    writeOpening(writer, account, now);
+                }
+            } else {
+                ((BinaryStorageEngine) storageEngine).scan(accountsFile,
+                        (accountNumber, oldOffset, offset, account) -> writeOpening(writer, account, now));
+            }
+            writer.commit();
+            // The snapshot already holds every account as opened
+            sealSegment();
+            writeCheckpointRecord(storageEngine, accountsFile, lastSequence);
+            checkpointSequence = lastSequence;
+            cutJournal();
+            ledgerNeedsOpening = false;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open the ledger", e);
+        }
+    }
+
+    private void writeOpening(Ledger.SegmentWriter writer, Account account, LocalDateTime now) throws IOException {
+        JournalEntry entry = JournalEntry.opening(account);
+        entry.setSequence(lastSequence + 1);
+        entry.setRecordedAt(now);
+        bytesWritten.add(writer.write(entry));
+        lastSequence = entry.getSequence();
+    }
+
+    // Returns a future that completes once the record is durable under the configured
+    // fsync policy. Callers should wait on it after releasing their own locks so that
+    // concurrent writers can share one flush.
+    @Override
+    public CompletableFuture<Void> appendJournal(JournalEntry entry) {
+        lock.writeLock().lock();
+        try {
+            if (!journalRecovered) {
+                throw new IllegalStateException("Journal must be replayed with loadAccounts() before appending");
+            }
+            entry.setSequence(lastSequence + 1);
+            if (ledger != null) {
+                entry.setRecordedAt(LocalDateTime.now());
+            }
+            byte[] record = (journalGson.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            CompletableFuture<Void> durable = getJournal().append(record);
+            bytesWritten.add(record.length);
+            lastSequence = entry.getSequence();
+            entriesSinceCheckpoint++;
+            return durable;
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to append to journal", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> flushJournal() {
+        lock.readLock().lock();
+        try {
+            return journal != null ? journal.flush() : CompletableFuture.completedFuture(null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isCheckpointDue() {
+        lock.readLock().lock();
+        try {
+            return entriesSinceCheckpoint >= checkpointEntries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Folds the journal into a fresh snapshot. The caller must pass a state that
+    // includes every entry appended so far.
+    @Override
+    public void checkpoint(List<Account> accounts) {
+        if (indexed) {
+            throw new IllegalStateException("Indexed residency checkpoints with checkpointChanges()");
+        }
+        lock.writeLock().lock();
+        try {
+            writeCheckpoint(accounts);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeCheckpoint(List<Account> accounts) {
+        long start = System.nanoTime();
+        try {
+            // Everything appended so far must be durable before the journal can be cut
+            syncJournal();
+            sealSegment();
+            saveAccounts(accounts, lastSequence);
+            cutJournal();
+            forceBalanceTable();
+            checkpointTimer.record(System.nanoTime() - start);
+        } catch (IOException e) {
+            checkpointTimer.recordFailure(System.nanoTime() - start, e);
+            throw new RuntimeException("Failed to checkpoint journal", e);
+        }
+    }
+
+    // Ledger persistence starts the next segment before a checkpoint is recorded, so the
+    // segment after the recorded checkpoint always exists
+    private void sealSegment() throws IOException {
+        if (ledger != null) {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            ledger.startSegment(lastSequence + 1);
+        }
+    }
+
+    // Once the snapshot holding everything up to lastSequence is in place, journal
+    // persistence empties the journal; ledger persistence keeps its segments
+    private void cutJournal() throws IOException {
+        if (ledger != null) {
+            // Folded into the snapshot by now, if journal persistence left one
+            Files.deleteIfExists(journalFile);
+        } else {
+            getJournal().truncate();
+        }
+        entriesSinceCheckpoint = 0;
+    }
+
+    // Nothing to force if nothing was appended since startup
+    private void syncJournal() throws IOException {
+        if (journal != null) {
+            journal.sync();
+        }
+    }
+
+    // Written before a new snapshot replaces the old one: the sequence the new snapshot
+    // holds, its size and checksum, and the sequence the old one holds. Until the new
+    // file is renamed into place the old one does not match, so a crash between the two
+    // steps replays from the old sequence, and after it from the new one; entries are
+    // never skipped or applied twice.
+    private void writeCheckpointRecord(StorageEngine engine, Path snapshot, long sequence) throws IOException {
+        long previous = committedSequence();
+        if (sequence == 0 && previous == 0) {
+            // Nothing was ever journaled
+            return;
+        }
+        long[] tag = snapshotTag(engine, snapshot);
+        String record = sequence + " " + tag[0] + " " + tag[1] + " " + previous;
+        Path tempFile = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile.toFile())) {
+            fos.write(record.getBytes(StandardCharsets.UTF_8));
+            fos.getFD().sync();
+        }
+        Files.move(tempFile, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long committedSequence() {
+        if (checkpointSequence < 0) {
+            checkpointSequence = readCheckpointSequence();
+        }
+        return checkpointSequence;
+    }
+
+    // The sequence the snapshot in place holds, by the checkpoint record
+    private long readCheckpointSequence() {
+        if (!Files.exists(checkpointFile)) {
+            return 0;
+        }
+        try {
+            String[] fields = new String(Files.readAllBytes(checkpointFile), StandardCharsets.UTF_8).trim().split(" ");
+            long sequence = Long.parseLong(fields[0]);
+            if (fields.length < 4) {
+                // Written before records carried the snapshot's tag
+                return sequence;
+            }
+            long size = Long.parseLong(fields[1]);
+            long checksum = Long.parseLong(fields[2]);
+            boolean current = Files.exists(accountsFile) && Files.size(accountsFile) == size &&
+                    snapshotTag(storageEngine, accountsFile)[1] == checksum;
+            return current ? sequence : Long.parseLong(fields[3]);
+        } catch (IOException | NumberFormatException e) {
+            throw new RuntimeException("Failed to read journal checkpoint", e);
+        }
+    }
+
+    // Size and checksum of a snapshot file: the stored one for the binary format, else
+    // a CRC32 of the whole file
+    private static long[] snapshotTag(StorageEngine engine, Path file) throws IOException {
+        if (engine instanceof BinaryStorageEngine) {
+            return BinaryStorageEngine.readTag(file);
+        }
+        CRC32 crc = new CRC32();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[1 << 16];
+            int length;
+            while ((length = in.read(buffer)) > 0) {
+                crc.update(buffer, 0, length);
+            }
+        }
+        return new long[] {Files.size(file), crc.getValue()};
+    }
+
+    private GroupCommitLog getJournal() throws IOException {
+        if (journal == null) {
+            Path file = journalFile;
+            if (ledger != null) {
+                if (ledger.currentSegment() == null) {
+                    ledger.startSegment(lastSequence + 1);
+                }
+                file = ledger.currentSegment();
+            }
+            journal = new GroupCommitLog(file,
+                    BankConfig.getJournalSyncPolicy(),
+                    BankConfig.getJournalBatchSize(),
+                    BankConfig.getJournalBatchWindowMicros(),
+                    BankConfig.getJournalSyncIntervalMillis());
+        }
+        return journal;
+    }
+
+    // Read straight from the segment files, so entries still queued for a group commit are not seen yet
+    @Override
+    public Account findAccountAsOf(String accountNumber, LocalDateTime asOf) {
+        if (ledger == null) {
+            throw new IllegalStateException("Only available with bank.persistence=ledger");
+        }
+        if (asOf == null) {
+            throw new IllegalArgumentException("A point in time is required");
+        }
+        return ledger.accountAsOf(accountNumber, asOf);
+    }
+
+    @Override
+    public GroupCommitLog.Stats getJournalStats() {
+        lock.readLock().lock();
+        try {
+            return journal != null ? journal.getStats() : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.close();
+                journal = null;
+            }
+            closeIndexes();
+        } catch (IOException e) {
+            System.err.println("Failed to close journal: " + e.getMessage());
+        } finally {
+            transactionStore.close();
+            closeBalanceTable();
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Bounds what a crash can leave stale to the accounts changed since this checkpoint
+    private void forceBalanceTable() {
+        if (balanceTable != null) {
+            balanceTable.force();
+        }
+    }
+
+    private void closeBalanceTable() {
+        if (balanceTable == null) {
+            return;
+        }
+        try {
+            balanceTable.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close balance table: " + e.getMessage());
+        }
+    }
+
+    @Override
     public void saveAccounts(List<Account> accounts) {
         lock.writeLock().lock();
         try {
+            // Holds what the snapshot it replaces held
+            saveAccounts(accounts, committedSequence());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void saveAccounts(List<Account> accounts, long sequence) {
+        lock.writeLock().lock();
+        try {
+            // History rows referenced by the new snapshot must be on disk first
+            transactionStore.sync();
+
             // Create backup before saving
             createBackup();
 
-            try (FileWriter writer = new FileWriter(ACCOUNTS_FILE)) {
-                gson.toJson(accounts, writer);
-            }
+            StorageEvent event = StorageEvent.begin(StorageEvent.SAVE);
+            long written = writeSnapshot(storageEngine, accountsFile, accounts, sequence);
+            bytesWritten.add(written);
+            StorageEvent.end(event, accountsFile.getFileName(), written, accounts.size());
         } catch (IOException e) {
             throw new RuntimeException("Failed to save accounts", e);
         } finally {
@@ -82,13 +970,58 @@ public class DatabaseManager {
         }
     }
 
+    // Writes to a temporary file first so a crash never leaves a half-written snapshot,
+    // and records it as holding the journal up to sequence. Returns the size written.
+    private long writeSnapshot(StorageEngine engine, Path target, List<Account> accounts, long sequence)
+            throws IOException {
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+        long size;
+        try (FileOutputStream fos = new FileOutputStream(tempFile.toFile());
+             BufferedOutputStream out = new BufferedOutputStream(fos, 1 << 16)) {
+            engine.write(out, accounts);
+            out.flush();
+            fos.getFD().sync();
+            size = fos.getChannel().size();
+        }
+        writeCheckpointRecord(engine, tempFile, sequence);
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        checkpointSequence = sequence;
+        return size;
+    }
+
+    // Rewrites the snapshot in another format and retires the current file to the
+    // backup directory. The journal is folded in first, so the new file is complete
+    // on its own. Only for use offline, before any BankService is running.
+    public void convertTo(StorageEngine target) {
+        if (indexed) {
+            throw new IllegalStateException("Convert with bank.residency=full; indexed residency does not load every account");
+        }
+        List<Account> accounts = loadAccounts();
+        lock.writeLock().lock();
+        try {
+            if (journalEnabled) {
+                writeCheckpoint(accounts);
+            }
+            transactionStore.sync();
+            bytesWritten.add(writeSnapshot(target, accountsFileFor(target), accounts, committedSequence()));
+            Files.move(accountsFile, backupDir.resolve("accounts_converted_" + System.currentTimeMillis() +
+                    "." + storageEngine.getFileExtension()), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to convert accounts to " + target.getName(), e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     private void createBackup() {
+        long start = System.nanoTime();
         try {
-            File sourceFile = new File(ACCOUNTS_FILE);
+            File sourceFile = accountsFile.toFile();
             if (sourceFile.exists()) {
-                String backupFileName = BACKUP_DIR + "/accounts_backup_" +
-                        System.currentTimeMillis() + ".json";
-                File backupFile = new File(backupFileName);
+                File backupFile = backupDir.resolve("accounts_backup_" +
+                        System.currentTimeMillis() + "." + storageEngine.getFileExtension()).toFile();
+                StorageEvent event = StorageEvent.begin(StorageEvent.BACKUP);
+                long copied = 0;
 
                 try (FileInputStream fis = new FileInputStream(sourceFile);
                      FileOutputStream fos = new FileOutputStream(backupFile)) {
@@ -96,26 +1029,58 @@ public class DatabaseManager {
                     int length;
                     while ((length = fis.read(buffer)) > 0) {
                         fos.write(buffer, 0, length);
+                        bytesRead.add(length);
+                        bytesWritten.add(length);
+                        copied += length;
                     }
                 }
+                StorageEvent.end(event, backupFile.getName(), copied, 1);
 
                 // Keep only last 10 backups
                 cleanupOldBackups();
+                backupTimer.record(System.nanoTime() - start);
             }
         } catch (IOException e) {
+            backupTimer.recordFailure(System.nanoTime() - start, e);
             System.err.println("Failed to create backup: " + e.getMessage());
         }
     }
 
     private void cleanupOldBackups() {
-        File backupDir = new File(BACKUP_DIR);
-        File[] backups = backupDir.listFiles((dir, name) -> name.startsWith("accounts_backup_"));
+        StorageEvent event = StorageEvent.begin(StorageEvent.CLEANUP);
+        File[] backups = backupDir.toFile().listFiles((dir, name) -> name.startsWith("accounts_backup_"));
+        long freed = 0;
+        int deleted = 0;
 
         if (backups != null && backups.length > 10) {
             java.util.Arrays.sort(backups, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
             for (int i = 0; i < backups.length - 10; i++) {
-                backups[i].delete();
+                long length = backups[i].length();
+                if (backups[i].delete()) {
+                    freed += length;
+                    deleted++;
+                }
             }
         }
+        StorageEvent.end(event, backupDir.getFileName(), freed, deleted);
+    }
+
+    // What recovery replays: the journal, or the ledger segments after the checkpoint
+    private long journalSize() {
+        long size = sizeOf(journalFile);
+        if (ledger != null) {
+            for (Path segment : ledger.segmentsFrom(committedSequence() + 1)) {
+                size += sizeOf(segment);
+            }
+        }
+        return size;
+    }
+
+    private static long sizeOf(Path file) {
+        try {
+            return Files.exists(file) ? Files.size(file) : 0;
+        } catch (IOException e) {
+            return 0;
+        }
     }
-}
\ No newline at end of file
+}
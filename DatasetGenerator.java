@@ -0,0 +1,286 @@
+package BankManagementSystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Writes a synthetic data directory for sizing and load tests, e.g.
+//
+//   java BankManagementSystem.DatasetGenerator --accounts 1000000 [--dir BankData]
+//        [--types SAVINGS=60,CHECKING=35,PREMIUM=5] [--history 0:60,1-5:30,6-50:9,51-500:1]
+//        [--balance 100000.00] [--password Load-Passw0rd] [--seed 1] [--force]
+//
+// --types weighs the account types and --history the number of history rows per
+// account: "1-5:30" gives 30 parts of the accounts between 1 and 5 rows. Accounts are
+// created over the past year with --balance as the opening deposit, and their history
+// is spread evenly from then up to now. Every account gets the same password, hashed
+// once, so a million accounts take minutes instead of a password hash each. The
+// snapshot is written in the configured storage engine's format (-Dbank.storage.engine).
+public class DatasetGenerator {
+    public static final String DEFAULT_TYPES = "SAVINGS=60,CHECKING=35,PREMIUM=5";
+    public static final String DEFAULT_HISTORY = "0:60,1-5:30,6-50:9,51-500:1";
+    public static final String DEFAULT_PASSWORD = "Load-Passw0rd";
+    public static final long DEFAULT_BALANCE_CENTS = 10_000_000;
+    private static final int MAX_HISTORY_AMOUNT_CENTS = 10_000;
+    private static final int DAYS_OF_HISTORY = 365;
+
+    private final Account.AccountType[] types;
+    private final int[] typeWeights;
+    private final int[] historyMin;
+    private final int[] historyMax;
+    private final int[] historyWeights;
+    private final long balanceCents;
+    private final String password;
+    private final long seed;
+
+    public DatasetGenerator(String typeMix, String historyMix, long balanceCents, String password, long seed) {
+        String[] typeParts = typeMix.split(",");
+        this.types = new Account.AccountType[typeParts.length];
+        this.typeWeights = new int[typeParts.length];
+        for (int i = 0; i < typeParts.length; i++) {
+            String[] pair = typeParts[i].trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected TYPE=weight: " + typeParts[i]);
+            }
+            types[i] = Account.AccountType.valueOf(pair[0].trim().toUpperCase(Locale.ROOT));
+            typeWeights[i] = weight(pair[1]);
+        }
+
+        String[] historyParts = historyMix.split(",");
+        this.historyMin = new int[historyParts.length];
+        this.historyMax = new int[historyParts.length];
+        this.historyWeights = new int[historyParts.length];
+        for (int i = 0; i < historyParts.length; i++) {
+            String[] pair = historyParts[i].trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected rows:weight or min-max:weight: " + historyParts[i]);
+            }
+            String[] range = pair[0].trim().split("-");
+            historyMin[i] = Integer.parseInt(range[0].trim());
+            historyMax[i] = range.length > 1 ? Integer.parseInt(range[1].trim()) : historyMin[i];
+            if (historyMin[i] < 0 || historyMax[i] < historyMin[i]) {
+                throw new IllegalArgumentException("Invalid history range: " + pair[0]);
+            }
+            historyWeights[i] = weight(pair[1]);
+        }
+        if (total(typeWeights) == 0 || total(historyWeights) == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        if (balanceCents < 0) {
+            throw new IllegalArgumentException("Balance cannot be negative");
+        }
+        this.balanceCents = balanceCents;
+        this.password = password;
+        this.seed = seed;
+    }
+
+    public static void main(String[] args) throws IOException {
+        int accounts = -1;
+        Path directory = Paths.get(BankConfig.getDataDir());
+        String typeMix = DEFAULT_TYPES;
+        String historyMix = DEFAULT_HISTORY;
+        long balanceCents = DEFAULT_BALANCE_CENTS;
+        String password = DEFAULT_PASSWORD;
+        long seed = 1;
+        boolean force = false;
+        DatasetGenerator generator = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if ("--force".equals(option)) {
+                    force = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--accounts":
+                        accounts = Integer.parseInt(value);
+                        break;
+                    case "--dir":
+                        directory = Paths.get(value);
+                        break;
+                    case "--types":
+                        typeMix = value;
+                        break;
+                    case "--history":
+                        historyMix = value;
+                        break;
+                    case "--balance":
+                        balanceCents = Money.parse(value);
+                        break;
+                    case "--password":
+                        password = value;
+                        break;
+                    case "--seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            if (accounts < 0) {
+                throw new IllegalArgumentException("--accounts is required");
+            }
+            if (!SecurityUtil.isValidPassword(password)) {
+                throw new IllegalArgumentException("Password must be at least 8 characters with uppercase, lowercase, and numbers");
+            }
+            generator = new DatasetGenerator(typeMix, historyMix, balanceCents, password, seed);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: DatasetGenerator --accounts n [--dir dir] [--types " + DEFAULT_TYPES +
+                    "] [--history " + DEFAULT_HISTORY + "] [--balance amount] [--password p] [--seed n] [--force]");
+            System.exit(2);
+        }
+        if (Files.exists(directory)) {
+            if (!force) {
+                System.err.println(directory + " already exists; pass --force to replace it");
+                System.exit(2);
+            }
+            deleteRecursively(directory);
+        }
+        generator.generate(directory, accounts);
+    }
+
+    // Writes a new data directory; it must not exist yet
+    public void generate(Path directory, int accounts) throws IOException {
+        if (Files.exists(directory)) {
+            throw new IllegalStateException(directory + " already exists");
+        }
+        System.out.printf("Generating %,d accounts in %s%n", accounts, directory);
+        long start = System.nanoTime();
+        DatabaseManager dbManager = new DatabaseManager(StorageEngine.forName(BankConfig.getStorageEngine()), directory);
+        try {
+            TransactionStore history = dbManager.getTransactionStore();
+            String passwordHash = SecurityUtil.hashPassword(password);
+            Random random = new Random(seed);
+            LocalDateTime now = LocalDateTime.now();
+            List<Account> generated = new ArrayList<>(accounts);
+            long historyRows = 0;
+            for (int i = 0; i < accounts; i++) {
+                Account.AccountType type = types[pick(random, typeWeights)];
+                Account account = new Account(SecurityUtil.generateAccountNumber(), "Load", "User" + i,
+                        "load" + i + "@example.com", "5550000000", type, balanceCents, passwordHash);
+                LocalDateTime created = now.minusMinutes(random.nextInt(DAYS_OF_HISTORY * 24 * 60));
+                account.setCreatedDate(created);
+
+                int bucket = pick(random, historyWeights);
+                int length = historyMin[bucket] + random.nextInt(historyMax[bucket] - historyMin[bucket] + 1);
+                if (length > 0) {
+                    account.setBalanceCents(appendHistory(history, account, length, created, now, random));
+                }
+                historyRows += length;
+                generated.add(account);
+            }
+            history.sync();
+            dbManager.saveAccounts(generated);
+            System.out.printf("Generated %,d accounts and %,d history rows in %.1f s%n", accounts, historyRows,
+                    (System.nanoTime() - start) / 1e9);
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    // An opening deposit of the configured balance, then deposits and withdrawals spread
+    // evenly up to now; withdrawals never take the balance below zero. Returns the
+    // resulting balance.
+    private long appendHistory(TransactionStore history, Account account, int length, LocalDateTime from,
+                               LocalDateTime to, Random random) {
+        long balance = 0;
+        long span = Duration.between(from, to).getSeconds();
+        for (int i = 0; i < length; i++) {
+            Transaction.TransactionType type;
+            long amount;
+            String description;
+            if (i == 0 && balanceCents > 0) {
+                type = Transaction.TransactionType.DEPOSIT;
+                amount = balanceCents;
+                description = "Initial deposit";
+            } else {
+                amount = 1 + random.nextInt(MAX_HISTORY_AMOUNT_CENTS);
+                boolean withdrawal = random.nextInt(3) == 0 && balance >= amount;
+                type = withdrawal ? Transaction.TransactionType.WITHDRAWAL : Transaction.TransactionType.DEPOSIT;
+                description = withdrawal ? "Cash withdrawal" : "Cash deposit";
+            }
+            balance += type == Transaction.TransactionType.WITHDRAWAL ? -amount : amount;
+            Transaction transaction = new Transaction(type, amount, balance, description);
+            transaction.setTimestamp(from.plusSeconds(span * i / length));
+            history.append(account, transaction);
+        }
+        return balance;
+    }
+
+    // Every account number in a data directory, read through a repository of its own;
+    // run it before a BankService opens the directory
+    public static String[] listAccountNumbers(Path directory) {
+        Set<String> accountNumbers = new LinkedHashSet<>();
+        DatabaseManager dbManager = new DatabaseManager(StorageEngine.forName(BankConfig.getStorageEngine()), directory);
+        try {
+            for (Account account : dbManager.loadAccounts()) {
+                accountNumbers.add(account.getAccountNumber());
+            }
+            if (dbManager.isIndexed()) {
+                // loadAccounts() only returned the accounts changed since the last checkpoint
+                List<String> batch = dbManager.accountNumbersAfter(null, 10_000);
+                while (!batch.isEmpty()) {
+                    accountNumbers.addAll(batch);
+                    batch = dbManager.accountNumbersAfter(batch.get(batch.size() - 1), 10_000);
+                }
+            }
+        } finally {
+            dbManager.close();
+        }
+        return accountNumbers.toArray(new String[0]);
+    }
+
+    static void deleteRecursively(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static int pick(Random random, int[] weights) {
+        int choice = random.nextInt(total(weights));
+        for (int i = 0; i < weights.length; i++) {
+            choice -= weights[i];
+            if (choice < 0) {
+                return i;
+            }
+        }
+        return weights.length - 1;
+    }
+
+    private static int total(int[] weights) {
+        int total = 0;
+        for (int weight : weights) {
+            total += weight;
+        }
+        return total;
+    }
+
+    private static int weight(String text) {
+        int weight = Integer.parseInt(text.trim());
+        if (weight < 0) {
+            throw new IllegalArgumentException("Weights cannot be negative: " + text);
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,66 @@
+package BankManagementSystem;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Unique index of account emails, compared case-insensitively. A registration first
+// reserves its email, which fails if any other account holds or has reserved it,
+// and then commits the reservation once the account is durable or releases it if
+// the registration fails. In indexed residency an account's email is dropped once a
+// checkpoint has put the account in the on-disk email index.
+public class EmailIndex {
+    private static class Entry {
+        final String accountNumber;
+        volatile boolean committed;
+
+        Entry(String accountNumber, boolean committed) {
+            this.accountNumber = accountNumber;
+            this.committed = committed;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    public static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // Indexes an account that already exists, e.g. one loaded from disk
+    public void add(Account account) {
+        Entry previous = entries.putIfAbsent(normalize(account.getEmail()),
+                new Entry(account.getAccountNumber(), true));
+        if (previous != null) {
+            System.err.println("Email " + account.getEmail() + " is used by both " +
+                    previous.accountNumber + " and " + account.getAccountNumber());
+        }
+    }
+
+    public boolean reserve(String email, String accountNumber) {
+        return entries.putIfAbsent(normalize(email), new Entry(accountNumber, false)) == null;
+    }
+
+    public void commit(String email, String accountNumber) {
+        Entry entry = entries.get(normalize(email));
+        if (entry != null && entry.accountNumber.equals(accountNumber)) {
+            entry.committed = true;
+        }
+    }
+
+    public void release(String email, String accountNumber) {
+        entries.computeIfPresent(normalize(email),
+                (key, entry) -> entry.accountNumber.equals(accountNumber) && !entry.committed ? null : entry);
+    }
+
+    // Removes a committed email, once it can be found on disk instead
+    public void evict(String email, String accountNumber) {
+        entries.computeIfPresent(normalize(email),
+                (key, entry) -> entry.accountNumber.equals(accountNumber) && entry.committed ? null : entry);
+    }
+
+    // Account number registered under the email, or null; pending reservations are not visible
+    public String find(String email) {
+        Entry entry = entries.get(normalize(email));
+        return entry != null && entry.committed ? entry.accountNumber : null;
+    }
+}
@@ -0,0 +1,417 @@
+package BankManagementSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Append-only log file where records written close together share one fsync.
+// Callers get a future that completes once their record is on disk.
+public class GroupCommitLog implements Closeable {
+    public enum SyncPolicy {
+        ALWAYS,   // write and force on the caller's thread for every record
+        BATCHED,  // a flusher thread writes and forces pending records together
+        INTERVAL  // write immediately, force on a timer; completes before the force
+    }
+
+    private final FileChannel channel;
+    private final SyncPolicy policy;
+    private final int maxBatchSize;
+    private final long batchWindowNanos;
+    private final long syncIntervalNanos;
+
+    // queueLock guards the pending batch; ioLock guards the channel so that
+    // writers can keep enqueueing while a batch is being forced
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Condition recordsPending = queueLock.newCondition();
+    private final ReentrantLock ioLock = new ReentrantLock();
+    private List<PendingRecord> pending = new ArrayList<>();
+    // Set by flush() so the flusher commits the pending batch without waiting out the window
+    private boolean flushRequested;
+    private final Thread flusher;
+    private volatile boolean closed;
+    // Set when a failed write could not be cut back off the file. Records appended
+    // after it would be replayed along with records whose callers were told they
+    // failed, so the log refuses everything from then on.
+    private volatile IOException failure;
+    private int unsyncedRecords;
+
+    // Statistics, guarded by ioLock
+    private long batches;
+    private long records;
+    private int maxBatch;
+    private long totalCommitNanos;
+    private long maxCommitNanos;
+
+    private static class PendingRecord {
+        final ByteBuffer data;
+        final long enqueuedAt;
+        final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        PendingRecord(byte[] data) {
+            this.data = ByteBuffer.wrap(data);
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    public GroupCommitLog(Path file, SyncPolicy policy, int maxBatchSize,
+                          long batchWindowMicros, long syncIntervalMillis) throws IOException {
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.policy = policy;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchWindowMicros));
+        this.syncIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, syncIntervalMillis));
+
+        if (policy == SyncPolicy.ALWAYS) {
+            this.flusher = null;
+        } else {
+            this.flusher = new Thread(policy == SyncPolicy.BATCHED ? this::runBatches : this::runInterval,
+                    "journal-flusher");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+    }
+
+    public CompletableFuture<Void> append(byte[] record) {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        PendingRecord pendingRecord = new PendingRecord(record);
+        if (policy == SyncPolicy.BATCHED) {
+            return enqueue(pendingRecord, false);
+        }
+
+        ioLock.lock();
+        try {
+            checkUsable();
+            long start = channel.size();
+            try {
+                write(pendingRecord.data);
+                if (policy == SyncPolicy.ALWAYS) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                discardFrom(start, e);
+                throw e;
+            }
+            if (policy == SyncPolicy.ALWAYS) {
+                recordBatchSize(1);
+            } else {
+                unsyncedRecords++;
+            }
+            recordCommitLatency(System.nanoTime() - pendingRecord.enqueuedAt);
+            pendingRecord.durable.complete(null);
+        } catch (IOException e) {
+            pendingRecord.durable.completeExceptionally(e);
+        } finally {
+            ioLock.unlock();
+        }
+        return pendingRecord.durable;
+    }
+
+    // Blocks until everything appended so far has been forced to disk
+    public void sync() throws IOException {
+        if (policy == SyncPolicy.BATCHED) {
+            flush().join();
+            return;
+        }
+        ioLock.lock();
+        try {
+            channel.force(false);
+            unsyncedRecords = 0;
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    // Completes once everything appended so far is durable. In batched mode the pending
+    // batch is committed straight away rather than at the end of its window.
+    public CompletableFuture<Void> flush() {
+        if (policy != SyncPolicy.BATCHED) {
+            try {
+                sync();
+                return CompletableFuture.completedFuture(null);
+            } catch (IOException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return enqueue(new PendingRecord(new byte[0]), true);
+    }
+
+    // Fails the record if the log was closed, since the flusher may have stopped already
+    private CompletableFuture<Void> enqueue(PendingRecord pendingRecord, boolean flush) {
+        queueLock.lock();
+        try {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Journal is closed"));
+            }
+            if (failure != null) {
+                return CompletableFuture.failedFuture(
+                        new IOException("Journal stopped after a failed write could not be undone", failure));
+            }
+            pending.add(pendingRecord);
+            flushRequested |= flush;
+            recordsPending.signal();
+        } finally {
+            queueLock.unlock();
+        }
+        return pendingRecord.durable;
+    }
+
+    // Discards the file contents; callers sync first so no acknowledged record is lost
+    public void truncate() throws IOException {
+        ioLock.lock();
+        try {
+            channel.truncate(0);
+            channel.force(false);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    private void runBatches() {
+        while (true) {
+            List<PendingRecord> batch;
+            queueLock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    recordsPending.awaitUninterruptibly();
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                // Give concurrent writers a short window to join this batch
+                long deadline = pending.get(0).enqueuedAt + batchWindowNanos;
+                long remaining;
+                while (pending.size() < maxBatchSize && !closed && !flushRequested
+                        && (remaining = deadline - System.nanoTime()) > 0) {
+                    try {
+                        recordsPending.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                flushRequested = false;
+            } finally {
+                queueLock.unlock();
+            }
+
+            commitBatch(batch);
+        }
+    }
+
+    private void commitBatch(List<PendingRecord> batch) {
+        try {
+            ByteBuffer[] buffers = new ByteBuffer[batch.size()];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = batch.get(i).data;
+            }
+            ioLock.lock();
+            try {
+                checkUsable();
+                long start = channel.size();
+                try {
+                    while (hasRemaining(buffers)) {
+                        channel.write(buffers);
+                    }
+                    channel.force(false);
+                } catch (IOException e) {
+                    discardFrom(start, e);
+                    throw e;
+                }
+                long now = System.nanoTime();
+                int size = 0;
+                for (PendingRecord record : batch) {
+                    // Zero-length records are sync() barriers, not journal records
+                    if (record.data.capacity() > 0) {
+                        recordCommitLatency(now - record.enqueuedAt);
+                        size++;
+                    }
+                }
+                // A batch of sync() barriers alone is not a commit of any record
+                if (size > 0) {
+                    recordBatchSize(size);
+                }
+            } finally {
+                ioLock.unlock();
+            }
+            for (PendingRecord record : batch) {
+                record.durable.complete(null);
+            }
+        } catch (IOException e) {
+            // Latest first, so that changes rolled back on failure unwind in reverse
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                batch.get(i).durable.completeExceptionally(e);
+            }
+        }
+    }
+
+    // Woken early only by close(), which does the final force itself. The flusher is
+    // never interrupted: that would close the channel under a force in progress.
+    private void runInterval() {
+        while (true) {
+            queueLock.lock();
+            try {
+                long remaining = syncIntervalNanos;
+                while (!closed && remaining > 0) {
+                    remaining = recordsPending.awaitNanos(remaining);
+                }
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                queueLock.unlock();
+            }
+            ioLock.lock();
+            try {
+                if (unsyncedRecords > 0) {
+                    channel.force(false);
+                    recordBatchSize(unsyncedRecords);
+                    unsyncedRecords = 0;
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to sync journal: " + e.getMessage());
+            } finally {
+                ioLock.unlock();
+            }
+        }
+    }
+
+    // Called holding ioLock
+    private void checkUsable() throws IOException {
+        if (failure != null) {
+            throw new IOException("Journal stopped after a failed write could not be undone", failure);
+        }
+    }
+
+    // Cuts a failed write off the end of the file, so that records its callers saw
+    // fail are not replayed on restart. Called holding ioLock.
+    private void discardFrom(long start, IOException cause) {
+        try {
+            channel.truncate(start);
+            channel.force(false);
+        } catch (IOException e) {
+            e.addSuppressed(cause);
+            failure = e;
+            System.err.println("Journal stopped: failed to undo a failed write: " + e.getMessage());
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static boolean hasRemaining(ByteBuffer[] buffers) {
+        for (ByteBuffer buffer : buffers) {
+            if (buffer.hasRemaining()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordBatchSize(int size) {
+        batches++;
+        maxBatch = Math.max(maxBatch, size);
+    }
+
+    private void recordCommitLatency(long latencyNanos) {
+        records++;
+        totalCommitNanos += latencyNanos;
+        maxCommitNanos = Math.max(maxCommitNanos, latencyNanos);
+    }
+
+    public Stats getStats() {
+        ioLock.lock();
+        try {
+            return new Stats(policy, batches, records, maxBatch, totalCommitNanos, maxCommitNanos);
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        queueLock.lock();
+        try {
+            closed = true;
+            recordsPending.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        ioLock.lock();
+        try {
+            channel.force(false);
+            channel.close();
+        } finally {
+            ioLock.unlock();
+        }
+    }
+
+    public static class Stats {
+        private final SyncPolicy policy;
+        private final long batches;
+        private final long records;
+        private final int maxBatchSize;
+        private final long totalCommitNanos;
+        private final long maxCommitNanos;
+
+        Stats(SyncPolicy policy, long batches, long records, int maxBatchSize,
+              long totalCommitNanos, long maxCommitNanos) {
+            this.policy = policy;
+            this.batches = batches;
+            this.records = records;
+            this.maxBatchSize = maxBatchSize;
+            this.totalCommitNanos = totalCommitNanos;
+            this.maxCommitNanos = maxCommitNanos;
+        }
+
+        public SyncPolicy getPolicy() { return policy; }
+        public long getBatches() { return batches; }
+        public long getRecords() { return records; }
+        public int getMaxBatchSize() { return maxBatchSize; }
+
+        public double getAverageBatchSize() {
+            return batches == 0 ? 0 : (double) records / batches;
+        }
+
+        public double getAverageCommitMicros() {
+            return records == 0 ? 0 : totalCommitNanos / 1000.0 / records;
+        }
+
+        public double getMaxCommitMicros() {
+            return maxCommitNanos / 1000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("policy=%s syncs=%d records=%d avgBatch=%.1f maxBatch=%d avgCommit=%.0fus maxCommit=%.0fus",
+                    policy, batches, records, getAverageBatchSize(), maxBatchSize,
+                    getAverageCommitMicros(), getMaxCommitMicros());
+        }
+    }
+}
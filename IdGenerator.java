@@ -0,0 +1,88 @@
+package BankManagementSystem;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Snowflake-style 64-bit ids: 41 bits of milliseconds since 2024-01-01, a 10-bit node
+// id and a 12-bit sequence within the millisecond. Ids from one generator are unique
+// and strictly increasing; ids from generators with different node ids never collide.
+//
+// The time and sequence are kept together in one AtomicLong and advanced with CAS, so
+// generation never blocks. When a millisecond's 4096 sequence numbers run out, or the
+// wall clock steps backwards, the stored time simply runs ahead of the clock until
+// the clock catches up.
+public class IdGenerator {
+    private static final long EPOCH_MILLIS = Instant.parse("2024-01-01T00:00:00Z").toEpochMilli();
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    // Width of the decimal string form; Long.MAX_VALUE has 19 digits
+    public static final int DIGITS = 19;
+
+    private static final IdGenerator INSTANCE = new IdGenerator(BankConfig.getNodeId());
+
+    private final long nodeBits;
+    // (millis since EPOCH_MILLIS) << SEQUENCE_BITS | sequence of the last id handed out
+    private final AtomicLong state = new AtomicLong();
+
+    public IdGenerator(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + MAX_NODE_ID);
+        }
+        this.nodeBits = (long) nodeId << SEQUENCE_BITS;
+    }
+
+    public static IdGenerator getInstance() {
+        return INSTANCE;
+    }
+
+    public long nextId() {
+        long next;
+        while (true) {
+            long previous = state.get();
+            long now = (System.currentTimeMillis() - EPOCH_MILLIS) << SEQUENCE_BITS;
+            // A full sequence carries into the time field, i.e. borrows the next millisecond
+            next = now > previous ? now : previous + 1;
+            if (state.compareAndSet(previous, next)) {
+                break;
+            }
+        }
+        long millis = next >>> SEQUENCE_BITS;
+        return millis << (NODE_BITS + SEQUENCE_BITS) | nodeBits | (next & SEQUENCE_MASK);
+    }
+
+    public String nextString() {
+        return format(nextId());
+    }
+
+    // Fixed-width decimal form, so string order matches numeric order
+    public static String format(long id) {
+        char[] digits = new char[DIGITS];
+        for (int i = DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + id % 10);
+            id /= 10;
+        }
+        return new String(digits);
+    }
+
+    public static long parse(String digits) {
+        if (digits.length() != DIGITS) {
+            throw new IllegalArgumentException("Id must have " + DIGITS + " digits");
+        }
+        return Long.parseLong(digits);
+    }
+
+    public static long timestampOf(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    public static int nodeOf(long id) {
+        return (int) (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    public static int sequenceOf(long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,206 @@
+package BankManagementSystem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.YearMonth;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ToIntFunction;
+
+// Month-end interest run. Accounts are grouped by lock stripe and cut into chunks of
+// at most chunkSize, and the chunks are credited in parallel on a ForkJoinPool. Each
+// chunk is one journal record, so a run costs one durability wait per chunk. Without
+// a journal the chunks are only applied, and the run is saved once at the end.
+//
+// A run is idempotent per period: every credited account records the period, and
+// a marker file in BankData/interest says whether the period's run finished. A run
+// that died midway is resumed by running it again; accounts already credited for
+// the period are skipped.
+public class InterestEngine {
+    private static final String STARTED = "started";
+    private static final String COMPLETED = "completed";
+
+    // Credits one chunk; every account in it belongs to the same lock stripe. The
+    // future completes once the chunk is durable.
+    public interface ChunkApplier {
+        CompletableFuture<ChunkResult> apply(YearMonth period, List<Account> chunk);
+    }
+
+    public static class ChunkResult {
+        final int credited;
+        final long totalInterestCents;
+
+        public ChunkResult(int credited, long totalInterestCents) {
+            this.credited = credited;
+            this.totalInterestCents = totalInterestCents;
+        }
+    }
+
+    private final Path markerDirectory;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public InterestEngine(Path markerDirectory, int parallelism, int chunkSize) {
+        this.markerDirectory = markerDirectory;
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    // Runs one at a time; a second request for the same period returns immediately.
+    // Accounts are consumed as they are iterated: a stripe's chunk is submitted as soon
+    // as it is full, and at most twice the pool's parallelism chunks are in flight, so
+    // a run holds a bounded number of accounts however many it visits. finish is called
+    // once every chunk is applied, before the run is marked completed.
+    public synchronized Report run(YearMonth period, Iterable<Account> accounts,
+                                   ToIntFunction<String> stripeOf, ChunkApplier applier, Runnable finish) {
+        if (COMPLETED.equals(readMarker(period))) {
+            return new Report(period, true, 0, 0, 0, 0, 0);
+        }
+        long start = System.nanoTime();
+        writeMarker(period, STARTED);
+
+        Totals totals = new Totals();
+        Deque<ForkJoinTask<ChunkResult>> inFlight = new ArrayDeque<>();
+        TreeMap<Integer, List<Account>> byStripe = new TreeMap<>();
+        int scanned = 0;
+        int chunks = 0;
+        for (Account account : accounts) {
+            scanned++;
+            int stripe = stripeOf.applyAsInt(account.getAccountNumber());
+            List<Account> chunk = byStripe.computeIfAbsent(stripe, k -> new ArrayList<>());
+            chunk.add(account);
+            if (chunk.size() == chunkSize) {
+                byStripe.remove(stripe);
+                submit(period, chunk, applier, inFlight, totals);
+                chunks++;
+            }
+        }
+        for (List<Account> chunk : byStripe.values()) {
+            submit(period, chunk, applier, inFlight, totals);
+            chunks++;
+        }
+        while (!inFlight.isEmpty()) {
+            totals.collect(inFlight.poll());
+        }
+        // Also after a failed chunk, so that the chunks credited are kept
+        finish.run();
+        if (totals.failure != null) {
+            throw new RuntimeException("Interest run for " + period + " did not finish; run it again to resume",
+                    totals.failure);
+        }
+
+        writeMarker(period, COMPLETED);
+        return new Report(period, false, scanned, totals.credited, chunks, totals.interestCents,
+                System.nanoTime() - start);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void submit(YearMonth period, List<Account> chunk, ChunkApplier applier,
+                        Deque<ForkJoinTask<ChunkResult>> inFlight, Totals totals) {
+        if (inFlight.size() >= pool.getParallelism() * 2) {
+            totals.collect(inFlight.poll());
+        }
+        inFlight.add(pool.submit(() -> applier.apply(period, chunk).join()));
+    }
+
+    private static class Totals {
+        int credited;
+        long interestCents;
+        RuntimeException failure;
+
+        // A failed chunk does not stop the others; the run is reported as unfinished
+        void collect(ForkJoinTask<ChunkResult> task) {
+            try {
+                ChunkResult result = task.join();
+                credited += result.credited;
+                interestCents += result.totalInterestCents;
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private String readMarker(YearMonth period) {
+        Path marker = markerDirectory.resolve(period + ".run");
+        if (!Files.exists(marker)) {
+            return null;
+        }
+        try {
+            return new String(Files.readAllBytes(marker), StandardCharsets.UTF_8).trim();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read interest run marker " + marker, e);
+        }
+    }
+
+    private void writeMarker(YearMonth period, String status) {
+        Path marker = markerDirectory.resolve(period + ".run");
+        Path tempFile = markerDirectory.resolve(period + ".run.tmp");
+        try {
+            Files.createDirectories(markerDirectory);
+            Files.write(tempFile, status.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile, marker, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write interest run marker " + marker, e);
+        }
+    }
+
+    public static class Report {
+        private final YearMonth period;
+        private final boolean alreadyCompleted;
+        private final int accountsScanned;
+        private final int accountsCredited;
+        private final int chunks;
+        private final long totalInterestCents;
+        private final long elapsedNanos;
+
+        Report(YearMonth period, boolean alreadyCompleted, int accountsScanned, int accountsCredited,
+               int chunks, long totalInterestCents, long elapsedNanos) {
+            this.period = period;
+            this.alreadyCompleted = alreadyCompleted;
+            this.accountsScanned = accountsScanned;
+            this.accountsCredited = accountsCredited;
+            this.chunks = chunks;
+            this.totalInterestCents = totalInterestCents;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public YearMonth getPeriod() { return period; }
+        public boolean isAlreadyCompleted() { return alreadyCompleted; }
+        public int getAccountsScanned() { return accountsScanned; }
+        public int getAccountsCredited() { return accountsCredited; }
+        public int getChunks() { return chunks; }
+        public long getTotalInterestCents() { return totalInterestCents; }
+
+        public double getElapsedMillis() {
+            return elapsedNanos / 1_000_000.0;
+        }
+
+        public double getAccountsPerSecond() {
+            return elapsedNanos == 0 ? 0 : accountsScanned * 1_000_000_000.0 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            if (alreadyCompleted) {
+                return "Interest for " + period + " was already applied";
+            }
+            return String.format("period=%s accounts=%d credited=%d chunks=%d interest=%s elapsed=%.0fms rate=%.0f accounts/s",
+                    period, accountsScanned, accountsCredited, chunks, Money.format(totalInterestCents),
+                    getElapsedMillis(), getAccountsPerSecond());
+        }
+    }
+}
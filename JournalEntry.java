@@ -0,0 +1,196 @@
+package BankManagementSystem;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class JournalEntry {
+    private long sequence;
+    // Set in ledger persistence: when the entry was appended, for rebuilding accounts as of a time
+    private LocalDateTime recordedAt;
+    private Operation operation;
+    private Account account;
+    private List<Posting> postings;
+    // Set on INTEREST entries; replay marks every credited account with it
+    private String interestPeriod;
+    // Set on daily accrual entries: the account accrued and how far it now is accrued
+    private String accruedAccount;
+    private LocalDateTime accruedThrough;
+    // Set on CREDENTIALS entries: the account whose stored password hash was replaced
+    private String credentialAccount;
+    private String passwordHash;
+
+    public enum Operation {
+        CREATE_ACCOUNT, DEPOSIT, WITHDRAW, TRANSFER, INTEREST, CREDENTIALS,
+        // Carries an account opened before the ledger started into it, as it stood then
+        OPENING
+    }
+
+    public static class Posting {
+        private String accountNumber;
+        private Transaction transaction;
+
+        public Posting() {
+        }
+
+        public Posting(String accountNumber, Transaction transaction) {
+            this.accountNumber = accountNumber;
+            this.transaction = transaction;
+        }
+
+        public String getAccountNumber() { return accountNumber; }
+        public Transaction getTransaction() { return transaction; }
+    }
+
+    public JournalEntry() {
+        this.postings = new ArrayList<>();
+    }
+
+    public JournalEntry(Operation operation) {
+        this();
+        this.operation = operation;
+    }
+
+    public static JournalEntry accountCreated(Account account, Transaction initialTransaction) {
+        JournalEntry entry = new JournalEntry(Operation.CREATE_ACCOUNT);
+        entry.account = account;
+        if (initialTransaction != null) {
+            entry.addPosting(account.getAccountNumber(), initialTransaction);
+        }
+        return entry;
+    }
+
+    public static JournalEntry opening(Account account) {
+        JournalEntry entry = new JournalEntry(Operation.OPENING);
+        entry.account = account;
+        return entry;
+    }
+
+    public static JournalEntry interestCredited(String period) {
+        JournalEntry entry = new JournalEntry(Operation.INTEREST);
+        entry.interestPeriod = period;
+        return entry;
+    }
+
+    // Recorded even when no interest was due, so replay advances the accrual point too
+    public static JournalEntry interestAccrued(String accountNumber, LocalDateTime accruedThrough) {
+        JournalEntry entry = new JournalEntry(Operation.INTEREST);
+        entry.accruedAccount = accountNumber;
+        entry.accruedThrough = accruedThrough;
+        return entry;
+    }
+
+    public static JournalEntry passwordRehashed(String accountNumber, String passwordHash) {
+        JournalEntry entry = new JournalEntry(Operation.CREDENTIALS);
+        entry.credentialAccount = accountNumber;
+        entry.passwordHash = passwordHash;
+        return entry;
+    }
+
+    public JournalEntry addPosting(String accountNumber, Transaction transaction) {
+        postings.add(new Posting(accountNumber, transaction));
+        return this;
+    }
+
+    // Replays this entry on top of a snapshot. Postings carry the resulting balance,
+    // so applying them in journal order reproduces the state exactly. History rows are
+    // rewritten from the account's current transaction count, so rows that already
+    // reached the history store before a crash are replaced rather than duplicated.
+    public void applyTo(Map<String, Account> accounts, TransactionStore history) {
+        if (operation == Operation.CREATE_ACCOUNT) {
+            // The opening deposit is carried as a posting, so history starts empty
+            account.setTransactionCount(0);
+            accounts.put(account.getAccountNumber(), account);
+        } else if (operation == Operation.OPENING) {
+            // Its history predates the ledger and is already in the store
+            accounts.put(account.getAccountNumber(), account);
+        }
+        if (accruedAccount != null && accounts.containsKey(accruedAccount)) {
+            accounts.get(accruedAccount).setLastAccruedAt(accruedThrough);
+        }
+        if (credentialAccount != null && accounts.containsKey(credentialAccount)) {
+            accounts.get(credentialAccount).setPasswordHash(passwordHash);
+        }
+        for (Posting posting : postings) {
+            Account target = accounts.get(posting.getAccountNumber());
+            if (target == null) {
+                System.err.println("Journal entry " + sequence + " references unknown account " +
+                        posting.getAccountNumber());
+                continue;
+            }
+            target.setBalanceCents(posting.getTransaction().getBalanceAfterCents());
+            if (interestPeriod != null) {
+                target.setLastInterestPeriod(interestPeriod);
+            }
+            history.append(target, posting.getTransaction());
+        }
+    }
+
+    // Applies this entry to one account only, given as it stood before (null if it did
+    // not exist yet), and returns it as it stands after. Used to rebuild an account from
+    // the ledger, so history rows are counted rather than written.
+    public Account replayFor(String accountNumber, Account before) {
+        Account target = before;
+        if (account != null && account.getAccountNumber().equals(accountNumber)) {
+            target = account;
+            if (operation == Operation.CREATE_ACCOUNT) {
+                target.setTransactionCount(0);
+            }
+        }
+        if (target == null) {
+            return null;
+        }
+        if (accountNumber.equals(accruedAccount)) {
+            target.setLastAccruedAt(accruedThrough);
+        }
+        if (accountNumber.equals(credentialAccount)) {
+            target.setPasswordHash(passwordHash);
+        }
+        for (Posting posting : postings) {
+            if (accountNumber.equals(posting.getAccountNumber())) {
+                target.setBalanceCents(posting.getTransaction().getBalanceAfterCents());
+                if (interestPeriod != null) {
+                    target.setLastInterestPeriod(interestPeriod);
+                }
+                target.setTransactionCount(target.getTransactionCount() + 1);
+            }
+        }
+        return target;
+    }
+
+    // Getters and Setters
+    public long getSequence() { return sequence; }
+    public void setSequence(long sequence) { this.sequence = sequence; }
+
+    public LocalDateTime getRecordedAt() { return recordedAt; }
+    public void setRecordedAt(LocalDateTime recordedAt) { this.recordedAt = recordedAt; }
+
+    public Operation getOperation() { return operation; }
+
+    public Account getAccount() { return account; }
+
+    public List<Posting> getPostings() { return postings; }
+
+    public String getInterestPeriod() { return interestPeriod; }
+
+    // Every account this entry changes
+    public List<String> getAccountNumbers() {
+        List<String> accountNumbers = new ArrayList<>(postings.size() + 1);
+        if (account != null) {
+            accountNumbers.add(account.getAccountNumber());
+        }
+        if (accruedAccount != null) {
+            accountNumbers.add(accruedAccount);
+        }
+        if (credentialAccount != null) {
+            accountNumbers.add(credentialAccount);
+        }
+        for (Posting posting : postings) {
+            if (!accountNumbers.contains(posting.getAccountNumber())) {
+                accountNumbers.add(posting.getAccountNumber());
+            }
+        }
+        return accountNumbers;
+    }
+}
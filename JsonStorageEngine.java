@@ -0,0 +1,70 @@
+package BankManagementSystem;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// The original format: a JSON array of account objects, compact or pretty-printed
+public class JsonStorageEngine implements StorageEngine {
+    private final AccountTypeAdapter accountAdapter = new AccountTypeAdapter();
+    private final boolean pretty;
+
+    public JsonStorageEngine(boolean pretty) {
+        this.pretty = pretty;
+    }
+
+    @Override
+    public String getName() {
+        return JSON;
+    }
+
+    @Override
+    public String getFileExtension() {
+        return "json";
+    }
+
+    // Streams accounts straight off the token reader; works for pretty and compact files
+    @Override
+    public List<Account> read(InputStream in) throws IOException {
+        List<Account> accounts = new ArrayList<>();
+        try {
+            JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            if (reader.peek() == JsonToken.NULL) {
+                return accounts;
+            }
+            reader.beginArray();
+            while (reader.hasNext()) {
+                accounts.add(accountAdapter.read(reader));
+            }
+            reader.endArray();
+        } catch (MalformedJsonException | IllegalStateException e) {
+            throw new JsonParseException("Corrupt accounts file", e);
+        }
+        return accounts;
+    }
+
+    @Override
+    public void write(OutputStream out, List<Account> accounts) throws IOException {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.setSerializeNulls(false);
+        if (pretty) {
+            writer.setIndent("  ");
+        }
+        writer.beginArray();
+        for (Account account : accounts) {
+            accountAdapter.write(writer, account);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+}
@@ -0,0 +1,107 @@
+package BankManagementSystem;
+
+import java.util.Locale;
+
+// Latency histogram in the style of HdrHistogram: values up to 2047 ns are counted
+// exactly, and above that each power of two is split into 1024 linear buckets, so
+// every recorded value is kept to within 0.1% however large it is. Recording is a
+// couple of shifts and an array increment with no allocation. Values above an hour
+// are counted as an hour.
+//
+// A recorder is not thread-safe; give each thread its own and add() them together.
+public class LatencyRecorder {
+    private static final int SUB_BUCKET_BITS = 10;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = 3_600_000_000_000L;
+    private static final int MAX_SHIFT = 63 - Long.numberOfLeadingZeros(MAX_VALUE) - SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[2 * SUB_BUCKETS + MAX_SHIFT * SUB_BUCKETS];
+    private long totalCount;
+    private long sum;
+    private long max;
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts[indexOf(value)]++;
+        totalCount++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    // For closed-loop tests that meant to issue a request every expectedIntervalNanos:
+    // a response that took longer held back the requests that would have been sent
+    // meanwhile, so those are recorded too, each with the wait it would have seen. This
+    // is HdrHistogram's correction for coordinated omission.
+    public void recordCorrected(long nanos, long expectedIntervalNanos) {
+        record(nanos);
+        if (expectedIntervalNanos <= 0) {
+            return;
+        }
+        for (long missed = nanos - expectedIntervalNanos; missed >= expectedIntervalNanos;
+             missed -= expectedIntervalNanos) {
+            record(missed);
+        }
+    }
+
+    public void add(LatencyRecorder other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public double getMean() {
+        return totalCount == 0 ? 0 : sum / (double) totalCount;
+    }
+
+    // The highest value equivalent to the one at the given percentile (0-100)
+    public long valueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    // "n=1200 mean=0.41 p50=0.38 p99=1.20 p99.9=4.10 max=9.80 (ms)"
+    public String summary() {
+        return String.format(Locale.ROOT, "n=%d mean=%.3f p50=%.3f p90=%.3f p99=%.3f p99.9=%.3f max=%.3f (ms)",
+                totalCount, getMean() / 1e6, valueAtPercentile(50) / 1e6, valueAtPercentile(90) / 1e6,
+                valueAtPercentile(99) / 1e6, valueAtPercentile(99.9) / 1e6, max / 1e6);
+    }
+
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        // value >> shift lands in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKETS + (int) (value >> shift);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < 2 * SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long subBucket = index - (long) shift * SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
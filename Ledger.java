@@ -0,0 +1,204 @@
+package BankManagementSystem;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// Ledger persistence: the journal is kept for good instead of being truncated at each
+// checkpoint. It is a series of segment files, ledger/<first sequence>.log, holding
+// the journal's JSON lines from that sequence up to where the next segment starts.
+// Balances, the snapshot and the history store are all derived from it. A checkpoint
+// seals the current segment and starts the next one, so recovery loads the snapshot
+// and replays only the segments after its checkpoint, however long the ledger grows.
+// Sealed segments are never written again; they are only read to rebuild an account
+// as it stood at an earlier time.
+public class Ledger {
+    private static final String SUFFIX = ".log";
+    private static final int NAME_DIGITS = 20;
+
+    private final Path directory;
+    private final Gson gson;
+
+    public Ledger(Path directory, Gson gson) {
+        this.directory = directory;
+        this.gson = gson;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create ledger directory " + directory, e);
+        }
+    }
+
+    // Every segment, oldest first
+    public List<Path> segments() {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (firstSequenceOf(file) >= 0) {
+                    segments.add(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to list ledger segments in " + directory, e);
+        }
+        segments.sort(Comparator.comparingLong(Ledger::firstSequenceOf));
+        return segments;
+    }
+
+    // The segment starting at firstSequence and every later one; empty if none starts there
+    public List<Path> segmentsFrom(long firstSequence) {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (firstSequenceOf(segments.get(i)) == firstSequence) {
+                return segments.subList(i, segments.size());
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    // The segment new entries go to, or null before the first one is started
+    public Path currentSegment() {
+        List<Path> segments = segments();
+        return segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    }
+
+    // Creates the empty segment for the entries from firstSequence on, unless it exists
+    public void startSegment(long firstSequence) throws IOException {
+        Path file = segmentFile(firstSequence);
+        if (!Files.exists(file)) {
+            Files.createFile(file);
+        }
+    }
+
+    // A whole segment written at once, which appears complete or not at all
+    public SegmentWriter newSegment(long firstSequence) throws IOException {
+        return new SegmentWriter(segmentFile(firstSequence), gson);
+    }
+
+    // Cuts a torn record and everything after it off the end of a segment
+    public void truncate(Path segment, long goodLines) throws IOException {
+        long offset = 0;
+        long lines = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(segment), 1 << 16)) {
+            int b;
+            while (lines < goodLines && (b = in.read()) != -1) {
+                offset++;
+                if (b == '\n') {
+                    lines++;
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(offset);
+            channel.force(false);
+        }
+    }
+
+    // The account as it stood once every entry recorded up to asOf had been applied, or
+    // null if it had not been opened by then. The ledger is read from the start, but
+    // lines that do not mention the account are skipped without being parsed, and no
+    // segment that starts after asOf is opened.
+    public Account accountAsOf(String accountNumber, LocalDateTime asOf) {
+        Account account = null;
+        for (Path segment : segments()) {
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                boolean first = true;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    boolean mentioned = line.contains(accountNumber);
+                    // The first entry is parsed anyway, for when the segment starts
+                    if (line.isEmpty() || !mentioned && !first) {
+                        continue;
+                    }
+                    first = false;
+                    JournalEntry entry;
+                    try {
+                        entry = gson.fromJson(line, JournalEntry.class);
+                    } catch (JsonParseException e) {
+                        // A record still being written at the end of the current segment
+                        break;
+                    }
+                    if (entry.getRecordedAt() != null && entry.getRecordedAt().isAfter(asOf)) {
+                        return account;
+                    }
+                    if (mentioned) {
+                        account = entry.replayFor(accountNumber, account);
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read ledger segment " + segment, e);
+            }
+        }
+        return account;
+    }
+
+    private Path segmentFile(long firstSequence) {
+        return directory.resolve(String.format("%0" + NAME_DIGITS + "d", firstSequence) + SUFFIX);
+    }
+
+    // -1 for files that are not segments
+    private static long firstSequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (name.length() != NAME_DIGITS + SUFFIX.length() || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(0, NAME_DIGITS));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    public static class SegmentWriter implements Closeable {
+        private final Path target;
+        private final Path tempFile;
+        private final Gson gson;
+        private final FileOutputStream fos;
+        private final BufferedOutputStream out;
+        private boolean committed;
+
+        SegmentWriter(Path target, Gson gson) throws IOException {
+            this.target = target;
+            this.tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+            this.gson = gson;
+            this.fos = new FileOutputStream(tempFile.toFile());
+            this.out = new BufferedOutputStream(fos, 1 << 16);
+        }
+
+        // Returns the size of the record written
+        public int write(JournalEntry entry) throws IOException {
+            byte[] record = (gson.toJson(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+            out.write(record);
+            return record.length;
+        }
+
+        // Replaces an empty segment of the same name, if one was started
+        public void commit() throws IOException {
+            out.flush();
+            fos.getFD().sync();
+            out.close();
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                out.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+}
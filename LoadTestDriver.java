@@ -0,0 +1,401 @@
+package BankManagementSystem;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Multi-threaded load against BankService on the configured data directory, e.g.
+//
+//   java BankManagementSystem.DatasetGenerator --accounts 1000000
+//   java BankManagementSystem.LoadTestDriver [--threads 16] [--duration 30] [--warmup 5]
+//        [--mode closed|open] [--rate 20000] [--password Load-Passw0rd]
+//        [--mix deposit=40,withdraw=20,transfer=20,getAccount=15,authenticate=4,history=1]
+//
+// Operations are drawn from --mix by weight (createAccount is also available) against
+// random accounts of the dataset, whose password --password must be.
+//
+// In closed mode each thread issues its next operation as soon as the last one returns,
+// which measures capacity but hides stalls: while one operation hangs, the ones that
+// would have queued up behind it are never sent. Response times are therefore
+// corrected as HdrHistogram does, with the interval the threads were expected to keep,
+// --rate when given and otherwise the mean service time seen during warmup, so
+// closed mode needs one or the other.
+//
+// In open mode each thread sends at its share of --rate operations per second on a
+// fixed schedule, and response time is measured from when an operation was due rather
+// than from when it was sent, so a stall counts against everything it delayed. Service
+// time, from send to return, is reported alongside.
+//
+// Run it with the bank stopped; writes change the dataset.
+public class LoadTestDriver {
+    private static final String DEFAULT_MIX = "deposit=40,withdraw=20,transfer=20,getAccount=15,authenticate=4,history=1";
+    private static final String MODE_CLOSED = "closed";
+    private static final String MODE_OPEN = "open";
+    private static final long MAX_AMOUNT_CENTS = 10_000;
+    private static final int HISTORY_PAGE = 20;
+
+    private enum Op {
+        DEPOSIT("deposit"), WITHDRAW("withdraw"), TRANSFER("transfer"), GET_ACCOUNT("getAccount"),
+        AUTHENTICATE("authenticate"), HISTORY("history"), CREATE_ACCOUNT("createAccount");
+
+        final String label;
+
+        Op(String label) {
+            this.label = label;
+        }
+
+        static Op forLabel(String label) {
+            for (Op op : values()) {
+                if (op.label.equalsIgnoreCase(label)) {
+                    return op;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation: " + label);
+        }
+    }
+
+    // One per thread, merged after the run
+    private static class Recording {
+        final LatencyRecorder[] response = new LatencyRecorder[Op.values().length];
+        final long[] sent = new long[Op.values().length];
+        final long[] failures = new long[Op.values().length];
+        final LatencyRecorder service = new LatencyRecorder();
+        String firstFailure;
+        // Closed loop without a rate whose warmup completed no operation to correct with
+        boolean uncorrected;
+
+        LatencyRecorder responseFor(Op op) {
+            if (response[op.ordinal()] == null) {
+                response[op.ordinal()] = new LatencyRecorder();
+            }
+            return response[op.ordinal()];
+        }
+    }
+
+    private final BankService bankService;
+    private final String[] accountNumbers;
+    private final String password;
+    private final Op[] ops;
+    private final int[] weights;
+    private final int totalWeight;
+    private final AtomicLong created = new AtomicLong();
+
+    public LoadTestDriver(BankService bankService, String[] accountNumbers, String password, String mix) {
+        if (accountNumbers.length < 2) {
+            throw new IllegalArgumentException("The dataset needs at least two accounts");
+        }
+        this.bankService = bankService;
+        this.accountNumbers = accountNumbers;
+        this.password = password;
+        String[] parts = mix.split(",");
+        this.ops = new Op[parts.length];
+        this.weights = new int[parts.length];
+        int total = 0;
+        for (int i = 0; i < parts.length; i++) {
+            String[] pair = parts[i].trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected operation=weight: " + parts[i]);
+            }
+            ops[i] = Op.forLabel(pair[0].trim());
+            weights[i] = Integer.parseInt(pair[1].trim());
+            if (weights[i] < 0) {
+                throw new IllegalArgumentException("Weights cannot be negative: " + parts[i]);
+            }
+            total += weights[i];
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one weight must be positive");
+        }
+        this.totalWeight = total;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = 16;
+        double durationSeconds = 30;
+        double warmupSeconds = 5;
+        String mode = MODE_CLOSED;
+        double rate = 0;
+        String mix = DEFAULT_MIX;
+        String password = DatasetGenerator.DEFAULT_PASSWORD;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String option = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + option);
+                }
+                String value = args[++i];
+                switch (option) {
+                    case "--threads":
+                        threadCount = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        durationSeconds = Double.parseDouble(value);
+                        break;
+                    case "--warmup":
+                        warmupSeconds = Double.parseDouble(value);
+                        break;
+                    case "--mode":
+                        mode = value.toLowerCase(Locale.ROOT);
+                        break;
+                    case "--rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "--mix":
+                        mix = value;
+                        break;
+                    case "--password":
+                        password = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option: " + option);
+                }
+            }
+            if (!MODE_CLOSED.equals(mode) && !MODE_OPEN.equals(mode)) {
+                throw new IllegalArgumentException("Unknown mode: " + mode);
+            }
+            if (MODE_OPEN.equals(mode) && rate <= 0) {
+                throw new IllegalArgumentException("--mode open needs --rate");
+            }
+            if (threadCount < 1 || durationSeconds <= 0 || warmupSeconds < 0 || rate < 0) {
+                throw new IllegalArgumentException("--threads and --duration must be positive, --warmup and --rate not negative");
+            }
+            if (MODE_CLOSED.equals(mode) && warmupSeconds == 0 && rate == 0) {
+                // Nothing to take the expected interval from, so stalls would go uncorrected
+                throw new IllegalArgumentException("--mode closed with --warmup 0 needs --rate");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: LoadTestDriver [--threads n] [--duration seconds] [--warmup seconds] " +
+                    "[--mode closed|open] [--rate ops/s] [--mix " + DEFAULT_MIX + "] [--password p]");
+            System.exit(2);
+        }
+
+        Path dataDir = Paths.get(BankConfig.getDataDir());
+        String[] accountNumbers = DatasetGenerator.listAccountNumbers(dataDir);
+        if (accountNumbers.length < 2) {
+            System.err.println(dataDir + " has fewer than two accounts; write one with DatasetGenerator first");
+            System.exit(2);
+        }
+        DatabaseManager dbManager = new DatabaseManager();
+        BankService bankService = new BankService(dbManager);
+        try {
+            LoadTestDriver driver = new LoadTestDriver(bankService, accountNumbers, password, mix);
+            System.out.printf("%s loop, %d thread(s), %.0f s warmup + %.0f s measured, %,d accounts%s%n",
+                    mode, threadCount, warmupSeconds, durationSeconds, accountNumbers.length,
+                    rate > 0 ? String.format(Locale.ROOT, ", %.0f ops/s target", rate) : "");
+            driver.run(threadCount, warmupSeconds, durationSeconds, MODE_OPEN.equals(mode), rate);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.exit(2);
+        } finally {
+            bankService.shutdown();
+            dbManager.close();
+        }
+        System.exit(0);
+    }
+
+    public void run(int threadCount, double warmupSeconds, double durationSeconds, boolean open, double rate)
+            throws InterruptedException {
+        long warmupNanos = (long) (warmupSeconds * 1_000_000_000L);
+        long durationNanos = (long) (durationSeconds * 1_000_000_000L);
+        // Each thread keeps its share of the target rate
+        long intervalNanos = rate > 0 ? (long) (threadCount * 1_000_000_000L / rate) : 0;
+
+        Recording[] recordings = new Recording[threadCount];
+        long[] warmupService = new long[2 * threadCount];
+        CountDownLatch ready = new CountDownLatch(threadCount);
+        CountDownLatch go = new CountDownLatch(1);
+        long[] startNanos = new long[1];
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            int index = t;
+            Recording recording = new Recording();
+            recordings[t] = recording;
+            Thread thread = new Thread(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long start = startNanos[0];
+                long measureFrom = start + warmupNanos;
+                long end = measureFrom + durationNanos;
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                // Stagger the threads across one interval so an open loop does not send in bursts
+                long due = start + (intervalNanos > 0 ? random.nextLong(intervalNanos) : 0);
+                long expected = intervalNanos;
+                while (true) {
+                    long now = System.nanoTime();
+                    if (open) {
+                        if (due >= end) {
+                            break;
+                        }
+                        while (now < due) {
+                            LockSupport.parkNanos(due - now);
+                            now = System.nanoTime();
+                        }
+                    } else if (now >= end) {
+                        break;
+                    }
+
+                    Op op = pick(random);
+                    long sent = System.nanoTime();
+                    boolean succeeded = execute(op, random, recording);
+                    long done = System.nanoTime();
+                    long service = done - sent;
+
+                    // An open loop behind schedule is still working off operations due in warmup
+                    if ((open ? due : sent) < measureFrom) {
+                        warmupService[2 * index] += service;
+                        warmupService[2 * index + 1]++;
+                    } else {
+                        if (expected == 0) {
+                            // No target rate: expect the mean service time seen during warmup
+                            expected = warmupService[2 * index + 1] == 0 ? -1
+                                    : warmupService[2 * index] / warmupService[2 * index + 1];
+                            recording.uncorrected = expected < 0;
+                        }
+                        recording.service.record(service);
+                        recording.sent[op.ordinal()]++;
+                        if (open) {
+                            recording.responseFor(op).record(done - due);
+                        } else {
+                            recording.responseFor(op).recordCorrected(service, expected);
+                        }
+                        if (!succeeded) {
+                            recording.failures[op.ordinal()]++;
+                        }
+                    }
+                    if (open) {
+                        due += intervalNanos;
+                    }
+                }
+            }, "load-" + t);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+        ready.await();
+        startNanos[0] = System.nanoTime();
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        report(recordings, durationSeconds);
+    }
+
+    // Returns false when the operation was refused (insufficient funds, throttled,
+    // wrong password) rather than failing the run
+    private boolean execute(Op op, ThreadLocalRandom random, Recording recording) {
+        String account = accountNumbers[random.nextInt(accountNumbers.length)];
+        try {
+            switch (op) {
+                case DEPOSIT:
+                    return bankService.deposit(account, 1 + random.nextLong(MAX_AMOUNT_CENTS));
+                case WITHDRAW:
+                    return bankService.withdraw(account, 1 + random.nextLong(MAX_AMOUNT_CENTS));
+                case TRANSFER:
+                    String target = accountNumbers[random.nextInt(accountNumbers.length)];
+                    while (target.equals(account)) {
+                        target = accountNumbers[random.nextInt(accountNumbers.length)];
+                    }
+                    return bankService.transfer(account, target, 1 + random.nextLong(MAX_AMOUNT_CENTS));
+                case GET_ACCOUNT:
+                    return bankService.getAccount(account) != null;
+                case AUTHENTICATE:
+                    return bankService.authenticate(account, password) != null;
+                case HISTORY:
+                    int count = bankService.getTransactionCount(account);
+                    bankService.getTransactions(account, Math.max(0, count - HISTORY_PAGE), HISTORY_PAGE);
+                    return true;
+                default:
+                    long n = created.incrementAndGet();
+                    return bankService.createAccount("Load", "New" + n, "load-new-" + n + "-" + System.nanoTime() +
+                            "@example.com", "5550000000", Account.AccountType.CHECKING, 0, password) != null;
+            }
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            if (recording.firstFailure == null) {
+                recording.firstFailure = op.label + ": " + e.getMessage();
+            }
+            return false;
+        }
+    }
+
+    private Op pick(ThreadLocalRandom random) {
+        int choice = random.nextInt(totalWeight);
+        for (int i = 0; i < ops.length; i++) {
+            choice -= weights[i];
+            if (choice < 0) {
+                return ops[i];
+            }
+        }
+        return ops[ops.length - 1];
+    }
+
+    private static void report(Recording[] recordings, double durationSeconds) {
+        LatencyRecorder service = new LatencyRecorder();
+        LatencyRecorder all = new LatencyRecorder();
+        long totalSent = 0;
+        long totalFailures = 0;
+        String firstFailure = null;
+        int uncorrected = 0;
+        System.out.printf("%n%-14s %10s %8s %10s %9s %9s %9s %9s%n",
+                "operation", "count", "failed", "ops/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Op op : Op.values()) {
+            LatencyRecorder merged = new LatencyRecorder();
+            long sent = 0;
+            long failures = 0;
+            for (Recording recording : recordings) {
+                if (recording.response[op.ordinal()] != null) {
+                    merged.add(recording.response[op.ordinal()]);
+                }
+                sent += recording.sent[op.ordinal()];
+                failures += recording.failures[op.ordinal()];
+            }
+            if (sent == 0) {
+                continue;
+            }
+            printRow(op.label, merged, sent, failures, durationSeconds);
+            all.add(merged);
+            totalSent += sent;
+            totalFailures += failures;
+        }
+        for (Recording recording : recordings) {
+            service.add(recording.service);
+            if (firstFailure == null) {
+                firstFailure = recording.firstFailure;
+            }
+            if (recording.uncorrected) {
+                uncorrected++;
+            }
+        }
+        printRow("all", all, totalSent, totalFailures, durationSeconds);
+        System.out.println();
+        System.out.println("Response time: " + all.summary());
+        System.out.println("Service time:  " + service.summary());
+        if (firstFailure != null) {
+            System.out.println("First failure: " + firstFailure);
+        }
+        if (uncorrected > 0) {
+            System.out.println("Not corrected for coordinated omission: " + uncorrected + " of " + recordings.length
+                    + " thread(s) completed no operation in warmup; use a longer --warmup or --rate");
+        }
+    }
+
+    // Latencies are response times; in a corrected closed loop they include the
+    // operations a stall held back, so there can be more of them than were sent
+    private static void printRow(String label, LatencyRecorder recorder, long sent, long failures,
+                                 double durationSeconds) {
+        System.out.printf(Locale.ROOT, "%-14s %,10d %,8d %,10.0f %9.3f %9.3f %9.3f %9.3f%n", label,
+                sent, failures, sent / durationSeconds,
+                recorder.valueAtPercentile(50) / 1e6, recorder.valueAtPercentile(99) / 1e6,
+                recorder.valueAtPercentile(99.9) / 1e6, recorder.getMax() / 1e6);
+    }
+}
@@ -1,20 +1,120 @@
 package BankManagementSystem;
 
-import com.google.gson.*;
-import java.lang.reflect.Type;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 
-public class LocalDateTimeAdapter implements JsonSerializer<LocalDateTime>, JsonDeserializer<LocalDateTime> {
+// Reads and writes ISO-8601 local date-times straight from the token stream. The
+// common "yyyy-MM-ddTHH:mm:ss[.fffffffff]" shape is parsed by hand; anything else
+// falls back to the JDK formatter.
+public class LocalDateTimeAdapter extends TypeAdapter<LocalDateTime> {
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE_TIME;
 
     @Override
-    public JsonElement serialize(LocalDateTime src, Type typeOfSrc, JsonSerializationContext context) {
-        return new JsonPrimitive(FORMATTER.format(src));
+    public void write(JsonWriter out, LocalDateTime value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+            return;
+        }
+        out.value(format(value));
     }
 
     @Override
-    public LocalDateTime deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
-        return LocalDateTime.parse(json.getAsString(), FORMATTER);
+    public LocalDateTime read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String text = in.nextString();
+        try {
+            return parse(text);
+        } catch (DateTimeException e) {
+            throw new JsonParseException("Invalid date-time: " + text, e);
+        }
     }
-}
\ No newline at end of file
+
+    public static String format(LocalDateTime value) {
+        StringBuilder sb = new StringBuilder(29);
+        appendPadded(sb, value.getYear(), 4).append('-');
+        appendPadded(sb, value.getMonthValue(), 2).append('-');
+        appendPadded(sb, value.getDayOfMonth(), 2).append('T');
+        appendPadded(sb, value.getHour(), 2).append(':');
+        appendPadded(sb, value.getMinute(), 2).append(':');
+        appendPadded(sb, value.getSecond(), 2);
+        int nano = value.getNano();
+        if (nano > 0) {
+            // Same as ISO_LOCAL_DATE_TIME: nine digits with trailing zeros removed
+            int digits = 9;
+            while (nano % 10 == 0) {
+                nano /= 10;
+                digits--;
+            }
+            sb.append('.');
+            appendPadded(sb, nano, digits);
+        }
+        return sb.toString();
+    }
+
+    public static LocalDateTime parse(String text) {
+        int length = text.length();
+        if (length < 19 || text.charAt(4) != '-' || text.charAt(7) != '-' || text.charAt(10) != 'T'
+                || text.charAt(13) != ':' || text.charAt(16) != ':' || (length > 19 && text.charAt(19) != '.')
+                || length == 20 || length > 29) {
+            return parseWithFormatter(text);
+        }
+        int year = digits(text, 0, 4);
+        int month = digits(text, 5, 7);
+        int day = digits(text, 8, 10);
+        int hour = digits(text, 11, 13);
+        int minute = digits(text, 14, 16);
+        int second = digits(text, 17, 19);
+        int nano = 0;
+        if (length > 19) {
+            nano = digits(text, 20, length);
+            for (int i = length - 20; i < 9; i++) {
+                nano *= 10;
+            }
+        }
+        if ((year | month | day | hour | minute | second | nano) < 0) {
+            return parseWithFormatter(text);
+        }
+        return LocalDateTime.of(year, month, day, hour, minute, second, nano);
+    }
+
+    private static LocalDateTime parseWithFormatter(String text) {
+        try {
+            return LocalDateTime.parse(text, FORMATTER);
+        } catch (DateTimeParseException e) {
+            throw new DateTimeException("Invalid date-time: " + text, e);
+        }
+    }
+
+    // Returns -1 if any character in the range is not a digit
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = text.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static StringBuilder appendPadded(StringBuilder sb, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) {
+                sb.append('0');
+            }
+        }
+        return sb.append(value);
+    }
+}
@@ -8,6 +8,7 @@ public class LoginFrame extends JFrame {
     private final BankService bankService;
     private JTextField accountNumberField;
     private JPasswordField passwordField;
+    private TaskStatusBar statusBar;
 
     public LoginFrame(BankService bankService) {
         this.bankService = bankService;
@@ -71,10 +72,18 @@ public class LoginFrame extends JFrame {
         buttonPanel.add(loginButton);
         buttonPanel.add(createAccountButton);
 
+        statusBar = new TaskStatusBar(new Color(240, 248, 255));
+        statusBar.setControls(loginButton, createAccountButton, accountNumberField, passwordField);
+
+        JPanel southPanel = new JPanel(new BorderLayout());
+        southPanel.setBackground(new Color(240, 248, 255));
+        southPanel.add(buttonPanel, BorderLayout.CENTER);
+        southPanel.add(statusBar, BorderLayout.SOUTH);
+
         // Add components
         mainPanel.add(titleLabel, BorderLayout.NORTH);
         mainPanel.add(formPanel, BorderLayout.CENTER);
-        mainPanel.add(buttonPanel, BorderLayout.SOUTH);
+        mainPanel.add(southPanel, BorderLayout.SOUTH);
 
         add(mainPanel);
 
@@ -102,18 +111,18 @@ public class LoginFrame extends JFrame {
             return;
         }
 
-        try {
-            Account account = bankService.authenticate(accountNumber, password);
-            if (account != null) {
-                new DashboardFrame(account, bankService);
-                dispose();
-            } else {
-                JOptionPane.showMessageDialog(this, "Invalid account number or password", "Login Failed", JOptionPane.ERROR_MESSAGE);
-                passwordField.setText("");
-            }
-        } catch (Exception ex) {
-            JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
-        }
+        // Password hashing is deliberately slow, so it runs off the EDT
+        statusBar.run("Signing in...", true, () -> bankService.authenticate(accountNumber, password),
+                account -> {
+                    if (account != null) {
+                        new DashboardFrame(account, bankService);
+                        dispose();
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Invalid account number or password", "Login Failed", JOptionPane.ERROR_MESSAGE);
+                        passwordField.setText("");
+                    }
+                },
+                ex -> JOptionPane.showMessageDialog(this, "Error: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE));
     }
 
     private void handleCreateAccount(ActionEvent e) {
@@ -2,9 +2,14 @@ package BankManagementSystem;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.IOException;
 
 public class Main {
 	public static void main(String[] args) {
+		if (args.length > 0 && "--server".equals(args[0])) {
+			runServer();
+			return;
+		}
 		SwingUtilities.invokeLater(() -> {
 			try {
 				UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
@@ -14,10 +19,38 @@ public class Main {
 
 			DatabaseManager dbManager = new DatabaseManager();
 			BankService bankService = new BankService(dbManager);
+			// Flush and close the journal on exit so no acknowledged change is left unsynced
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				bankService.shutdown();
+				dbManager.close();
+			}, "bank-shutdown"));
 			new LoginFrame(bankService);
 		});
 	}
 
+	// Headless: serves the local HTTP API until the process is stopped
+	private static void runServer() {
+		DatabaseManager dbManager = new DatabaseManager();
+		BankService bankService = new BankService(dbManager);
+		ApiServer apiServer;
+		try {
+			apiServer = new ApiServer(bankService, BankConfig.getApiPort(), BankConfig.getApiMaxConcurrent(),
+					BankConfig.getApiThreads(), BankConfig.getApiTokenMinutes());
+		} catch (IOException e) {
+			bankService.shutdown();
+			dbManager.close();
+			throw new RuntimeException("Failed to start API server on port " + BankConfig.getApiPort(), e);
+		}
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			apiServer.stop(2);
+			bankService.shutdown();
+			dbManager.close();
+		}, "bank-shutdown"));
+		apiServer.start();
+		System.out.println("Bank API listening on http://" + apiServer.getAddress().getHostString() + ":" +
+				apiServer.getAddress().getPort());
+	}
+
 	// Utility methods for consistent UI styling
 	public static JFrame createFrame(String title, int width, int height) {
 		JFrame frame = new JFrame(title);
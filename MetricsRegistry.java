@@ -0,0 +1,406 @@
+package BankManagementSystem;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Supplier;
+
+// Process-wide counters, timers and gauges. Each group of them is a JMX MBean named
+// BankManagementSystem:type=<type>[,name=<name>] (e.g. type=Operation,name=deposit),
+// and with -Dbank.metrics.file every group is also appended to that file as one JSON
+// line each bank.metrics.intervalSeconds.
+//
+// Components look their metrics up once, when they are built, and keep them in
+// fields. Recording is then lock-free and allocates nothing: counters are LongAdders,
+// and a timer counts into a fixed array of buckets with the same log-linear layout as
+// LatencyRecorder, coarser (within 3%) so that every timer can afford one that all
+// threads share.
+public class MetricsRegistry {
+    private static final String DOMAIN = "BankManagementSystem";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry(BankConfig.isMetricsJmxEnabled(),
+            BankConfig.getMetricsFile(), BankConfig.getMetricsIntervalSeconds());
+
+    // Groups by the properties of their ObjectName, e.g. "type=Operation,name=deposit"
+    private final Map<String, Group> groups = new ConcurrentSkipListMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final MBeanServer server;
+    private final Path dumpFile;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+
+    public MetricsRegistry(boolean jmx, String dumpFile, int intervalSeconds) {
+        this.server = jmx ? ManagementFactory.getPlatformMBeanServer() : null;
+        this.dumpFile = dumpFile == null ? null : Paths.get(dumpFile);
+        if (this.dumpFile != null) {
+            ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-dump");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = Math.max(1, intervalSeconds);
+            dumper.scheduleAtFixedRate(this::dump, interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // Call count, errors by exception type and a latency histogram for one operation
+    public Timer timer(String type, String name) {
+        return timers.computeIfAbsent(type + "/" + name, key -> {
+            Timer timer = new Timer();
+            Group group = group("type=" + type + ",name=" + name);
+            group.add("Count", "long", timer::getCount);
+            group.add("ErrorCount", "long", timer::getErrorCount);
+            group.add("Errors", "java.lang.String", timer::getErrors);
+            group.add("TotalMillis", "double", () -> timer.getTotalNanos() / 1e6);
+            group.add("MeanMillis", "double", () -> timer.getMeanNanos() / 1e6);
+            group.add("P50Millis", "double", () -> timer.valueAtPercentile(50) / 1e6);
+            group.add("P99Millis", "double", () -> timer.valueAtPercentile(99) / 1e6);
+            group.add("P999Millis", "double", () -> timer.valueAtPercentile(99.9) / 1e6);
+            group.add("MaxMillis", "double", () -> timer.getMaxNanos() / 1e6);
+            return timer;
+        });
+    }
+
+    // A running total, shown as an attribute of the type's group
+    public LongAdder counter(String type, String attribute) {
+        return counters.computeIfAbsent(type + "/" + attribute, key -> {
+            LongAdder counter = new LongAdder();
+            group("type=" + type).add(attribute, "long", counter::sum);
+            return counter;
+        });
+    }
+
+    // A value read when asked for; registering the same gauge again replaces it
+    public void gauge(String type, String attribute, Supplier<Long> value) {
+        group("type=" + type).add(attribute, "long", value);
+    }
+
+    // Times how long lock() waits on either side of the lock, as the timers
+    // Lock/<name>.read and Lock/<name>.write
+    public ReadWriteLock instrument(String name, ReadWriteLock lock) {
+        Lock readLock = new TimedLock(lock.readLock(), timer("Lock", name + ".read"));
+        Lock writeLock = new TimedLock(lock.writeLock(), timer("Lock", name + ".write"));
+        return new ReadWriteLock() {
+            @Override
+            public Lock readLock() {
+                return readLock;
+            }
+
+            @Override
+            public Lock writeLock() {
+                return writeLock;
+            }
+        };
+    }
+
+    // Every group's current values, keyed by ObjectName properties
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> snapshot = new LinkedHashMap<>();
+        for (Map.Entry<String, Group> entry : groups.entrySet()) {
+            snapshot.put(entry.getKey(), entry.getValue().values());
+        }
+        return snapshot;
+    }
+
+    // Appends one line to the dump file, if there is one
+    public void dump() {
+        if (dumpFile == null) {
+            return;
+        }
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("time", LocalDateTime.now().toString());
+        line.putAll(snapshot());
+        try {
+            Files.write(dumpFile, (gson.toJson(line) + "\n").getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to write metrics to " + dumpFile + ": " + e.getMessage());
+        }
+    }
+
+    // Synchronized so each group is registered once
+    private synchronized Group group(String properties) {
+        Group group = groups.get(properties);
+        if (group != null) {
+            return group;
+        }
+        group = new Group();
+        if (server != null) {
+            try {
+                ObjectName name = new ObjectName(DOMAIN + ":" + properties);
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+                server.registerMBean(group, name);
+            } catch (JMException e) {
+                System.err.println("Failed to register MBean " + properties + ": " + e.getMessage());
+            }
+        }
+        groups.put(properties, group);
+        return group;
+    }
+
+    public static class Timer {
+        // Values below 2 * SUB_BUCKETS ns are exact; above, each power of two has
+        // SUB_BUCKETS linear buckets. Values above an hour count as an hour.
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final long MAX_VALUE = 3_600_000_000_000L;
+        private static final int MAX_SHIFT = 63 - Long.numberOfLeadingZeros(MAX_VALUE) - SUB_BUCKET_BITS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(2 * SUB_BUCKETS + MAX_SHIFT * SUB_BUCKETS);
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final Map<Class<?>, LongAdder> errors = new ConcurrentHashMap<>();
+
+        public void record(long nanos) {
+            long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+            buckets.incrementAndGet(indexOf(value));
+            count.increment();
+            totalNanos.add(value);
+            maxNanos.accumulate(value);
+        }
+
+        // A failed call counts as a call, and towards the errors of its exception type
+        public void recordFailure(long nanos, Throwable error) {
+            record(nanos);
+            LongAdder counter = errors.get(error.getClass());
+            if (counter == null) {
+                counter = errors.computeIfAbsent(error.getClass(), type -> new LongAdder());
+            }
+            counter.increment();
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        public double getMeanNanos() {
+            long calls = count.sum();
+            return calls == 0 ? 0 : totalNanos.sum() / (double) calls;
+        }
+
+        public long getErrorCount() {
+            long total = 0;
+            for (LongAdder counter : errors.values()) {
+                total += counter.sum();
+            }
+            return total;
+        }
+
+        // "IllegalArgumentException=3, IllegalStateException=1"
+        public String getErrors() {
+            Map<String, Long> byName = new TreeMap<>();
+            for (Map.Entry<Class<?>, LongAdder> entry : errors.entrySet()) {
+                byName.merge(entry.getKey().getSimpleName(), entry.getValue().sum(), Long::sum);
+            }
+            return byName.toString().replaceAll("[{}]", "");
+        }
+
+        // Read while other threads record, so it is close to but not exactly a snapshot
+        public long valueAtPercentile(double percentile) {
+            long[] counts = new long[buckets.length()];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestEquivalentValue(i), getMaxNanos());
+                }
+            }
+            return getMaxNanos();
+        }
+
+        private static int indexOf(long value) {
+            if (value < 2 * SUB_BUCKETS) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+            return shift * SUB_BUCKETS + (int) (value >> shift);
+        }
+
+        private static long highestEquivalentValue(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int shift = index / SUB_BUCKETS - 1;
+            long subBucket = index - (long) shift * SUB_BUCKETS;
+            return ((subBucket + 1) << shift) - 1;
+        }
+    }
+
+    // Records the time lock() spends waiting; tryLock() does not wait
+    private static class TimedLock implements Lock {
+        private final Lock lock;
+        private final Timer waits;
+
+        TimedLock(Lock lock, Timer waits) {
+            this.lock = lock;
+            this.waits = waits;
+        }
+
+        @Override
+        public void lock() {
+            long start = System.nanoTime();
+            lock.lock();
+            waits.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public void lockInterruptibly() throws InterruptedException {
+            long start = System.nanoTime();
+            lock.lockInterruptibly();
+            waits.record(System.nanoTime() - start);
+        }
+
+        @Override
+        public boolean tryLock() {
+            return lock.tryLock();
+        }
+
+        @Override
+        public boolean tryLock(long time, TimeUnit unit) throws InterruptedException {
+            long start = System.nanoTime();
+            boolean acquired = lock.tryLock(time, unit);
+            if (acquired) {
+                waits.record(System.nanoTime() - start);
+            }
+            return acquired;
+        }
+
+        @Override
+        public void unlock() {
+            lock.unlock();
+        }
+
+        @Override
+        public Condition newCondition() {
+            return lock.newCondition();
+        }
+    }
+
+    // One MBean: read-only attributes, each read from its supplier when asked for
+    private static class Group implements DynamicMBean {
+        private final Map<String, Supplier<?>> values = new ConcurrentSkipListMap<>();
+        private final Map<String, String> types = new ConcurrentHashMap<>();
+
+        void add(String attribute, String type, Supplier<?> value) {
+            types.put(attribute, type);
+            values.put(attribute, value);
+        }
+
+        Map<String, Object> values() {
+            Map<String, Object> current = new LinkedHashMap<>();
+            for (Map.Entry<String, Supplier<?>> entry : values.entrySet()) {
+                current.put(entry.getKey(), entry.getValue().get());
+            }
+            return current;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Supplier<?> value = values.get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException(attribute);
+            }
+            return value.get();
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                Supplier<?> value = values.get(attribute);
+                if (value != null) {
+                    list.add(new Attribute(attribute, value.get()));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (String attribute : values.keySet()) {
+                if (i == attributes.length) {
+                    break;
+                }
+                attributes[i++] = new MBeanAttributeInfo(attribute, types.get(attribute), attribute,
+                        true, false, false);
+            }
+            return new MBeanInfo(MetricsRegistry.class.getName(), "Bank metrics",
+                    Arrays.copyOf(attributes, i), null, new MBeanOperationInfo[0], null);
+        }
+    }
+}
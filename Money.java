@@ -0,0 +1,68 @@
+package BankManagementSystem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Amounts are held as a long number of cents. Arithmetic on them is exact and
+// allocation-free; only parsing user input goes through BigDecimal. Wherever a rate
+// produces a fraction of a cent it is rounded half-to-even, so the same inputs always
+// give the same result.
+public final class Money {
+    private static final int SCALE = 2;
+    private static final long CENTS_PER_UNIT = 100;
+
+    private Money() {
+    }
+
+    // Parses "12", "12.5" or "12.50"; more than two decimals is an error, not a rounding
+    public static long parse(String text) {
+        if (text == null || text.trim().isEmpty()) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return new BigDecimal(text.trim()).setScale(SCALE, RoundingMode.UNNECESSARY)
+                    .movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount must have at most two decimal places: " + text.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid amount: " + text.trim());
+        }
+    }
+
+    // For amounts stored as double by older versions
+    public static long fromDouble(double amount) {
+        return (long) Math.rint(amount * CENTS_PER_UNIT);
+    }
+
+    public static double toDouble(long cents) {
+        return cents / (double) CENTS_PER_UNIT;
+    }
+
+    // cents * factor, rounded half-to-even to whole cents
+    public static long applyRate(long cents, double factor) {
+        return (long) Math.rint(cents * factor);
+    }
+
+    public static long add(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    public static long subtract(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    // "1234.56", "-0.05"
+    public static String format(long cents) {
+        long units = Math.abs(cents / CENTS_PER_UNIT);
+        long fraction = Math.abs(cents % CENTS_PER_UNIT);
+        StringBuilder text = new StringBuilder(24);
+        if (cents < 0) {
+            text.append('-');
+        }
+        text.append(units).append('.');
+        if (fraction < 10) {
+            text.append('0');
+        }
+        return text.append(fraction).toString();
+    }
+}
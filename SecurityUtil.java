@@ -1,60 +1,28 @@
 package BankManagementSystem;
 
-import javax.crypto.SecretKeyFactory;
-import javax.crypto.spec.PBEKeySpec;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
-import java.security.spec.InvalidKeySpecException;
-import java.util.Base64;
+import java.nio.charset.StandardCharsets;
 import java.util.regex.Pattern;
 
 public class SecurityUtil {
-    private static final int ITERATIONS = 10000;
-    private static final int KEY_LENGTH = 256;
+    private static final String ACCOUNT_PREFIX = "ACC";
+    private static final int LEGACY_ACCOUNT_DIGITS = 13;
     private static final Pattern EMAIL_PATTERN =
             Pattern.compile("^[A-Za-z0-9+_.-]+@(.+)$");
     private static final Pattern PHONE_PATTERN =
             Pattern.compile("^[+]?[0-9]{10,15}$");
 
     public static String hashPassword(String password) {
-        try {
-            byte[] salt = generateSalt();
-            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            byte[] hash = factory.generateSecret(spec).getEncoded();
-
-            return Base64.getEncoder().encodeToString(salt) + ":" +
-                    Base64.getEncoder().encodeToString(hash);
-        } catch (NoSuchAlgorithmException | InvalidKeySpecException e) {
-            throw new RuntimeException("Error hashing password", e);
-        }
+        return CredentialService.hash(password);
     }
 
     public static boolean verifyPassword(String password, String hashedPassword) {
-        try {
-            String[] parts = hashedPassword.split(":");
-            byte[] salt = Base64.getDecoder().decode(parts[0]);
-            byte[] hash = Base64.getDecoder().decode(parts[1]);
-
-            PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, ITERATIONS, KEY_LENGTH);
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
-            byte[] testHash = factory.generateSecret(spec).getEncoded();
-
-            return java.util.Arrays.equals(hash, testHash);
-        } catch (Exception e) {
-            return false;
-        }
-    }
-
-    private static byte[] generateSalt() {
-        SecureRandom random = new SecureRandom();
-        byte[] salt = new byte[16];
-        random.nextBytes(salt);
-        return salt;
+        return CredentialService.matches(password, hashedPassword);
     }
 
     public static boolean isValidEmail(String email) {
-        return email != null && EMAIL_PATTERN.matcher(email).matches();
+        // 254 is the longest address SMTP allows; it also keeps emails within index key limits
+        return email != null && email.getBytes(StandardCharsets.UTF_8).length <= 254
+                && EMAIL_PATTERN.matcher(email).matches();
     }
 
     public static boolean isValidPhone(String phone) {
@@ -68,7 +36,49 @@ public class SecurityUtil {
                 password.matches(".*\\d.*");
     }
 
+    // "ACC", a 19-digit id and a Luhn check digit
     public static String generateAccountNumber() {
-        return "ACC" + System.currentTimeMillis();
+        String digits = IdGenerator.getInstance().nextString();
+        return ACCOUNT_PREFIX + digits + luhnCheckDigit(digits, digits.length());
+    }
+
+    // Cheap syntactic check, so mistyped numbers are rejected without a lookup.
+    // Numbers issued before check digits were introduced are "ACC" + 13 digits.
+    public static boolean isValidAccountNumber(String accountNumber) {
+        if (accountNumber == null || !accountNumber.startsWith(ACCOUNT_PREFIX)) {
+            return false;
+        }
+        int length = accountNumber.length() - ACCOUNT_PREFIX.length();
+        if (length != IdGenerator.DIGITS + 1 && length != LEGACY_ACCOUNT_DIGITS) {
+            return false;
+        }
+        for (int i = ACCOUNT_PREFIX.length(); i < accountNumber.length(); i++) {
+            char c = accountNumber.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        if (length == LEGACY_ACCOUNT_DIGITS) {
+            return true;
+        }
+        String digits = accountNumber.substring(ACCOUNT_PREFIX.length());
+        return luhnCheckDigit(digits, IdGenerator.DIGITS) == digits.charAt(IdGenerator.DIGITS);
+    }
+
+    private static char luhnCheckDigit(String digits, int length) {
+        int sum = 0;
+        boolean doubled = true;
+        for (int i = length - 1; i >= 0; i--) {
+            int digit = digits.charAt(i) - '0';
+            if (doubled) {
+                digit *= 2;
+                if (digit > 9) {
+                    digit -= 9;
+                }
+            }
+            sum += digit;
+            doubled = !doubled;
+        }
+        return (char) ('0' + (10 - sum % 10) % 10);
     }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package BankManagementSystem;
+
+// Offline conversion of BankData/accounts.* between storage engines, e.g.
+//
+//   java BankManagementSystem.StorageConverter json binary
+//
+// Any journal is folded into the converted snapshot and the old file is moved to
+// BankData/backup. Run it with the bank stopped, then start the bank with
+// -Dbank.storage.engine set to the new engine.
+public class StorageConverter {
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: StorageConverter <from-engine> <to-engine>  (engines: " +
+                    StorageEngine.JSON + ", " + StorageEngine.BINARY + ")");
+            System.exit(2);
+        }
+        StorageEngine from = StorageEngine.forName(args[0]);
+        StorageEngine to = StorageEngine.forName(args[1]);
+        if (from.getName().equals(to.getName())) {
+            System.err.println("Accounts are already stored as " + from.getName());
+            System.exit(2);
+        }
+
+        DatabaseManager dbManager = new DatabaseManager(from);
+        try {
+            long start = System.nanoTime();
+            dbManager.convertTo(to);
+            System.out.printf("Converted accounts from %s to %s in %.0f ms%n", from.getName(), to.getName(),
+                    (System.nanoTime() - start) / 1_000_000.0);
+        } finally {
+            dbManager.close();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package BankManagementSystem;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+// On-disk format of the account snapshot. The caller owns the streams, buffering,
+// temp files and fsync; an engine only encodes and decodes the records.
+public interface StorageEngine {
+    String JSON = "json";
+    String BINARY = "binary";
+
+    String getName();
+
+    // Snapshot file is BankData/accounts.<extension>
+    String getFileExtension();
+
+    List<Account> read(InputStream in) throws IOException;
+
+    void write(OutputStream out, List<Account> accounts) throws IOException;
+
+    static StorageEngine forName(String name) {
+        switch (name) {
+            case JSON:
+                return new JsonStorageEngine(BankConfig.SNAPSHOT_PRETTY.equals(BankConfig.getSnapshotFormat()));
+            case BINARY:
+                return new BinaryStorageEngine();
+            default:
+                throw new IllegalArgumentException("Unknown storage engine: " + name);
+        }
+    }
+}
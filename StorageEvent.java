@@ -0,0 +1,66 @@
+package BankManagementSystem;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// Flight Recorder event for DatabaseManager's bulk file work: loading and saving the
+// snapshot, backups and backup cleanup; see bank.jfc. Like BankOperationEvent, begin()
+// returns null unless a recording has enabled the event.
+@Name("bank.Storage")
+@Label("Bank Storage")
+@Category("Bank")
+@Description("Snapshot load and save, backup and backup cleanup")
+@StackTrace(false)
+public class StorageEvent extends Event {
+    public static final String LOAD = "load";
+    public static final String SAVE = "save";
+    public static final String BACKUP = "backup";
+    public static final String CLEANUP = "cleanup";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("File")
+    String file;
+
+    @Label("Bytes")
+    @Description("Bytes read, written, copied or deleted")
+    @DataAmount
+    long bytes;
+
+    @Label("Records")
+    @Description("Accounts loaded or saved (the changed accounts, for an indexed checkpoint), or backups deleted")
+    int records;
+
+    public static StorageEvent begin(String operation) {
+        if (!FlightRecorder.isInitialized()) {
+            return null;
+        }
+        StorageEvent event = new StorageEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.operation = operation;
+        event.begin();
+        return event;
+    }
+
+    public static void end(StorageEvent event, Object file, long bytes, int records) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = String.valueOf(file);
+            event.bytes = bytes;
+            event.records = records;
+            event.commit();
+        }
+    }
+}
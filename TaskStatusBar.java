@@ -0,0 +1,97 @@
+package BankManagementSystem;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+// Status strip shared by the frames: runs one background call at a time, shows a
+// progress bar while it is in flight, and disables the frame's controls until it
+// finishes. Read-only calls can be cancelled; updates cannot, since the change may
+// already be applied and the user would never learn its outcome.
+public class TaskStatusBar extends JPanel {
+    private static final long serialVersionUID = 1L;
+
+    private final JLabel messageLabel = new JLabel(" ");
+    private final JProgressBar progressBar = new JProgressBar();
+    private final JButton cancelButton = new JButton("Cancel");
+    private Component[] controls = new Component[0];
+    private BackgroundTask<?> currentTask;
+
+    public TaskStatusBar(Color background) {
+        super(new FlowLayout(FlowLayout.CENTER, 10, 3));
+        setBackground(background);
+
+        messageLabel.setFont(new Font("Arial", Font.PLAIN, 12));
+        progressBar.setIndeterminate(true);
+        progressBar.setPreferredSize(new Dimension(120, 16));
+        cancelButton.setFont(new Font("Arial", Font.PLAIN, 12));
+        cancelButton.setFocusPainted(false);
+        cancelButton.addActionListener(e -> cancel());
+
+        add(messageLabel);
+        add(progressBar);
+        add(cancelButton);
+
+        // Keep the height fixed so packed frames don't jump when the bar appears
+        setPreferredSize(new Dimension(1, cancelButton.getPreferredSize().height + 6));
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+    }
+
+    // Components to disable while a call is in flight
+    public void setControls(Component... controls) {
+        this.controls = controls;
+    }
+
+    public boolean isBusy() {
+        return currentTask != null;
+    }
+
+    public <T> void run(String message, Callable<T> work, Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        run(message, false, work, onSuccess, onFailure);
+    }
+
+    // Must be called on the EDT; ignored while another call is still running
+    public <T> void run(String message, boolean cancellable, Callable<T> work,
+                        Consumer<T> onSuccess, Consumer<Exception> onFailure) {
+        if (currentTask != null) {
+            return;
+        }
+        BackgroundTask<T> task = new BackgroundTask<>(work, onSuccess, onFailure, this::finished);
+        currentTask = task;
+        setControlsEnabled(false);
+        messageLabel.setText(message);
+        progressBar.setVisible(true);
+        cancelButton.setVisible(cancellable);
+        revalidate();
+        task.execute();
+    }
+
+    private void cancel() {
+        if (currentTask == null) {
+            return;
+        }
+        // Never interrupt: an interrupt closes any FileChannel the call is reading.
+        // The call itself still completes; only its result is discarded.
+        currentTask.cancel(false);
+        messageLabel.setText("Cancelled");
+    }
+
+    private void finished() {
+        if (!currentTask.isCancelled()) {
+            messageLabel.setText(" ");
+        }
+        currentTask = null;
+        progressBar.setVisible(false);
+        cancelButton.setVisible(false);
+        setControlsEnabled(true);
+        revalidate();
+    }
+
+    private void setControlsEnabled(boolean enabled) {
+        for (Component control : controls) {
+            control.setEnabled(enabled);
+        }
+    }
+}
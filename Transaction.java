@@ -5,8 +5,9 @@ import java.time.LocalDateTime;
 public class Transaction {
     private String transactionId;
     private TransactionType type;
-    private double amount;
-    private double balanceAfter;
+    // Amounts in cents, see Money
+    private long amountCents;
+    private long balanceAfterCents;
     private LocalDateTime timestamp;
     private String description;
     private String fromAccount;
@@ -21,16 +22,29 @@ public class Transaction {
         this.transactionId = generateTransactionId();
     }
 
-    public Transaction(TransactionType type, double amount, double balanceAfter, String description) {
+    public Transaction(TransactionType type, long amountCents, long balanceAfterCents, String description) {
         this();
         this.type = type;
-        this.amount = amount;
-        this.balanceAfter = balanceAfter;
+        this.amountCents = amountCents;
+        this.balanceAfterCents = balanceAfterCents;
         this.description = description;
     }
 
+    // Restores a stored transaction as-is, without generating a new id or timestamp
+    Transaction(String transactionId, TransactionType type, long amountCents, long balanceAfterCents,
+                LocalDateTime timestamp, String description, String fromAccount, String toAccount) {
+        this.transactionId = transactionId;
+        this.type = type;
+        this.amountCents = amountCents;
+        this.balanceAfterCents = balanceAfterCents;
+        this.timestamp = timestamp;
+        this.description = description;
+        this.fromAccount = fromAccount;
+        this.toAccount = toAccount;
+    }
+
     private String generateTransactionId() {
-        return "TXN" + System.currentTimeMillis();
+        return "TXN" + IdGenerator.getInstance().nextString();
     }
 
     // Getters and Setters
@@ -40,11 +54,11 @@ public class Transaction {
     public TransactionType getType() { return type; }
     public void setType(TransactionType type) { this.type = type; }
 
-    public double getAmount() { return amount; }
-    public void setAmount(double amount) { this.amount = amount; }
+    public long getAmountCents() { return amountCents; }
+    public void setAmountCents(long amountCents) { this.amountCents = amountCents; }
 
-    public double getBalanceAfter() { return balanceAfter; }
-    public void setBalanceAfter(double balanceAfter) { this.balanceAfter = balanceAfter; }
+    public long getBalanceAfterCents() { return balanceAfterCents; }
+    public void setBalanceAfterCents(long balanceAfterCents) { this.balanceAfterCents = balanceAfterCents; }
 
     public LocalDateTime getTimestamp() { return timestamp; }
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
@@ -0,0 +1,394 @@
+package BankManagementSystem;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Transaction history kept apart from the account records: one append-only segment
+// file per account, one "<epochMillis>\t<json>" line per transaction. An index of
+// line offsets is built the first time an account's history is touched, so a page
+// read only seeks to and parses the rows it returns.
+//
+// Account.transactionCount is the authority for how many rows belong to an account.
+// Rows past that count (written before a crash, but never journaled) are cut off
+// when the index is built.
+//
+// Indexes cost 16 bytes per row, so they are held up to maxIndexedRows in total and
+// the least recently used are dropped beyond that, to be rebuilt from the file on
+// their next use. Appends go through a channel kept open with the index, for at most
+// maxOpenFiles indexes at a time.
+public class TransactionStore {
+    private final Path directory;
+    private final long maxIndexedRows;
+    private final int maxOpenFiles;
+    private final TransactionTypeAdapter adapter = new TransactionTypeAdapter();
+    private final Map<String, SegmentIndex> indexes = new ConcurrentHashMap<>();
+    private final AtomicLong indexedRows = new AtomicLong();
+    private final AtomicInteger openFiles = new AtomicInteger();
+    private final AtomicLong clock = new AtomicLong();
+    private final Set<String> unsynced = ConcurrentHashMap.newKeySet();
+    private final Set<String> createdShards = ConcurrentHashMap.newKeySet();
+    private final LongAdder bytesRead = MetricsRegistry.getInstance().counter("Repository", "BytesRead");
+    private final LongAdder bytesWritten = MetricsRegistry.getInstance().counter("Repository", "BytesWritten");
+
+    // Guarded by its own monitor; an evicted index is no longer in the map and must
+    // not be used, since a fresh one may have been built from the file
+    private static class SegmentIndex {
+        long[] offsets = new long[16];
+        long[] times = new long[16];
+        int size;
+        long end;
+        FileChannel channel;
+        boolean evicted;
+        volatile long lastUsed;
+
+        void add(long offset, long time) {
+            if (size == offsets.length) {
+                offsets = Arrays.copyOf(offsets, size * 2);
+                times = Arrays.copyOf(times, size * 2);
+            }
+            offsets[size] = offset;
+            times[size] = time;
+            size++;
+        }
+    }
+
+    public TransactionStore(Path directory, long maxIndexedRows, int maxOpenFiles) {
+        this.directory = directory;
+        this.maxIndexedRows = Math.max(1, maxIndexedRows);
+        this.maxOpenFiles = Math.max(1, maxOpenFiles);
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to create history directory " + directory, e);
+        }
+    }
+
+    // Appends at position account.getTransactionCount() and advances the count
+    public void append(Account account, Transaction transaction) {
+        String accountNumber = account.getAccountNumber();
+        byte[] line = (epochMillis(transaction.getTimestamp()) + "\t" + adapter.toJson(transaction) + "\n")
+                .getBytes(StandardCharsets.UTF_8);
+        boolean opened = false;
+        while (true) {
+            SegmentIndex index = indexFor(account);
+            synchronized (index) {
+                if (index.evicted) {
+                    continue;
+                }
+                try {
+                    if (index.channel == null) {
+                        index.channel = FileChannel.open(segmentFile(accountNumber),
+                                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                        openFiles.incrementAndGet();
+                        opened = true;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(line);
+                    long position = index.end;
+                    while (buffer.hasRemaining()) {
+                        position += index.channel.write(buffer, position);
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException("Failed to append transaction history for " + accountNumber, e);
+                }
+                bytesWritten.add(line.length);
+                index.add(index.end, epochMillis(transaction.getTimestamp()));
+                index.end += line.length;
+                indexedRows.incrementAndGet();
+                account.setTransactionCount(index.size);
+                unsynced.add(accountNumber);
+            }
+            break;
+        }
+        // Outside the index's monitor, since trimming takes other indexes' monitors
+        if (opened && openFiles.get() > maxOpenFiles) {
+            closeFiles();
+        }
+        if (indexedRows.get() > maxIndexedRows) {
+            trimIndexes();
+        }
+    }
+
+    // Drops the rows from position count on, which were appended by an operation being
+    // rolled back, and sets the account's count back
+    public void truncate(Account account, int count) {
+        String accountNumber = account.getAccountNumber();
+        while (true) {
+            SegmentIndex index = indexFor(account);
+            synchronized (index) {
+                if (index.evicted) {
+                    continue;
+                }
+                if (count < index.size) {
+                    long end = index.offsets[count];
+                    try (FileChannel channel = FileChannel.open(segmentFile(accountNumber), StandardOpenOption.WRITE)) {
+                        channel.truncate(end);
+                    } catch (IOException e) {
+                        throw new RuntimeException("Failed to truncate transaction history for " + accountNumber, e);
+                    }
+                    indexedRows.addAndGet(count - index.size);
+                    index.size = count;
+                    index.end = end;
+                }
+                account.setTransactionCount(index.size);
+                return;
+            }
+        }
+    }
+
+    public int count(Account account) {
+        while (true) {
+            SegmentIndex index = indexFor(account);
+            synchronized (index) {
+                if (!index.evicted) {
+                    return index.size;
+                }
+            }
+        }
+    }
+
+    // Oldest first, starting at the given position in the account's history
+    public List<Transaction> read(Account account, int fromIndex, int limit) {
+        long offset;
+        int count;
+        while (true) {
+            SegmentIndex index = indexFor(account);
+            synchronized (index) {
+                if (index.evicted) {
+                    continue;
+                }
+                if (fromIndex < 0 || fromIndex >= index.size || limit <= 0) {
+                    return Collections.emptyList();
+                }
+                offset = index.offsets[fromIndex];
+                count = Math.min(limit, index.size - fromIndex);
+                bytesRead.add((fromIndex + count < index.size ? index.offsets[fromIndex + count] : index.end) - offset);
+            }
+            break;
+        }
+        return readLines(account.getAccountNumber(), offset, count);
+    }
+
+    // Oldest first, starting with the first transaction at or after the given time
+    public List<Transaction> readFrom(Account account, LocalDateTime from, int limit) {
+        int fromIndex;
+        while (true) {
+            SegmentIndex index = indexFor(account);
+            synchronized (index) {
+                if (index.evicted) {
+                    continue;
+                }
+                fromIndex = from == null ? 0 : lowerBound(index, epochMillis(from));
+            }
+            break;
+        }
+        return read(account, fromIndex, limit);
+    }
+
+    // Forces every segment written since the last sync; called before a checkpoint
+    public void sync() {
+        for (String accountNumber : unsynced) {
+            unsynced.remove(accountNumber);
+            Path file = segmentFile(accountNumber);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to sync transaction history for " + accountNumber, e);
+            }
+        }
+    }
+
+    private List<Transaction> readLines(String accountNumber, long offset, int count) {
+        List<Transaction> transactions = new ArrayList<>(count);
+        try (FileChannel channel = FileChannel.open(segmentFile(accountNumber), StandardOpenOption.READ)) {
+            channel.position(offset);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            for (int i = 0; i < count; i++) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                transactions.add(adapter.fromJson(line.substring(line.indexOf('\t') + 1)));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read transaction history for " + accountNumber, e);
+        }
+        return transactions;
+    }
+
+    // Closes every open segment file; the store can still be used, reopening them
+    public void close() {
+        for (SegmentIndex index : indexes.values()) {
+            synchronized (index) {
+                closeChannel(index);
+            }
+        }
+    }
+
+    private SegmentIndex indexFor(Account account) {
+        SegmentIndex index = indexes.computeIfAbsent(account.getAccountNumber(), accountNumber -> {
+            SegmentIndex built = buildIndex(accountNumber, account.getTransactionCount());
+            indexedRows.addAndGet(built.size);
+            return built;
+        });
+        index.lastUsed = clock.incrementAndGet();
+        return index;
+    }
+
+    // Least recently used first, down to a quarter below the limit so that trims are rare
+    private void trimIndexes() {
+        long target = maxIndexedRows - maxIndexedRows / 4;
+        for (Map.Entry<String, SegmentIndex> entry : leastRecentlyUsed()) {
+            if (indexedRows.get() <= target) {
+                break;
+            }
+            SegmentIndex index = entry.getValue();
+            synchronized (index) {
+                if (index.evicted) {
+                    continue;
+                }
+                index.evicted = true;
+                closeChannel(index);
+                indexedRows.addAndGet(-index.size);
+            }
+            indexes.remove(entry.getKey(), index);
+        }
+    }
+
+    private void closeFiles() {
+        int target = maxOpenFiles - maxOpenFiles / 4;
+        for (Map.Entry<String, SegmentIndex> entry : leastRecentlyUsed()) {
+            if (openFiles.get() <= target) {
+                break;
+            }
+            SegmentIndex index = entry.getValue();
+            synchronized (index) {
+                closeChannel(index);
+            }
+        }
+    }
+
+    private List<Map.Entry<String, SegmentIndex>> leastRecentlyUsed() {
+        List<Map.Entry<String, SegmentIndex>> entries = new ArrayList<>(indexes.entrySet());
+        entries.sort(Comparator.comparingLong(entry -> entry.getValue().lastUsed));
+        return entries;
+    }
+
+    // Called holding the index's monitor
+    private void closeChannel(SegmentIndex index) {
+        if (index.channel == null) {
+            return;
+        }
+        try {
+            index.channel.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close transaction history file: " + e.getMessage());
+        }
+        index.channel = null;
+        openFiles.decrementAndGet();
+    }
+
+    private SegmentIndex buildIndex(String accountNumber, int expectedCount) {
+        SegmentIndex index = new SegmentIndex();
+        Path file = segmentFile(accountNumber);
+        if (!Files.exists(file)) {
+            if (expectedCount > 0) {
+                System.err.println("Transaction history missing for " + accountNumber);
+            }
+            return index;
+        }
+
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            long position = 0;
+            long lineStart = 0;
+            long time = 0;
+            boolean inPrefix = true;
+            int b;
+            while (index.size < expectedCount && (b = in.read()) != -1) {
+                position++;
+                if (b == '\n') {
+                    index.add(lineStart, time);
+                    lineStart = position;
+                    time = 0;
+                    inPrefix = true;
+                } else if (inPrefix) {
+                    if (b == '\t') {
+                        inPrefix = false;
+                    } else {
+                        time = time * 10 + (b - '0');
+                    }
+                }
+            }
+            index.end = lineStart;
+            bytesRead.add(position);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to index transaction history for " + accountNumber, e);
+        }
+
+        if (index.size < expectedCount) {
+            System.err.println("Transaction history for " + accountNumber + " has " + index.size +
+                    " of " + expectedCount + " rows");
+        }
+        // Drop rows that were written but never made it into the journal
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > index.end) {
+                channel.truncate(index.end);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to trim transaction history for " + accountNumber, e);
+        }
+        return index;
+    }
+
+    private static int lowerBound(SegmentIndex index, long time) {
+        int low = 0;
+        int high = index.size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (index.times[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long epochMillis(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1000 + timestamp.getNano() / 1_000_000;
+    }
+
+    // Spread segments over 256 subdirectories so no single directory gets huge
+    private Path segmentFile(String accountNumber) {
+        String shard = String.format("%02x", accountNumber.hashCode() & 0xff);
+        Path shardDir = directory.resolve(shard);
+        if (!createdShards.contains(shard)) {
+            try {
+                Files.createDirectories(shardDir);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create history directory " + shardDir, e);
+            }
+            createdShards.add(shard);
+        }
+        return shardDir.resolve(accountNumber + ".log");
+    }
+}
@@ -0,0 +1,145 @@
+package BankManagementSystem;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.time.format.DateTimeFormatter;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Newest-first view of an account's history that only holds a few pages in memory.
+// Pages are fetched off the EDT when a row in them is first painted; until then the
+// row shows a placeholder. Pages are numbered by history position, which never
+// changes, so new transactions only invalidate the page they land in.
+public class TransactionTableModel extends AbstractTableModel {
+    private static final long serialVersionUID = 1L;
+
+    private static final String[] COLUMN_NAMES = {"Date", "Type", "Amount", "Balance", "Description"};
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy HH:mm");
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 16;
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "history-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final BankService bankService;
+    private final String accountNumber;
+    private final Map<Integer, List<Transaction>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Transaction>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loading = new HashSet<>();
+    private int rowCount;
+    // Bumped whenever cached pages are dropped, so loads started before that are discarded
+    private int generation;
+
+    public TransactionTableModel(BankService bankService, String accountNumber) {
+        this.bankService = bankService;
+        this.accountNumber = accountNumber;
+    }
+
+    // Picks up transactions added since the last call; the count is fetched by the
+    // caller off the EDT, this must run on it
+    public void refresh(int count) {
+        if (count == rowCount) {
+            return;
+        }
+        if (count < rowCount) {
+            pages.clear();
+            generation++;
+            rowCount = count;
+            fireTableDataChanged();
+            return;
+        }
+        // The last page may have been cached while it was still filling up
+        int lastPage = rowCount / PAGE_SIZE;
+        pages.keySet().removeIf(page -> page >= lastPage);
+        generation++;
+        int added = count - rowCount;
+        rowCount = count;
+        fireTableRowsInserted(0, added - 1);
+    }
+
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return COLUMN_NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return COLUMN_NAMES[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        int position = rowCount - 1 - row;
+        int page = position / PAGE_SIZE;
+        List<Transaction> rows = pages.get(page);
+        if (rows == null) {
+            requestPage(page);
+            return column == 0 ? "Loading..." : "";
+        }
+        int offset = position - page * PAGE_SIZE;
+        if (offset >= rows.size()) {
+            return "";
+        }
+        Transaction transaction = rows.get(offset);
+        switch (column) {
+            case 0: return transaction.getTimestamp().format(DATE_FORMAT);
+            case 1: return transaction.getType();
+            case 2: return "$" + Money.format(transaction.getAmountCents());
+            case 3: return "$" + Money.format(transaction.getBalanceAfterCents());
+            default: return transaction.getDescription();
+        }
+    }
+
+    private void requestPage(int page) {
+        if (!loading.add(page)) {
+            return;
+        }
+        int requestedGeneration = generation;
+        LOADER.execute(() -> {
+            List<Transaction> rows;
+            try {
+                rows = bankService.getTransactions(accountNumber, page * PAGE_SIZE, PAGE_SIZE);
+            } catch (RuntimeException e) {
+                System.err.println("Failed to load transactions: " + e.getMessage());
+                SwingUtilities.invokeLater(() -> loading.remove(page));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> pageLoaded(page, rows, requestedGeneration));
+        });
+    }
+
+    private void pageLoaded(int page, List<Transaction> rows, int requestedGeneration) {
+        loading.remove(page);
+        if (requestedGeneration == generation) {
+            pages.put(page, rows);
+        }
+        // Repaint the page's rows; if the load was stale they will request it again
+        int firstPosition = page * PAGE_SIZE;
+        int lastPosition = Math.min(firstPosition + PAGE_SIZE, rowCount) - 1;
+        if (lastPosition >= firstPosition) {
+            fireTableRowsUpdated(rowCount - 1 - lastPosition, rowCount - 1 - firstPosition);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package BankManagementSystem;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+public class TransactionTypeAdapter extends TypeAdapter<Transaction> {
+    private final LocalDateTimeAdapter dateTimeAdapter = new LocalDateTimeAdapter();
+
+    @Override
+    public void write(JsonWriter out, Transaction transaction) throws IOException {
+        if (transaction == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("transactionId").value(transaction.getTransactionId());
+        out.name("type").value(transaction.getType() != null ? transaction.getType().name() : null);
+        out.name("amountCents").value(transaction.getAmountCents());
+        out.name("balanceAfterCents").value(transaction.getBalanceAfterCents());
+        out.name("timestamp");
+        dateTimeAdapter.write(out, transaction.getTimestamp());
+        out.name("description").value(transaction.getDescription());
+        if (transaction.getFromAccount() != null) {
+            out.name("fromAccount").value(transaction.getFromAccount());
+        }
+        if (transaction.getToAccount() != null) {
+            out.name("toAccount").value(transaction.getToAccount());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Transaction read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String transactionId = null;
+        Transaction.TransactionType type = null;
+        long amountCents = 0;
+        long balanceAfterCents = 0;
+        LocalDateTime timestamp = null;
+        String description = null;
+        String fromAccount = null;
+        String toAccount = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "transactionId": transactionId = readString(in); break;
+                case "type": type = readEnum(in, Transaction.TransactionType.class); break;
+                case "amountCents": amountCents = in.nextLong(); break;
+                case "balanceAfterCents": balanceAfterCents = in.nextLong(); break;
+                // Written as double by older versions
+                case "amount": amountCents = Money.fromDouble(in.nextDouble()); break;
+                case "balanceAfter": balanceAfterCents = Money.fromDouble(in.nextDouble()); break;
+                case "timestamp": timestamp = dateTimeAdapter.read(in); break;
+                case "description": description = readString(in); break;
+                case "fromAccount": fromAccount = readString(in); break;
+                case "toAccount": toAccount = readString(in); break;
+                default: in.skipValue();
+            }
+        }
+        in.endObject();
+
+        return new Transaction(transactionId, type, amountCents, balanceAfterCents, timestamp,
+                description, fromAccount, toAccount);
+    }
+
+    static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    static <E extends Enum<E>> E readEnum(JsonReader in, Class<E> enumType) throws IOException {
+        String name = readString(in);
+        return name != null ? Enum.valueOf(enumType, name) : null;
+    }
+}
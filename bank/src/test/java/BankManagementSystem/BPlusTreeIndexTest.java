@@ -0,0 +1,139 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// Lookups and scans on indexes of one page and of several levels, read back from
+// their files the way DatabaseManager opens them.
+class BPlusTreeIndexTest {
+    // Leaf entries for the keys below are 16 bytes: length, 7 key bytes, the value
+    private static final int KEYS_PER_LEAF = (BPlusTreeIndex.PAGE_SIZE - 7) / 16;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void singlePageTreeFindsPresentAndMissesAbsentKeys() throws IOException {
+        Path file = build(10, 0, 0);
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 4)) {
+            assertEquals(1, index.getHeight());
+            assertEquals(10, index.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(value(i), index.get(key(i)));
+            }
+            assertEquals(-1, index.get(""));
+            assertEquals(-1, index.get("a"));
+            assertEquals(-1, index.get(key(3) + "x"));
+            assertEquals(-1, index.get(key(10)));
+            assertEquals(List.of(key(8), key(9)), index.keysAfter(key(7), 5));
+        }
+    }
+
+    @Test
+    void emptyTreeHasNoKeys() throws IOException {
+        Path file = build(0, 0, 0);
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 4)) {
+            assertEquals(0, index.size());
+            assertEquals(-1, index.get(key(0)));
+            assertTrue(index.keysAfter(null, 10).isEmpty());
+        }
+    }
+
+    @Test
+    void keysAroundPageBoundariesAreFound() throws IOException {
+        // Enough leaves for two internal levels above them
+        int count = 100_000;
+        Path file = build(count, 0, 0);
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 16)) {
+            assertEquals(3, index.getHeight());
+            assertEquals(count, index.size());
+            for (int leaf = 1; leaf * KEYS_PER_LEAF < count; leaf++) {
+                int boundary = leaf * KEYS_PER_LEAF;
+                for (int i = boundary - 1; i <= boundary; i++) {
+                    assertEquals(value(i), index.get(key(i)));
+                    // Absent keys sorting just after a leaf's last key and just before the next leaf's first
+                    assertEquals(-1, index.get(key(i) + "0"));
+                }
+                // A scan from the last key of one leaf continues into the next
+                assertEquals(List.of(key(boundary), key(boundary + 1)), index.keysAfter(key(boundary - 1), 2));
+            }
+            for (int i = 0; i < count; i += 97) {
+                assertEquals(value(i), index.get(key(i)));
+            }
+            assertEquals(-1, index.get(key(count)));
+            assertEquals(List.of(key(count - 1)), index.keysAfter(key(count - 2), 10));
+
+            List<String> visited = new ArrayList<>();
+            index.forEach((key, value) -> {
+                if (value != value(visited.size())) {
+                    throw new AssertionError("Wrong value for " + key);
+                }
+                visited.add(key);
+            });
+            assertEquals(count, visited.size());
+        }
+    }
+
+    @Test
+    void reopenedIndexKeepsEntriesAndTag() throws IOException {
+        Path file = build(2000, 2000, 42);
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 4)) {
+            assertTrue(index.isTaggedWith(2000, 42));
+        }
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 4)) {
+            assertTrue(index.isTaggedWith(2000, 42));
+            assertFalse(index.isTaggedWith(2000, 43));
+            assertEquals(2000, index.size());
+            assertEquals(value(1234), index.get(key(1234)));
+            assertEquals(-1, index.get(key(2000)));
+        }
+
+        // A rebuild replaces the file only once it is finished
+        try (BPlusTreeIndex.Builder builder = BPlusTreeIndex.builder(file)) {
+            builder.add(key(0), 7);
+        }
+        try (BPlusTreeIndex index = BPlusTreeIndex.open(file, 4)) {
+            assertEquals(2000, index.size());
+            assertEquals(value(0), index.get(key(0)));
+        }
+        assertFalse(Files.exists(file.resolveSibling(file.getFileName() + ".tmp")));
+    }
+
+    @Test
+    void builderRejectsKeysOutOfOrder() throws IOException {
+        try (BPlusTreeIndex.Builder builder = BPlusTreeIndex.builder(dataDir.resolve("index.bpt"))) {
+            builder.add(key(2), 2);
+            assertThrows(IllegalArgumentException.class, () -> builder.add(key(1), 1));
+            assertThrows(IllegalArgumentException.class, () -> builder.add(key(2), 2));
+        }
+    }
+
+    private Path build(int count, long tagSize, long tagChecksum) throws IOException {
+        Path file = dataDir.resolve("index.bpt");
+        try (BPlusTreeIndex.Builder builder = BPlusTreeIndex.builder(file)) {
+            for (int i = 0; i < count; i++) {
+                builder.add(key(i), value(i));
+            }
+            builder.finish(tagSize, tagChecksum);
+        }
+        return file;
+    }
+
+    private static String key(int i) {
+        return String.format("k%06d", i);
+    }
+
+    private static long value(int i) {
+        return i * 31L + 5;
+    }
+}
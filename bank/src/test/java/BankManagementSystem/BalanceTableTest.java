@@ -0,0 +1,118 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// The mapped table on its own, and as the store the service reads balances from.
+class BalanceTableTest {
+    private static final String PASSWORD = "Test-Passw0rd";
+
+    @TempDir
+    Path dataDir;
+
+    @AfterEach
+    void clearProperties() {
+        System.clearProperty("bank.balanceTable");
+    }
+
+    @Test
+    void updatesInPlaceAndCountsVersions() throws IOException {
+        try (BalanceTable table = new BalanceTable(dataDir.resolve("balances.dat"))) {
+            Account account = account(1000);
+            assertEquals(-1, table.getBalanceCents(account.getAccountNumber(), -1));
+            table.put(account);
+            account.setBalanceCents(2500);
+            table.put(account);
+            assertEquals(2500, table.getBalanceCents(account.getAccountNumber(), -1));
+            assertEquals(2, table.getVersion(account.getAccountNumber()));
+            assertEquals(1, table.size());
+        }
+    }
+
+    @Test
+    void growsAndReopensWithEverySlot() throws IOException {
+        Path file = dataDir.resolve("balances.dat");
+        List<Account> accounts = new ArrayList<>();
+        try (BalanceTable table = new BalanceTable(file)) {
+            // Past the initial capacity of 1024 at a load factor of one half
+            for (int i = 0; i < 3000; i++) {
+                Account account = account(i);
+                accounts.add(account);
+                table.put(account);
+            }
+        }
+        try (BalanceTable table = new BalanceTable(file)) {
+            assertEquals(accounts.size(), table.size());
+            for (Account account : accounts) {
+                assertEquals(account.getBalanceCents(), table.getBalanceCents(account.getAccountNumber(), -1));
+            }
+        }
+    }
+
+    @Test
+    void reconcileRepairsOnlyStaleSlots() throws IOException {
+        try (BalanceTable table = new BalanceTable(dataDir.resolve("balances.dat"))) {
+            Account account = account(1000);
+            assertTrue(table.reconcile(account));
+            assertFalse(table.reconcile(account));
+            account.setBalanceCents(900);
+            assertTrue(table.reconcile(account));
+            assertEquals(900, table.getBalanceCents(account.getAccountNumber(), -1));
+        }
+    }
+
+    @Test
+    void slotOffsetsPastTwoGigabytesDoNotOverflow() {
+        assertEquals(32 + (1L << 31), BalanceTable.slotOffset(1 << 26));
+        assertEquals(32 + 32L * ((1 << 30) - 1), BalanceTable.slotOffset((1 << 30) - 1));
+    }
+
+    @Test
+    void serviceReadsBalancesFromTheTableAndRepairsThemAtStartup() {
+        System.setProperty("bank.balanceTable", "true");
+        String accountNumber;
+        DatabaseManager dbManager = new DatabaseManager(new JsonStorageEngine(false), dataDir);
+        BankService bankService = new BankService(dbManager);
+        try {
+            accountNumber = bankService.createAccount("Test", "User", "table@example.com", "5550000000",
+                    Account.AccountType.CHECKING, 1000, PASSWORD).getAccountNumber();
+            bankService.deposit(accountNumber, 500);
+            assertEquals(1500, dbManager.getBalanceTable().getBalanceCents(accountNumber, -1));
+
+            // A slot that no longer matches the account is what the withdrawal checks
+            dbManager.getBalanceTable().put(new Account(accountNumber, "Test", "User", "table@example.com",
+                    "5550000000", Account.AccountType.CHECKING, 100, "hash"));
+            assertThrows(IllegalArgumentException.class, () -> bankService.withdraw(accountNumber, 500));
+        } finally {
+            bankService.shutdown();
+            dbManager.close();
+        }
+
+        // Left behind the journal, as after a crash, and put right when the bank starts
+        DatabaseManager restartedManager = new DatabaseManager(new JsonStorageEngine(false), dataDir);
+        BankService restarted = new BankService(restartedManager);
+        try {
+            assertEquals(1500, restartedManager.getBalanceTable().getBalanceCents(accountNumber, -1));
+            assertTrue(restarted.withdraw(accountNumber, 500));
+            assertEquals(1000, restartedManager.getBalanceTable().getBalanceCents(accountNumber, -1));
+        } finally {
+            restarted.shutdown();
+            restartedManager.close();
+        }
+    }
+
+    private static Account account(long balanceCents) {
+        return new Account(SecurityUtil.generateAccountNumber(), "Test", "User", "test@example.com",
+                "5550000000", Account.AccountType.CHECKING, balanceCents, "hash");
+    }
+}
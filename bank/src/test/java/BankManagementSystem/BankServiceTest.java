@@ -0,0 +1,191 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// An operation whose record cannot be persisted fails, and leaves the account, its
+// history and the registered emails as they were before it.
+class BankServiceTest {
+    private static final String PASSWORD = "Test-Passw0rd";
+
+    @TempDir
+    Path dataDir;
+
+    private FailingDatabaseManager dbManager;
+    private BankService bankService;
+
+    @AfterEach
+    void close() {
+        if (bankService != null) {
+            bankService.shutdown();
+        }
+        if (dbManager != null) {
+            dbManager.close();
+        }
+        System.clearProperty("bank.persistence");
+        System.clearProperty("bank.residency");
+        System.clearProperty("bank.journal.checkpointEntries");
+    }
+
+    @Test
+    void depositIsRolledBackWhenJournalRecordFailsLater() {
+        open(BankConfig.PERSISTENCE_JOURNAL);
+        Account account = createAccount("deposit@example.com", 1000);
+
+        dbManager.failing = true;
+        assertThrows(UncheckedIOException.class, () -> bankService.deposit(account.getAccountNumber(), 500));
+
+        dbManager.failing = false;
+        assertEquals(1000, bankService.getAccount(account.getAccountNumber()).getBalanceCents());
+        assertEquals(1, bankService.getTransactionCount(account.getAccountNumber()));
+        bankService.deposit(account.getAccountNumber(), 200);
+        List<Transaction> history = bankService.getTransactions(account.getAccountNumber(), 0, 10);
+        assertEquals(2, history.size());
+        assertEquals(200, history.get(1).getAmountCents());
+    }
+
+    @Test
+    void transferIsRolledBackOnBothAccounts() {
+        open(BankConfig.PERSISTENCE_JOURNAL);
+        Account from = createAccount("from@example.com", 1000);
+        Account to = createAccount("to@example.com", 0);
+
+        dbManager.failing = true;
+        assertThrows(UncheckedIOException.class,
+                () -> bankService.transfer(from.getAccountNumber(), to.getAccountNumber(), 300));
+
+        dbManager.failing = false;
+        assertEquals(1000, bankService.getAccount(from.getAccountNumber()).getBalanceCents());
+        assertEquals(0, bankService.getAccount(to.getAccountNumber()).getBalanceCents());
+        assertEquals(1, bankService.getTransactionCount(from.getAccountNumber()));
+        assertEquals(0, bankService.getTransactionCount(to.getAccountNumber()));
+    }
+
+    @Test
+    void registrationIsRolledBackWhenSnapshotFails() {
+        open(BankConfig.PERSISTENCE_SNAPSHOT);
+
+        dbManager.failing = true;
+        assertThrows(UncheckedIOException.class, () -> createAccount("snapshot@example.com", 1000));
+
+        // The email was released along with the account
+        dbManager.failing = false;
+        Account account = createAccount("snapshot@example.com", 1000);
+        assertNotNull(bankService.getAccount(account.getAccountNumber()));
+        assertEquals(1, dbManager.loadAccounts().size());
+    }
+
+    @Test
+    void withdrawalIsRolledBackWhenSnapshotFails() {
+        open(BankConfig.PERSISTENCE_SNAPSHOT);
+        Account account = createAccount("withdraw@example.com", 1000);
+
+        dbManager.failing = true;
+        assertThrows(UncheckedIOException.class, () -> bankService.withdraw(account.getAccountNumber(), 400));
+
+        dbManager.failing = false;
+        Account reloaded = bankService.getAccount(account.getAccountNumber());
+        assertEquals(1000, reloaded.getBalanceCents());
+        assertEquals(1, reloaded.getTransactionCount());
+    }
+
+    @Test
+    void snapshotInterestRunIsSavedOnceAndRolledBackIfThatFails() {
+        open(BankConfig.PERSISTENCE_SNAPSHOT);
+        List<Account> created = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            created.add(createAccount("interest" + i + "@example.com", 100_000));
+        }
+        YearMonth period = YearMonth.of(2026, 1);
+
+        dbManager.failing = true;
+        assertThrows(UncheckedIOException.class, () -> bankService.calculateInterest(period));
+        for (Account account : created) {
+            assertEquals(100_000, bankService.getAccount(account.getAccountNumber()).getBalanceCents());
+        }
+
+        dbManager.failing = false;
+        dbManager.saves = 0;
+        InterestEngine.Report report = bankService.calculateInterest(period);
+        assertEquals(1, dbManager.saves);
+        assertEquals(created.size(), report.getAccountsCredited());
+        for (Account account : created) {
+            assertEquals(2, bankService.getTransactionCount(account.getAccountNumber()));
+        }
+    }
+
+    @Test
+    void emailCheckpointedInIndexedResidencyStaysRegistered() {
+        System.setProperty("bank.residency", "indexed");
+        System.setProperty("bank.journal.checkpointEntries", "2");
+        DatabaseManager indexedManager = new DatabaseManager(new BinaryStorageEngine(), dataDir);
+        BankService indexedService = new BankService(indexedManager);
+        try {
+            Account account = indexedService.createAccount("Test", "User", "Indexed@example.com", "5550000000",
+                    Account.AccountType.CHECKING, 1000, PASSWORD);
+            // Enough journal entries for the checkpoint that moves the email to disk
+            for (int i = 0; i < 3; i++) {
+                indexedService.deposit(account.getAccountNumber(), 100);
+            }
+            assertNotNull(indexedManager.findAccountByEmail("indexed@example.com"));
+            assertThrows(IllegalArgumentException.class, () -> indexedService.createAccount("Test", "User",
+                    "indexed@example.com", "5550000000", Account.AccountType.CHECKING, 0, PASSWORD));
+        } finally {
+            indexedService.shutdown();
+            indexedManager.close();
+        }
+    }
+
+    private void open(String persistence) {
+        System.setProperty("bank.persistence", persistence);
+        dbManager = new FailingDatabaseManager(dataDir);
+        bankService = new BankService(dbManager);
+    }
+
+    private Account createAccount(String email, long initialDepositCents) {
+        return bankService.createAccount("Test", "User", email, "5550000000",
+                Account.AccountType.CHECKING, initialDepositCents, PASSWORD);
+    }
+
+    // Fails every write while failing is set: journal records after they were queued,
+    // the way a failed fsync is reported, and snapshots straight away
+    private static class FailingDatabaseManager extends DatabaseManager {
+        volatile boolean failing;
+        volatile int saves;
+
+        FailingDatabaseManager(Path dataDir) {
+            super(new JsonStorageEngine(false), dataDir);
+        }
+
+        @Override
+        public CompletableFuture<Void> appendJournal(JournalEntry entry) {
+            if (!failing) {
+                return super.appendJournal(entry);
+            }
+            return CompletableFuture.runAsync(() -> {
+                throw new UncheckedIOException(new IOException("Simulated journal failure"));
+            });
+        }
+
+        @Override
+        public void saveAccounts(List<Account> accounts) {
+            if (failing) {
+                throw new UncheckedIOException(new IOException("Simulated snapshot failure"));
+            }
+            saves++;
+            super.saveAccounts(accounts);
+        }
+    }
+}
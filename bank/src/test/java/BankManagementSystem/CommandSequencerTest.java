@@ -0,0 +1,64 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+// Internal commands, such as rollbacks, are never turned away by a full queue or a close.
+class CommandSequencerTest {
+    @Test
+    void internalCommandWaitsForRoomWhenRejectingOthers() throws Exception {
+        CommandSequencer sequencer = new CommandSequencer(1, 1, CommandSequencer.OverflowPolicy.REJECT, () -> { });
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // One command holds the writer and a second fills the ring
+            sequencer.submit(() -> {
+                running.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return CompletableFuture.completedFuture(null);
+            });
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            sequencer.submit(() -> CompletableFuture.completedFuture(null));
+
+            CompletableFuture<Object> rejected = sequencer.submit(() -> CompletableFuture.completedFuture(null));
+            CompletionException error = assertThrows(CompletionException.class, rejected::join);
+            assertTrue(error.getCause() instanceof RejectedExecutionException);
+
+            CompletableFuture<CompletableFuture<String>> internal = CompletableFuture.supplyAsync(
+                    () -> sequencer.submitInternal(() -> CompletableFuture.completedFuture("undone")));
+            Thread.sleep(100);
+            assertFalse(internal.isDone());
+            release.countDown();
+            assertEquals("undone", internal.get(5, TimeUnit.SECONDS).get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            sequencer.close();
+        }
+    }
+
+    @Test
+    void internalCommandRunsOnCallerOnceClosed() {
+        CommandSequencer sequencer = new CommandSequencer(4, 4, CommandSequencer.OverflowPolicy.BLOCK, () -> { });
+        sequencer.close();
+        CompletableFuture<Object> rejected = sequencer.submit(() -> CompletableFuture.completedFuture(null));
+        assertThrows(CompletionException.class, rejected::join);
+
+        Thread caller = Thread.currentThread();
+        CompletableFuture<Boolean> internal = sequencer.submitInternal(
+                () -> CompletableFuture.completedFuture(Thread.currentThread() == caller));
+        assertTrue(internal.join());
+    }
+}
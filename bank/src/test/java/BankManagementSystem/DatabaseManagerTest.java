@@ -0,0 +1,99 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// A checkpoint writes the new snapshot and records the journal sequence it holds. A
+// crash is simulated by putting back the files a checkpoint replaces, as they stood
+// before it, and opening the directory again: every posting must come back once.
+class DatabaseManagerTest {
+    @TempDir
+    Path dataDir;
+
+    @AfterEach
+    void clearPersistence() {
+        System.clearProperty("bank.persistence");
+    }
+
+    @Test
+    void crashBeforeSnapshotIsReplacedReplaysFromPreviousCheckpoint() throws IOException {
+        Account account = checkpointInterrupted(BankConfig.PERSISTENCE_JOURNAL, "accounts.json", "journal.log");
+        assertRecovered(account);
+    }
+
+    @Test
+    void crashBeforeJournalIsCutSkipsEntriesInSnapshot() throws IOException {
+        Account account = checkpointInterrupted(BankConfig.PERSISTENCE_JOURNAL, "journal.log");
+        assertRecovered(account);
+    }
+
+    @Test
+    void crashBeforeLedgerSnapshotIsReplacedReplaysFromPreviousCheckpoint() throws IOException {
+        Account account = checkpointInterrupted(BankConfig.PERSISTENCE_LEDGER, "accounts.json");
+        assertRecovered(account);
+    }
+
+    // Five deposits of 1.00 with a checkpoint after the third, then a second checkpoint
+    // whose effects on the given files are undone. Returns the account as written.
+    private Account checkpointInterrupted(String persistence, String... undone) throws IOException {
+        System.setProperty("bank.persistence", persistence);
+        DatabaseManager dbManager = open();
+        dbManager.loadAccounts();
+        Account account = new Account(SecurityUtil.generateAccountNumber(), "Test", "User", "test@example.com",
+                "5550000000", Account.AccountType.CHECKING, 0, SecurityUtil.hashPassword("Test-Passw0rd"));
+        dbManager.appendJournal(JournalEntry.accountCreated(account, null)).join();
+        for (int i = 0; i < 3; i++) {
+            deposit(dbManager, account, 100);
+        }
+        dbManager.checkpoint(Collections.singletonList(account));
+        deposit(dbManager, account, 100);
+        deposit(dbManager, account, 100);
+
+        Path saved = Files.createTempDirectory(dataDir.getParent(), "before-checkpoint");
+        for (String file : undone) {
+            Files.copy(dataDir.resolve(file), saved.resolve(file));
+        }
+        dbManager.checkpoint(Collections.singletonList(account));
+        dbManager.close();
+        for (String file : undone) {
+            Files.copy(saved.resolve(file), dataDir.resolve(file), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return account;
+    }
+
+    private void assertRecovered(Account written) {
+        DatabaseManager dbManager = open();
+        try {
+            List<Account> accounts = dbManager.loadAccounts();
+            assertEquals(1, accounts.size());
+            Account account = accounts.get(0);
+            assertEquals(written.getBalanceCents(), account.getBalanceCents());
+            assertEquals(5, account.getTransactionCount());
+            assertEquals(5, dbManager.getTransactionStore().read(account, 0, 100).size());
+        } finally {
+            dbManager.close();
+        }
+    }
+
+    private DatabaseManager open() {
+        return new DatabaseManager(new JsonStorageEngine(false), dataDir);
+    }
+
+    private static void deposit(DatabaseManager dbManager, Account account, long amountCents) {
+        account.setBalanceCents(account.getBalanceCents() + amountCents);
+        Transaction transaction = new Transaction(Transaction.TransactionType.DEPOSIT, amountCents,
+                account.getBalanceCents(), "Deposit");
+        dbManager.getTransactionStore().append(account, transaction);
+        dbManager.appendJournal(new JournalEntry(JournalEntry.Operation.DEPOSIT)
+                .addPosting(account.getAccountNumber(), transaction)).join();
+    }
+}
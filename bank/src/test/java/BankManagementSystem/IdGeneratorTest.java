@@ -0,0 +1,85 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+// Ids and the account numbers built from them: order, the sequence running out within
+// a millisecond, and the check digit that catches mistyped numbers.
+class IdGeneratorTest {
+    @Test
+    void sequenceRollsOverIntoTheNextMillisecond() {
+        IdGenerator generator = new IdGenerator(5);
+        // Far more ids than one millisecond's 4096, generated faster than the clock moves
+        int count = 200_000;
+        long previous = generator.nextId();
+        int rollovers = 0;
+        for (int i = 1; i < count; i++) {
+            long id = generator.nextId();
+            assertTrue(id > previous, "ids must increase");
+            assertEquals(5, IdGenerator.nodeOf(id));
+            if (IdGenerator.sequenceOf(previous) == 4095) {
+                // A full sequence moves on to a later millisecond and starts again from zero
+                assertTrue(IdGenerator.timestampOf(id) > IdGenerator.timestampOf(previous));
+                assertEquals(0, IdGenerator.sequenceOf(id));
+                rollovers++;
+            } else if (IdGenerator.timestampOf(id) == IdGenerator.timestampOf(previous)) {
+                assertEquals(IdGenerator.sequenceOf(previous) + 1, IdGenerator.sequenceOf(id));
+            }
+            previous = id;
+        }
+        assertTrue(rollovers > 0, "expected at least one full millisecond");
+        // The borrowed milliseconds are never far ahead of the clock
+        assertTrue(IdGenerator.timestampOf(previous) <= System.currentTimeMillis() + count / 4096 + 1);
+    }
+
+    @Test
+    void generatorsOnDifferentNodesNeverCollide() {
+        IdGenerator first = new IdGenerator(1);
+        IdGenerator second = new IdGenerator(2);
+        for (int i = 0; i < 10_000; i++) {
+            long a = first.nextId();
+            long b = second.nextId();
+            assertTrue(a != b);
+            assertEquals(1, IdGenerator.nodeOf(a));
+            assertEquals(2, IdGenerator.nodeOf(b));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(IdGenerator.MAX_NODE_ID + 1));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1));
+    }
+
+    @Test
+    void stringFormKeepsNumericOrder() {
+        assertEquals("0000000000000000042", IdGenerator.format(42));
+        assertEquals(String.valueOf(Long.MAX_VALUE), IdGenerator.format(Long.MAX_VALUE));
+        assertEquals(42, IdGenerator.parse("0000000000000000042"));
+        assertThrows(IllegalArgumentException.class, () -> IdGenerator.parse("42"));
+        assertTrue(IdGenerator.format(999).compareTo(IdGenerator.format(1000)) < 0);
+    }
+
+    @Test
+    void accountNumbersCarryALuhnCheckDigit() {
+        // 79927398713 is the textbook Luhn example; leading zeros do not change the sum
+        assertTrue(SecurityUtil.isValidAccountNumber("ACC00000000079927398713"));
+        assertFalse(SecurityUtil.isValidAccountNumber("ACC00000000079927398710"));
+        // Swapping two adjacent digits is caught
+        assertFalse(SecurityUtil.isValidAccountNumber("ACC00000000097927398713"));
+
+        String accountNumber = SecurityUtil.generateAccountNumber();
+        assertEquals(3 + IdGenerator.DIGITS + 1, accountNumber.length());
+        assertTrue(SecurityUtil.isValidAccountNumber(accountNumber));
+        // Any single mistyped digit is caught
+        for (int i = 3; i < accountNumber.length(); i++) {
+            char digit = accountNumber.charAt(i);
+            char mistyped = (char) ('0' + (digit - '0' + 1) % 10);
+            String typo = accountNumber.substring(0, i) + mistyped + accountNumber.substring(i + 1);
+            assertFalse(SecurityUtil.isValidAccountNumber(typo), typo);
+        }
+        // Numbers issued before check digits still pass
+        assertTrue(SecurityUtil.isValidAccountNumber("ACC1234567890123"));
+        assertFalse(SecurityUtil.isValidAccountNumber("ACC12345678901234567890X"));
+    }
+}
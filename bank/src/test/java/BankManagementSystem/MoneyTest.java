@@ -0,0 +1,53 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+// Rounding of rates to whole cents, and the text forms amounts are read and shown in.
+class MoneyTest {
+    @Test
+    void applyRateRoundsHalfToEven() {
+        // Exact halves go to the even cent, in both directions
+        assertEquals(0, Money.applyRate(1, 0.5));
+        assertEquals(2, Money.applyRate(3, 0.5));
+        assertEquals(2, Money.applyRate(5, 0.5));
+        assertEquals(8, Money.applyRate(15, 0.5));
+        assertEquals(-2, Money.applyRate(-5, 0.5));
+        assertEquals(-8, Money.applyRate(-15, 0.5));
+        assertEquals(2, Money.applyRate(10, 0.25));
+        assertEquals(4, Money.applyRate(14, 0.25));
+
+        // Anything off the half rounds to the nearest cent
+        assertEquals(1, Money.applyRate(105, 0.005));
+        assertEquals(333, Money.applyRate(100_000, 0.04 / 12));
+        assertEquals(1852, Money.applyRate(123_456, 0.015));
+        assertEquals(-1852, Money.applyRate(-123_456, 0.015));
+    }
+
+    @Test
+    void applyRateKeepsWholeAmounts() {
+        assertEquals(0, Money.applyRate(0, 0.05));
+        assertEquals(123_456, Money.applyRate(123_456, 1.0));
+        assertEquals(0, Money.applyRate(123_456, 0.0));
+        // Well past any balance, still exact to the cent
+        assertEquals(100_000_000_000_000L, Money.applyRate(100_000_000_000_000L, 1.0));
+        assertEquals(200_000_000_000_000L, Money.applyRate(100_000_000_000_000L, 2.0));
+    }
+
+    @Test
+    void parsesAndFormatsTwoDecimals() {
+        assertEquals(1200, Money.parse("12"));
+        assertEquals(1250, Money.parse("12.5"));
+        assertEquals(1250, Money.parse(" 12.50 "));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("12.505"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse("twelve"));
+        assertThrows(IllegalArgumentException.class, () -> Money.parse(""));
+
+        assertEquals("1234.56", Money.format(123_456));
+        assertEquals("-0.05", Money.format(-5));
+        assertEquals("0.00", Money.format(0));
+        assertEquals(1234, Money.fromDouble(12.34));
+    }
+}
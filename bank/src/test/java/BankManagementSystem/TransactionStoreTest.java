@@ -0,0 +1,65 @@
+package BankManagementSystem;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+// With room for only a few indexes and open files, histories are evicted and rebuilt
+// from their files between uses and must read back exactly as they were written.
+class TransactionStoreTest {
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void evictedIndexesAndClosedFilesAreRebuiltOnNextUse() {
+        TransactionStore store = new TransactionStore(dataDir, 20, 2);
+        List<Account> accounts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            accounts.add(new Account(SecurityUtil.generateAccountNumber(), "Test", "User", "test@example.com",
+                    "5550000000", Account.AccountType.CHECKING, 0, "hash"));
+        }
+        for (int round = 0; round < 8; round++) {
+            for (Account account : accounts) {
+                store.append(account, deposit(round + 1));
+            }
+        }
+
+        for (Account account : accounts) {
+            assertEquals(8, store.count(account));
+            List<Transaction> rows = store.read(account, 0, 100);
+            assertEquals(8, rows.size());
+            for (int round = 0; round < 8; round++) {
+                assertEquals(round + 1, rows.get(round).getAmountCents());
+            }
+        }
+        store.close();
+    }
+
+    @Test
+    void truncateDropsRolledBackRowsFromFileAndIndex() {
+        TransactionStore store = new TransactionStore(dataDir, 1000, 10);
+        Account account = new Account(SecurityUtil.generateAccountNumber(), "Test", "User", "test@example.com",
+                "5550000000", Account.AccountType.CHECKING, 0, "hash");
+        for (int i = 1; i <= 5; i++) {
+            store.append(account, deposit(i));
+        }
+        store.truncate(account, 3);
+        store.append(account, deposit(9));
+        store.close();
+
+        // A new store indexes the file from scratch
+        TransactionStore reopened = new TransactionStore(dataDir, 1000, 10);
+        List<Transaction> rows = reopened.read(account, 0, 10);
+        assertEquals(4, rows.size());
+        assertEquals(9, rows.get(3).getAmountCents());
+        reopened.close();
+    }
+
+    private static Transaction deposit(long amountCents) {
+        return new Transaction(Transaction.TransactionType.DEPOSIT, amountCents, amountCents, "Test deposit");
+    }
+}
@@ -0,0 +1,98 @@
+package BankManagementSystem;
+
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The bank's operations against a running BankService over a generated dataset. The
+// -Dbank.* options select the engine and modes being measured; pass them to the forked
+// JVM with -jvmArgsAppend.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class BankServiceBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    // Rows of history per account, as DatasetGenerator's --history
+    @Param({"0:100", DatasetGenerator.DEFAULT_HISTORY, "1000:100"})
+    public String history;
+
+    private DatabaseManager dbManager;
+    private BankService bankService;
+    private String[] accountNumbers;
+    private final AtomicLong created = new AtomicLong();
+    private final String run = Long.toString(System.currentTimeMillis(), 36);
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        Path dataset = BenchmarkData.prepare(accounts, history);
+        accountNumbers = DatasetGenerator.listAccountNumbers(dataset);
+        dbManager = new DatabaseManager(StorageEngine.forName(BankConfig.getStorageEngine()), dataset);
+        bankService = new BankService(dbManager);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        bankService.shutdown();
+        dbManager.close();
+    }
+
+    @Benchmark
+    public boolean deposit() {
+        return bankService.deposit(pick(), 100);
+    }
+
+    @Benchmark
+    public boolean withdraw() {
+        return bankService.withdraw(pick(), 100);
+    }
+
+    @Benchmark
+    public boolean transfer() {
+        String from = pick();
+        String to = pick();
+        return !from.equals(to) && bankService.transfer(from, to, 100);
+    }
+
+    @Benchmark
+    public Account getAccount() {
+        return bankService.getAccount(pick());
+    }
+
+    @Benchmark
+    public Account authenticate() {
+        Account account = bankService.authenticate(pick(), BenchmarkData.PASSWORD);
+        if (account == null) {
+            throw new IllegalStateException("Benchmark account did not authenticate");
+        }
+        return account;
+    }
+
+    @Benchmark
+    public Account createAccount() {
+        return bankService.createAccount("Bench", "New", "new-" + run + "-" + created.incrementAndGet() + "@example.com",
+                "5550000000", Account.AccountType.CHECKING, 0, BenchmarkData.PASSWORD);
+    }
+
+    private String pick() {
+        return accountNumbers[ThreadLocalRandom.current().nextInt(accountNumbers.length)];
+    }
+}
@@ -0,0 +1,31 @@
+package BankManagementSystem;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// The generated data directories the benchmarks run against, one per account count,
+// history mix and storage engine, under bench-data (-Dbench.data). A directory is
+// written by DatasetGenerator on first use and reused by later runs; delete it, or
+// the whole of bench-data, for numbers from a pristine one. Benchmarks that write
+// (deposit, withdraw, transfer, createAccount) change the dataset they ran against.
+final class BenchmarkData {
+    static final String PASSWORD = "Bench-Passw0rd";
+
+    private BenchmarkData() {
+    }
+
+    static Path prepare(int accounts, String history) throws IOException {
+        Path root = Paths.get(System.getProperty("bench.data", "bench-data"));
+        Path dataset = root.resolve("accounts-" + accounts + "-" + Integer.toHexString(history.hashCode()) +
+                "-" + BankConfig.getStorageEngine());
+        if (!Files.exists(dataset.resolve("dataset.complete"))) {
+            DatasetGenerator.deleteRecursively(dataset);
+            new DatasetGenerator(DatasetGenerator.DEFAULT_TYPES, history, DatasetGenerator.DEFAULT_BALANCE_CENTS,
+                    PASSWORD, accounts).generate(dataset, accounts);
+            Files.createFile(dataset.resolve("dataset.complete"));
+        }
+        return dataset;
+    }
+}
@@ -0,0 +1,68 @@
+package BankManagementSystem;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Reading and writing the whole snapshot of a generated dataset in the configured
+// storage engine (-jvmArgsAppend -Dbank.storage.engine=binary for the binary one)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class StorageBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"0:100", DatasetGenerator.DEFAULT_HISTORY, "1000:100"})
+    public String history;
+
+    private StorageEngine engine;
+    private Path dataset;
+    private DatabaseManager dbManager;
+    private List<Account> loaded;
+
+    @Setup(Level.Trial)
+    public void open() throws Exception {
+        engine = StorageEngine.forName(BankConfig.getStorageEngine());
+        dataset = BenchmarkData.prepare(accounts, history);
+        dbManager = new DatabaseManager(engine, dataset);
+        loaded = dbManager.loadAccounts();
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        dbManager.close();
+    }
+
+    // Opens the directory afresh each time, as a starting bank does
+    @Benchmark
+    public List<Account> loadAccounts() {
+        DatabaseManager reader = new DatabaseManager(engine, dataset);
+        try {
+            return reader.loadAccounts();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public void saveAccounts() {
+        dbManager.saveAccounts(loaded);
+    }
+}